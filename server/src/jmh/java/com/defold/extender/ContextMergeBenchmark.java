@@ -0,0 +1,189 @@
+package com.defold.extender;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the context merges of a job with several extensions before and after the merges were optimized.
+ * The legacy benchmarks use LegacyContextMerge and merge the platform context again for every extension,
+ * like Extender.loadManifests did. The contexts are sized like the ones of the iOS sdk and a project
+ * with a dozen native extensions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ContextMergeBenchmark {
+
+    private static final String PLATFORM = "arm64-ios";
+    private static final int EXTENSION_COUNT = 12;
+
+    @FunctionalInterface
+    private interface ContextMerge {
+        Map<String, Object> merge(Map<String, Object> a, Map<String, Object> b) throws ExtenderException;
+    }
+
+    private Map<String, Object> platformContext;
+    private Map<String, Object> variantContext;
+    private Map<String, Object> appContext;
+    // the contexts of every extension, one for each platform alternative
+    private List<List<Map<String, Object>>> extensionContexts;
+    // common, platform and arch-platform configs of an app manifest
+    private List<PlatformConfig> appConfigs;
+
+    private static List<String> names(String prefix, int count) {
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i < count; ++i) {
+            result.add(prefix + i);
+        }
+        return result;
+    }
+
+    // the yaml parser creates array lists, the merge expects values of the same class
+    private static List<String> list(String... items) {
+        return new ArrayList<>(List.of(items));
+    }
+
+    @Setup
+    public void setup() {
+        platformContext = new HashMap<>();
+        platformContext.put("defines", names("DM_PLATFORM_DEFINE_", 8));
+        platformContext.put("flags", names("-fplatform-flag-", 12));
+        platformContext.put("linkFlags", names("-Wl,-platform-link-flag-", 10));
+        platformContext.put("libs", names("platformlib", 15));
+        platformContext.put("engineLibs", names("enginelib", 40));
+        platformContext.put("frameworks", names("Framework", 25));
+        platformContext.put("weakFrameworks", names("WeakFramework", 3));
+        platformContext.put("symbols", names("SymbolExt", 20));
+        platformContext.put("excludeSymbols", names("ExcludedSymbolExt", 2));
+        platformContext.put("includes", names("{{dynamo_home}}/include/platform", 6));
+        platformContext.put("libPaths", names("{{dynamo_home}}/lib/" + PLATFORM + "/", 8));
+        platformContext.put("osMinVersion", "11.0");
+
+        variantContext = new HashMap<>();
+        variantContext.put("excludeLibs", list("enginelib3", "enginelib7"));
+        variantContext.put("libs", names("variantlib", 3));
+
+        appContext = new HashMap<>();
+        appContext.put("excludeLibs", list("enginelib1", "platformlib2"));
+        appContext.put("excludeSymbols", list("SymbolExt4"));
+        appContext.put("symbols", list("ExcludedSymbolExt1"));
+        appContext.put("libs", names("applib", 2));
+
+        extensionContexts = new ArrayList<>();
+        List<String> alternatives = ExtenderUtil.getPlatformAlternatives(PLATFORM);
+        for (int i = 0; i < EXTENSION_COUNT; ++i) {
+            List<Map<String, Object>> contexts = new ArrayList<>();
+            for (String alternative : alternatives) {
+                Map<String, Object> context = new HashMap<>();
+                if (alternative.equals("common")) {
+                    context.put("flags", names("-fext" + i + "-flag-", 3));
+                    context.put("defines", names("EXT" + i + "_DEFINE_", 2));
+                    context.put("includes", names("ext" + i + "/include", 1));
+                } else if (alternative.equals(PLATFORM)) {
+                    context.put("frameworks", names("Ext" + i + "Framework", 3));
+                    context.put("libs", names("ext" + i + "lib", 2));
+                    context.put("linkFlags", names("-Wl,-ext" + i + "-link-flag-", 2));
+                    if (i % 4 == 0) {
+                        context.put("excludeLibs", list("platformlib" + i));
+                        context.put("excludeSymbols", list("SymbolExt" + i));
+                    }
+                    if (i % 6 == 0) {
+                        context.put("flags_replace", names("-fext" + i + "-replaced-flag-", 2));
+                    }
+                }
+                contexts.add(context);
+            }
+            extensionContexts.add(contexts);
+        }
+
+        appConfigs = new ArrayList<>();
+        for (String alternative : alternatives) {
+            PlatformConfig config = new PlatformConfig();
+            config.context.put("excludeLibs", list(alternative + "lib"));
+            config.context.put("flags", names("-f" + alternative + "-flag-", 2));
+            config.env.put("ENV_" + alternative, alternative);
+            config.allowedLibs = names(alternative + "allowed", 4);
+            config.writeExePattern = "dmengine";
+            appConfigs.add(config);
+        }
+    }
+
+    // Extender.loadManifests: a context for each extension and the merged app context
+    private void mergeManifests(Blackhole blackhole, ContextMerge merge, boolean mergePlatformOnce) throws ExtenderException {
+        Map<String, Object> platformMerged = null;
+        if (mergePlatformOnce) {
+            platformMerged = merge.merge(merge.merge(new HashMap<>(), platformContext), variantContext);
+        }
+        for (int i = 0; i < EXTENSION_COUNT; ++i) {
+            Map<String, Object> context = platformMerged;
+            if (!mergePlatformOnce) {
+                context = merge.merge(merge.merge(new HashMap<>(), platformContext), variantContext);
+            }
+            for (Map<String, Object> alternativeContext : extensionContexts.get(i)) {
+                context = merge.merge(context, alternativeContext);
+            }
+            context = merge.merge(context, appContext);
+            context.put("extension_name", "ext" + i);
+            blackhole.consume(context);
+        }
+
+        Map<String, Object> mergedAppContext = platformMerged;
+        if (!mergePlatformOnce) {
+            mergedAppContext = merge.merge(merge.merge(new HashMap<>(), platformContext), variantContext);
+        }
+        for (List<Map<String, Object>> contexts : extensionContexts) {
+            for (Map<String, Object> alternativeContext : contexts) {
+                mergedAppContext = merge.merge(mergedAppContext, alternativeContext);
+            }
+        }
+        blackhole.consume(merge.merge(mergedAppContext, appContext));
+    }
+
+    @Benchmark
+    public void loadManifestsLegacy(Blackhole blackhole) throws ExtenderException {
+        mergeManifests(blackhole, LegacyContextMerge::mergeContexts, false);
+    }
+
+    @Benchmark
+    public void loadManifests(Blackhole blackhole) throws ExtenderException {
+        mergeManifests(blackhole, ExtenderUtil::mergeContexts, true);
+    }
+
+    // The current merge with the platform context merged for every extension, which separates the
+    // speedup of mergeContexts from the one of merging the platform context once
+    @Benchmark
+    public void mergeContexts(Blackhole blackhole) throws ExtenderException {
+        mergeManifests(blackhole, ExtenderUtil::mergeContexts, false);
+    }
+
+    // The app manifest configs of all platform alternatives merged into one, like the Extender constructor does
+    @Benchmark
+    public PlatformConfig mergeObjectsLegacy() throws ExtenderException {
+        PlatformConfig config = new PlatformConfig();
+        for (PlatformConfig appConfig : appConfigs) {
+            LegacyContextMerge.mergeObjects(config, appConfig);
+        }
+        return config;
+    }
+
+    @Benchmark
+    public PlatformConfig mergeObjects() throws ExtenderException {
+        PlatformConfig config = new PlatformConfig();
+        for (PlatformConfig appConfig : appConfigs) {
+            ExtenderUtil.mergeObjects(config, appConfig);
+        }
+        return config;
+    }
+}
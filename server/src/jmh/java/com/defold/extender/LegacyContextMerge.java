@@ -0,0 +1,161 @@
+package com.defold.extender;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// The context merges of ExtenderUtil before the field accessors were cached and unchanged lists were shared.
+// Kept as the baseline of ContextMergeBenchmark
+@SuppressWarnings("unchecked")
+final class LegacyContextMerge {
+
+    private static final String MERGE_KEY_REPLACE = "_replace";
+
+    private LegacyContextMerge() {
+    }
+
+    static boolean isListOfStrings(List<Object> list) {
+        return list != null && list.stream().allMatch(o -> o instanceof String);
+    }
+
+    static List<String> mergeLists(List<String> l1, List<String> l2) {
+        List<String> items = new ArrayList<>();
+        if (l1 != null) {
+            items.addAll(l1);
+        }
+        if (l2 != null) {
+            items.addAll(l2);
+        }
+        return items;
+    }
+
+    private static boolean isMergeOp(String name) {
+        return !name.endsWith(MERGE_KEY_REPLACE);
+    }
+
+    private static String stripMergeKey(String name) {
+        if (name.endsWith(MERGE_KEY_REPLACE))
+            return name.substring(0, name.length() - MERGE_KEY_REPLACE.length());
+        return name;
+    }
+
+    static Map<String, Object> mergeMaps(Map<String, Object> a, Map<String, Object> b) throws ExtenderException {
+        Map<String, Object> context = new HashMap<>(a);
+
+        Set<String> originalKeys = new HashSet<>(context.keySet());
+        for (String k : originalKeys) {
+            boolean isMergeOp = isMergeOp(k);
+            String key = stripMergeKey(k);
+            if (!isMergeOp) {
+                Object v = context.get(k);
+                context.remove(k);
+                context.put(key, v);
+            }
+        }
+
+        for (String k : b.keySet()) {
+            boolean isMergeOp = isMergeOp(k);
+            String key = stripMergeKey(k);
+
+            Object v1 = context.getOrDefault(key, context.getOrDefault(k, null));
+            Object v2 = b.get(k);
+
+            if (v1 == null && v2 == null) {
+                context.remove(key);
+                continue;
+            }
+
+            if (v1 != null && v2 != null && !v1.getClass().equals(v2.getClass())) {
+                throw new ExtenderException(String.format("Wrong manifest context variable type for %s: Expected %s, got %s: %s", k, v1.getClass().toString(), v2.getClass().toString(), v2.toString()));
+            }
+            if (v2 instanceof List && !isListOfStrings((List<Object>) v2)) {
+                throw new ExtenderException(String.format("The context variables only support lists of strings. Got %s (type %s)", v2.toString(), v2.getClass().getCanonicalName()));
+            }
+
+            if (v1 != null && v2 != null && v1 instanceof List) {
+                if (isMergeOp) {
+                    v1 = mergeLists((List<String>) v1, (List<String>) v2);
+                } else {
+                    v1 = v2;
+                }
+                context.put(key, v1);
+            }
+            else {
+                context.put(key, v2 != null ? v2 : v1);
+            }
+        }
+        return context;
+    }
+
+    static <T> void mergeObjects(T dst, T other) throws ExtenderException {
+        if (!dst.getClass().equals(other.getClass())) {
+            throw new ExtenderException(String.format("Cannot merge different classes: '%s' and '%s'", dst.getClass(), other.getClass()));
+        }
+        for (Field field : dst.getClass().getFields()) {
+            try {
+                Object otherValue = field.get(other);
+                if (otherValue == null)
+                    continue;
+
+                Object dstValue = field.get(dst);
+                if (otherValue instanceof Map) {
+                    if (dstValue == null)
+                        field.set(dst, otherValue);
+                    else
+                        field.set(dst, mergeMaps((Map<String, Object>) dstValue, (Map<String, Object>) otherValue));
+                }
+                else if (otherValue instanceof List) {
+                    if (dstValue == null)
+                        field.set(dst, otherValue);
+                    else
+                        field.set(dst, mergeLists((List<String>) dstValue, (List<String>) otherValue));
+                }
+                else {
+                    field.set(dst, otherValue);
+                }
+            } catch (IllegalArgumentException | IllegalAccessException ex) {
+                throw new ExtenderException(ex, "Failed to merge objects");
+            }
+        }
+    }
+
+    private record PruneMapping(String targetName, String includeName, String excludeName) {}
+
+    private static final List<PruneMapping> MAPPINGS = List.of(
+        new PruneMapping("libs", "includeLibs", "excludeLibs"),
+        new PruneMapping("engineLibs", "includeLibs", "excludeLibs"),
+        new PruneMapping("engineJsLibs", "includeJsLibs", "excludeJsLibs"),
+        new PruneMapping("objectFiles", "includeObjectFiles", "excludeObjectFiles"),
+        new PruneMapping("dynamicLibs", "includeDynamicLibs", "excludeDynamicLibs"),
+        new PruneMapping("symbols", "includeSymbols", "excludeSymbols"),
+        new PruneMapping("excludeSymbols", "", "symbols"),
+        new PruneMapping("frameworks", "includeFrameworks", "excludeFrameworks")
+    );
+
+    static Map<String, Object> mergeContexts(Map<String, Object> a, Map<String, Object> b) throws ExtenderException {
+        Map<String, Object> context = mergeMaps(a, b);
+
+        for (PruneMapping mapping : MAPPINGS) {
+            List<String> srcList = getStringList(context, mapping.targetName());
+            if (srcList.isEmpty())
+                continue;
+            context.put(mapping.targetName(),
+                ExtenderUtil.pruneItems(srcList,
+                                        getStringList(b, mapping.includeName()),
+                                        getStringList(b, mapping.excludeName())));
+        }
+        return context;
+    }
+
+    static List<String> getStringList(Map<String, Object> context, String key) throws ExtenderException {
+        Object v = context.getOrDefault(key, new ArrayList<>());
+        if (v instanceof List && isListOfStrings((List<Object>) v)) {
+            return (List<String>) v;
+        }
+        throw new ExtenderException(String.format("The context variables only support strings or lists of strings. Key %s: %s (type %s)", key, v.toString(), v.getClass().getCanonicalName()));
+    }
+}
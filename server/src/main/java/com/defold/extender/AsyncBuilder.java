@@ -7,10 +7,20 @@ import java.io.FileInputStream;
 import java.io.PrintWriter;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import com.defold.extender.log.Markers;
 import com.defold.extender.metrics.MetricsWriter;
+import com.defold.extender.process.ProcessUtils;
 import com.defold.extender.services.DefoldSdkService;
 import com.defold.extender.services.GradleService;
 import com.defold.extender.services.cocoapods.CocoaPodsService;
@@ -83,47 +93,72 @@ public class AsyncBuilder {
     @Async(value="extenderTaskExecutor")
     public void asyncBuildEngine(MetricsWriter metricsWriter, String platform, String sdkVersion,
             File jobDirectory, File uploadDirectory, File buildDirectory) throws IOException {
+        asyncBuildEngine(metricsWriter, platform, List.of(), false, sdkVersion, jobDirectory, uploadDirectory, buildDirectory);
+    }
+
+    /**
+     * Builds the engine for one platform or, if additional architectures are passed, for several architectures
+     * of the same Apple platform (e.g. arm64-ios and x86_64-ios) within one job. CocoaPods are resolved once
+     * and the architectures are compiled in parallel. Each architecture is built into its own subfolder of the
+     * build directory and all outputs are returned in a single result zip.
+     * @param architectures Additional platforms to build together with 'platform'
+     * @param universal Merge the engine executables of all architectures into a universal binary
+     */
+    @Async(value="extenderTaskExecutor")
+    public void asyncBuildEngine(MetricsWriter metricsWriter, String platform, List<String> architectures, boolean universal, String sdkVersion,
+            File jobDirectory, File uploadDirectory, File buildDirectory) throws IOException {
         String jobName = jobDirectory.getName();
         Thread.currentThread().setName(String.format("async-build-%s", jobName));
         File resultDir = new File(jobResultLocation, jobName);
         resultDir.mkdir();
-        Extender extender = null;
+        List<Extender> extenders = new ArrayList<>();
         Boolean isSuccefull = true;
         try {
             LOGGER.info("Building engine locally");
 
             // Get SDK
-            try (DefoldSdk sdk = defoldSdkService.getSdk(sdkVersion)) {
+            List<String> platforms = new ArrayList<>(architectures);
+            platforms.add(platform);
+            try (DefoldSdk sdk = defoldSdkService.getSdk(sdkVersion, platforms)) {
                 metricsWriter.measureSdkDownload(sdkVersion);
 
-                extender = new Extender.Builder()
-                            .setPlatform(platform)
-                            .setSdk(sdk.toFile())
-                            .setJobDirectory(jobDirectory)
-                            .setUploadDirectory(uploadDirectory)
-                            .setBuildDirectory(buildDirectory)
-                            .setMetricsWriter(metricsWriter)
-                            .build();
+                List<File> outputFiles;
+                if (architectures.isEmpty()) {
+                    Extender extender = new Extender.Builder()
+                                .setPlatform(platform)
+                                .setSdk(sdk.toFile())
+                                .setJobDirectory(jobDirectory)
+                                .setUploadDirectory(uploadDirectory)
+                                .setBuildDirectory(buildDirectory)
+                                .setEnv(getBuildEnv())
+                                .setMetricsWriter(metricsWriter)
+                                .build();
+                    extenders.add(extender);
 
-                // Resolve Gradle dependencies
-                if (platform.contains("android")) {
-                    extender.resolve(gradleService);
-                    metricsWriter.measureGradleDownload();
-                }
+                    // Resolve Gradle dependencies
+                    if (platform.contains("android")) {
+                        extender.resolve(gradleService);
+                        metricsWriter.measureGradleDownload();
+                    }
 
-                // Resolve CocoaPods dependencies
-                if (ExtenderUtil.isAppleTarget(platform)) {
-                    extender.resolve(cocoaPodsService);
-                    metricsWriter.measureCocoaPodsInstallation();
-                }
+                    // Resolve CocoaPods dependencies
+                    if (ExtenderUtil.isAppleTarget(platform)) {
+                        extender.resolve(cocoaPodsService);
+                        metricsWriter.measureCocoaPodsInstallation();
+                    }
 
-                // Build engine
-                extender.build();
+                    // Build engine
+                    extender.build();
+                    outputFiles = extender.getOutputFiles();
+                } else {
+                    outputFiles = buildAppleArchitectures(metricsWriter, sdk.toFile(), platform, architectures, universal,
+                                    jobDirectory, uploadDirectory, buildDirectory, extenders);
+                }
                 metricsWriter.measureEngineBuild(platform);
 
                 // Zip files
                 String zipFilename = jobDirectory.getAbsolutePath() + File.separator + BuilderConstants.BUILD_RESULT_FILENAME;
-                File zipFile = ZipUtils.zip(extender.getOutputFiles(), buildDirectory, zipFilename);
+                File zipFile = ZipUtils.zip(outputFiles, buildDirectory, zipFilename);
                 metricsWriter.measureZipFiles(zipFile);
 
                 // Write zip file to result directory
@@ -134,13 +169,13 @@ public class AsyncBuilder {
             }
         } catch(EofException e) {
             File errorFile = new File(resultDir, BuilderConstants.BUILD_ERROR_FILENAME);
-            writeExtenderLogsToFile(extender, errorFile);
+            extenders.forEach(extender -> writeExtenderLogsToFile(extender, errorFile));
             writeExceptionToFile(e, errorFile);
             LOGGER.error(Markers.SERVER_ERROR, "Client closed connection prematurely, build aborted", e);
             isSuccefull = false;
         } catch(Exception e) {
             File errorFile = new File(resultDir, BuilderConstants.BUILD_ERROR_FILENAME);
-            writeExtenderLogsToFile(extender, errorFile);
+            extenders.forEach(extender -> writeExtenderLogsToFile(extender, errorFile));
             writeExceptionToFile(e, errorFile);
             LOGGER.error(String.format("Exception while building or sending response - SDK: %s", sdkVersion), e);
             isSuccefull = false;
@@ -161,6 +196,89 @@ public class AsyncBuilder {
         }
     }
 
+    // The outputs of each architecture are nested under '<platform>/' and the universal binary under 'universal/'
+    // of the build directory, which is the layout of the result zip
+    List<File> buildAppleArchitectures(MetricsWriter metricsWriter, File sdk, String platform, List<String> architectures, boolean universal,
+            File jobDirectory, File uploadDirectory, File buildDirectory, List<Extender> extenders) throws IOException, InterruptedException, ExtenderException {
+        List<String> platforms = new ArrayList<>();
+        platforms.add(platform);
+        platforms.addAll(architectures);
+
+        // every architecture gets its own build folder, the job and upload folders are shared
+        for (String archPlatform : platforms) {
+            File archBuildDirectory = new File(buildDirectory, archPlatform);
+            archBuildDirectory.mkdir();
+            extenders.add(new Extender.Builder()
+                            .setPlatform(archPlatform)
+                            .setSdk(sdk)
+                            .setJobDirectory(jobDirectory)
+                            .setUploadDirectory(uploadDirectory)
+                            .setBuildDirectory(archBuildDirectory)
+                            .setEnv(getBuildEnv())
+                            .setMetricsWriter(metricsWriter)
+                            .build());
+        }
+
+        Extender.resolve(cocoaPodsService, extenders);
+        metricsWriter.measureCocoaPodsInstallation();
+
+        List<Callable<Void>> callables = new ArrayList<>();
+        for (Extender extender : extenders) {
+            callables.add(() -> {
+                build(extender);
+                return null;
+            });
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(extenders.size());
+        try {
+            for (Future<Void> future : executor.invokeAll(callables)) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException)e.getCause();
+            } else if (e.getCause() instanceof ExtenderException) {
+                throw (ExtenderException)e.getCause();
+            }
+            throw new ExtenderException(e, "Failed to build engine: " + e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+
+        List<File> outputFiles = new ArrayList<>();
+        for (Extender extender : extenders) {
+            outputFiles.addAll(extender.getOutputFiles());
+        }
+
+        if (universal && !extenders.get(0).shouldBuildLibrary()) {
+            File universalDirectory = new File(buildDirectory, "universal");
+            universalDirectory.mkdir();
+            File universalExe = new File(universalDirectory, extenders.get(0).getEngineExecutable().getName());
+            List<String> command = new ArrayList<>(List.of("lipo", "-create", "-output", universalExe.getAbsolutePath()));
+            for (Extender extender : extenders) {
+                command.add(extender.getEngineExecutable().getAbsolutePath());
+            }
+            LOGGER.info("Creating universal binary for {}", String.join(", ", platforms));
+            createUniversalBinary(command);
+            outputFiles.add(universalExe);
+        }
+        return outputFiles;
+    }
+
+    // Env variables of the builds in addition to the system env
+    protected Map<String, String> getBuildEnv() {
+        return new HashMap<>();
+    }
+
+    // Builds the engine for one architecture of a multi-arch job
+    protected void build(Extender extender) throws ExtenderException {
+        extender.build();
+    }
+
+    protected void createUniversalBinary(List<String> lipoCommand) throws ExtenderException {
+        ProcessUtils.execCommand(lipoCommand, null, null);
+    }
+
     @Scheduled(fixedDelayString="${extender.job-result.cleanup-period:10000}")
     public void cleanUnusedResults() {
         LOGGER.debug("Clean result folder started.");
@@ -34,6 +34,8 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.HashMap;
 import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -45,18 +47,20 @@ import com.defold.extender.services.cocoapods.CocoaPodsService;
 import com.defold.extender.services.cocoapods.PodBuildSpec;
 import com.defold.extender.services.cocoapods.PodUtils;
 import com.defold.extender.services.cocoapods.ResolvedPods;
+import com.defold.extender.utils.FileLinkUtil;
 import com.defold.extender.utils.PodBuildUtil;
 import com.defold.extender.builders.CSharpBuilder;
 import com.defold.extender.log.Markers;
 import com.defold.extender.metrics.MetricsWriter;
 import com.defold.extender.process.ProcessExecutor;
+import com.defold.extender.process.ProcessPipeline;
 import com.defold.extender.process.ProcessUtils;
 
 class Extender {
     private static final Logger LOGGER = LoggerFactory.getLogger(Extender.class);
     private final ExtenderBuildState buildState;
     private final String appManifestPath;
-    private final Configuration config;                 // build.yml from the defoldsdk
+    private final Configuration config;                 // build.yml from the defoldsdk, shared between jobs
     private final PlatformConfig platformConfig;        // "common", platform, arch-platform from build.yml
     private final PlatformConfig platformVariantConfig; // "common", platform, arch-platform from build_variant.yml
     private final PlatformConfig platformAppConfig;     // "common", platform, arch-platform from game.appmanifest
@@ -69,6 +73,7 @@ class Extender {
     private Map<String, File>                   manifestFiles;
     private Map<String, Map<String, Object>>    manifestConfigs;
     private Map<String, Object>                 mergedAppContext;
+    private Map<String, Object>                 platformVariantMergedContext;
 
     private List<File> extDirs;
     private List<File> manifests;       // The list of ext.manifests found in the upload
@@ -176,8 +181,9 @@ class Extender {
         this.gradlePackages = new ArrayList<>();
         this.outputFiles = new ArrayList<>();
 
-        // Read config from SDK
-        this.config = Extender.loadYaml(builder.jobDirectory, new File(builder.sdk.getPath() + "/extender/build.yml"), Configuration.class);
+        // Read config from SDK, it's parsed once per sdk and platform
+        SdkConfigurationCache.Entry sdkConfiguration = SdkConfigurationCache.INSTANCE.get(builder.jobDirectory, builder.sdk, builder.platform);
+        this.config = sdkConfiguration.getConfig();
 
         // Read the app manifest from the upload folder
         Collection<File> allFiles = FileUtils.listFiles(builder.uploadDirectory, null, true);
@@ -187,7 +193,7 @@ class Extender {
         }
 
         AppManifestConfiguration appManifest = null;
-        AppManifestConfiguration baseVariantManifest = null;
+        PlatformConfig baseVariantConfig = null;
         String baseVariant = null;
 
         if (appManifests.isEmpty()) {
@@ -209,45 +215,18 @@ class Extender {
             baseVariant = ExtenderUtil.getAppManifestContextString(appManifest, ExtenderBuildState.APPMANIFEST_BASE_VARIANT_KEYWORD, null);
             if (baseVariant != null)
             {
-                File baseVariantFile = new File(builder.sdk.getPath() + "/extender/variants/" + baseVariant + ".appmanifest");
-
-                if (!baseVariantFile.exists()) {
-                    throw new ExtenderException("Base variant " + baseVariant + " not found!");
-                }
                 LOGGER.info("Using base variant: " + baseVariant);
 
-                baseVariantManifest = Extender.loadYaml(builder.jobDirectory, baseVariantFile, AppManifestConfiguration.class);
+                // Merged variant info of the sdk
+                baseVariantConfig = sdkConfiguration.getVariantConfig(builder.jobDirectory, baseVariant);
             }
         }
         this.buildState = new ExtenderBuildState(builder, appManifest);
 
-        if (config.platforms.get(buildState.fullPlatform) == null) {
-            throw new ExtenderException(String.format("Unsupported platform %s by this sdk", buildState.fullPlatform));
-        }
-
-        // Merge the platform configs from build.yml into a single instance: common -> platform -> arch-platform
-        this.platformConfig = new PlatformConfig();
-        this.platformConfig.context = new HashMap<>(config.context); // the context from build.yml
+        // The platform configs from build.yml merged into a single instance: common -> platform -> arch-platform
+        this.platformConfig = sdkConfiguration.getPlatformConfig();
 
-        for (String platformAlt : ExtenderUtil.getPlatformAlternatives(buildState.fullPlatform)) {
-            PlatformConfig platformConfigAlt = config.platforms.get(platformAlt);
-            if (platformConfigAlt == null)
-                continue;
-
-            ExtenderUtil.mergeObjects(this.platformConfig, platformConfigAlt);
-        }
-
-        // Merge the variant info into a single config
-        this.platformVariantConfig = new PlatformConfig();
-        if (baseVariantManifest != null) {
-            for (String platformAlt : ExtenderUtil.getPlatformAlternatives(buildState.fullPlatform)) {
-                AppManifestPlatformConfig configAlt = baseVariantManifest.platforms.get(platformAlt);
-                if (configAlt == null)
-                    continue;
-                PlatformConfig platformConfigAlt = ExtenderUtil.createPlatformConfig(configAlt);
-                ExtenderUtil.mergeObjects(this.platformVariantConfig, platformConfigAlt);
-            }
-        }
+        this.platformVariantConfig = baseVariantConfig != null ? baseVariantConfig : new PlatformConfig();
 
         // Merge the app manifest info into a single config
         this.platformAppConfig = new PlatformConfig();
@@ -301,11 +280,8 @@ class Extender {
             }
         }
 
-        // The allowed symbols are the union of the values from the different "levels": "context: allowedSymbols: [...]" + "context: platforms: arm64-osx: allowedSymbols: [...]"
-        List<String> allowedSymbols = ExtenderUtil.mergeLists(platformConfig.allowedSymbols, (List<String>) this.config.context.getOrDefault("allowedSymbols", new ArrayList<String>()) );
-
         // The user input (ext.manifest + _app/app.manifest) will be checked against this validator
-        ExtensionManifestValidator manifestValidator = new ExtensionManifestValidator(new WhitelistConfig(), this.platformConfig.allowedFlags, allowedSymbols);
+        ExtensionManifestValidator manifestValidator = sdkConfiguration.getValidator();
 
         // Make sure the user hasn't input anything invalid in the manifest
         manifestValidator.validate(this.appManifestPath, buildState.uploadDir, this.platformAppConfig.context);
@@ -815,8 +791,20 @@ class Extender {
         return objs;
     }
 
-    // compile the source files of a pod and return a list of object files
-    private List<String> compilePodSourceFiles(PodBuildSpec pod, Map<String, Object> manifestContext) throws IOException, InterruptedException, ExtenderException {
+    // The commands needed to compile the source files of a pod, grouped by stage.
+    // All commands are created up front so that the stages of several pods can be
+    // scheduled together (see buildPodsPipelined)
+    private class PodCompileCommands {
+        List<String> emitSwiftHeader = new ArrayList<>();
+        List<String> emitSwiftModule = new ArrayList<>();
+        List<String> compileSwift = new ArrayList<>();
+        List<String> compile = new ArrayList<>();
+        List<String> objs = new ArrayList<>();
+    }
+
+    // create the commands to compile the source files of a pod
+    private PodCompileCommands createPodCompileCommands(PodBuildSpec pod, Map<String, Object> manifestContext) throws IOException, InterruptedException, ExtenderException {
+        PodCompileCommands podCommands = new PodCompileCommands();
         // clean up flags from context
         Map<String, Object> trimmedContext = ExtenderUtil.mergeContexts(manifestContext, new HashMap<>());
         trimmedContext.put("flags", new ArrayList<String>());
@@ -846,7 +834,7 @@ class Extender {
         Map<String, Object> mergedContextWithPodsForObjCpp = ExtenderUtil.mergeContexts(trimmedContext, podContextObjCpp);
         Map<String, Object> mergedContextWithPodsForSwift = ExtenderUtil.mergeContexts(trimmedContext, podContextSwift);
 
-        List<String> objs = new ArrayList<>();
+        List<String> objs = podCommands.objs;
 
         if (!pod.swiftSourceFiles.isEmpty()) {
             // Add -enable-experimental-feature AccessLevelOnImport
@@ -869,8 +857,7 @@ class Extender {
             mergedContextWithPodsForSwift.put("swiftFlags", updatedSwiftFlags);
 
             // generate headers from swift files
-            List<String> emitSwiftHeaderCommands = new ArrayList<>();
-            LOGGER.info("emit swift header");
+            List<String> emitSwiftHeaderCommands = podCommands.emitSwiftHeader;
             emitSwiftHeader(pod, mergedContextWithPodsForSwift, emitSwiftHeaderCommands);
 // ******************************** Added for backward comapatibility *****************************************
 // ******************************** Remove after 6 month ******************************************************
@@ -880,11 +867,9 @@ class Extender {
                 emitSwiftHeaderCommands.set(i, cmd);
             }
 // ************************************************************************************************************
-            ProcessExecutor.executeCommands(processExecutor, emitSwiftHeaderCommands); // in parallel
 
             // generate swift module from swift files
-            List<String> emitSwiftModuleCommands = new ArrayList<>();
-            LOGGER.info("emit swift module");
+            List<String> emitSwiftModuleCommands = podCommands.emitSwiftModule;
             emitSwiftModule(pod, mergedContextWithPodsForSwift, emitSwiftModuleCommands);
 // ******************************** Added for backward comapatibility *****************************************
 // ******************************** Remove after 6 month ******************************************************
@@ -894,17 +879,15 @@ class Extender {
                 emitSwiftModuleCommands.set(i, cmd);
             }
 // ************************************************************************************************************
-            ProcessExecutor.executeCommands(processExecutor, emitSwiftModuleCommands); // in parallel
 
             // compile swift source files one by one
-            List<String> compileSwiftCommands = new ArrayList<>();
+            List<String> compileSwiftCommands = podCommands.compileSwift;
             for (File src : pod.swiftSourceFiles) {
                 final int i = getAndIncreaseNameCount();
                 File o = addCompileFileSwift(pod, i, src, mergedContextWithPodsForSwift, compileSwiftCommands);
                 String objPath = ExtenderUtil.getRelativePath(buildState.jobDir, o);
                 objs.add(objPath);
             }
-            LOGGER.info("compiling {} swift files", compileSwiftCommands.size());
 // ******************************** Added for backward comapatibility *****************************************
 // ******************************** Remove after 6 month ******************************************************
             for (int i = 0; i < compileSwiftCommands.size(); ++i) {
@@ -913,12 +896,9 @@ class Extender {
                 compileSwiftCommands.set(i, cmd);
             }
 // ************************************************************************************************************
-            ProcessExecutor.executeCommands(processExecutor, compileSwiftCommands); // in parallel
-
-            generateSwiftCompatabilityHeaders(pod, resolvedPods.getCurrentPodsDirectory());
         }
 
-        List<String> commands = new ArrayList<>();
+        List<String> commands = podCommands.compile;
         for (File src : pod.sourceFiles) {
             String extension = FilenameUtils.getExtension(src.getAbsolutePath());
             final int i = getAndIncreaseNameCount();
@@ -939,10 +919,31 @@ class Extender {
             String objPath = ExtenderUtil.getRelativePath(buildState.jobDir, o);
             objs.add(objPath);
         }
-        LOGGER.info("compiling {} source files", commands.size());
-        ProcessExecutor.executeCommands(processExecutor, commands); // in parallel
 
-        return objs;
+        return podCommands;
+    }
+
+    // compile the source files of a pod and return a list of object files
+    private List<String> compilePodSourceFiles(PodBuildSpec pod, Map<String, Object> manifestContext) throws IOException, InterruptedException, ExtenderException {
+        PodCompileCommands podCommands = createPodCompileCommands(pod, manifestContext);
+
+        if (!pod.swiftSourceFiles.isEmpty()) {
+            LOGGER.info("emit swift header");
+            ProcessExecutor.executeCommands(processExecutor, podCommands.emitSwiftHeader); // in parallel
+
+            LOGGER.info("emit swift module");
+            ProcessExecutor.executeCommands(processExecutor, podCommands.emitSwiftModule); // in parallel
+
+            LOGGER.info("compiling {} swift files", podCommands.compileSwift.size());
+            ProcessExecutor.executeCommands(processExecutor, podCommands.compileSwift); // in parallel
+
+            generateSwiftCompatabilityHeaders(pod, resolvedPods.getCurrentPodsDirectory());
+        }
+
+        LOGGER.info("compiling {} source files", podCommands.compile.size());
+        ProcessExecutor.executeCommands(processExecutor, podCommands.compile); // in parallel
+
+        return podCommands.objs;
     }
 
     void buildPodAsFramework(PodBuildSpec spec, String targetPlatform, File targetSupportFileDir) throws ExtenderException, IOException, InterruptedException {
@@ -1037,32 +1038,100 @@ class Extender {
      */
     File buildPodLibrary(PodBuildSpec spec) throws ExtenderException, IOException, InterruptedException {
         LOGGER.info("buildPods - compiling pod source files for {}", spec.name);
-        // The source files of each pod will be compiled and built as a library.
-        // We use the same mechanism as when building the extension and create a
-        // manifest context for each pod
-        Map<String, Object> manifestContext = new HashMap<>();
-        manifestContext = ExtenderUtil.mergeContexts(manifestContext, this.platformConfig.context);
-        manifestContext = ExtenderUtil.mergeContexts(manifestContext, this.platformVariantConfig.context);
-        manifestContext.put("extension_name", spec.name);
-        manifestContext.put("extension_name_upper", spec.name.toUpperCase());
-        manifestContext.put("osMinVersion", resolvedPods.getPlatformMinVersion());
-        manifestContext.put("env.IOS_VERSION_MIN", resolvedPods.getPlatformMinVersion());
+        Map<String, Object> manifestContext = createPodManifestContext(spec);
 
         // Compile pod source files
         List<String> objs = compilePodSourceFiles(spec, manifestContext);
         if (!objs.isEmpty()) {
             // Create c++ library
             File lib = new File(spec.buildDir ,String.format(platformConfig.writeLibPattern, manifestContext.get("extension_name") + "_" + getNameUUID()));
-            Map<String, Object> context = createContext(manifestContext);
-            context.put("tgt", lib);
-            context.put("objs", objs);
             LOGGER.info("creating library {} from {} objects", lib.getName(), objs.size());
-            executeCommand(platformConfig.libCmd, context);
+            executeCommand(platformConfig.libCmd, createPodLibraryContext(manifestContext, lib, objs));
             return lib;
         }
         return null;
     }
 
+    private Map<String, Object> createPodManifestContext(PodBuildSpec spec) throws ExtenderException {
+        // The source files of each pod will be compiled and built as a library.
+        // We use the same mechanism as when building the extension and create a
+        // manifest context for each pod
+        Map<String, Object> manifestContext = new HashMap<>(getPlatformVariantMergedContext());
+        manifestContext.put("extension_name", spec.name);
+        manifestContext.put("extension_name_upper", spec.name.toUpperCase());
+        manifestContext.put("osMinVersion", resolvedPods.getPlatformMinVersion());
+        manifestContext.put("env.IOS_VERSION_MIN", resolvedPods.getPlatformMinVersion());
+        return manifestContext;
+    }
+
+    private Map<String, Object> createPodLibraryContext(Map<String, Object> manifestContext, File lib, List<String> objs) throws ExtenderException {
+        Map<String, Object> context = createContext(manifestContext);
+        context.put("tgt", lib);
+        context.put("objs", objs);
+        return context;
+    }
+
+    // Build all pods as static libraries with one pipeline instead of pod by pod.
+    // Swift stages only wait for the data they need:
+    //  * header and module emission of a pod need the swift modules of its dependencies and their modulemaps,
+    //    which are completed by the compatability header step
+    //  * swift compilation needs the swift module of the pod itself and the same data of its dependencies
+    //  * c/objc compilation needs the generated swift headers of the pod and of its dependencies
+    // Everything else is free to interleave across pods.
+    // Each pod registers the futures of its swift data joined with those of its dependencies, also if it has
+    // no swift sources, so a pod waits for all pods below it and not only the direct dependencies.
+    private void buildPodsPipelined(List<PodBuildSpec> pods) throws IOException, InterruptedException, ExtenderException {
+        Map<PodBuildSpec, CompletableFuture<Void>> swiftModules = new HashMap<>();
+        Map<PodBuildSpec, CompletableFuture<Void>> swiftHeaders = new HashMap<>();
+        long pipelineStart = System.currentTimeMillis();
+        BiConsumer<String, Long> stepListener = metricsWriter != null ? metricsWriter::measurePodCommand : null;
+        try (ProcessPipeline pipeline = new ProcessPipeline(processExecutor, Runtime.getRuntime().availableProcessors(), stepListener)) {
+            // pods are sorted so that dependencies come before the pods using them
+            for (PodBuildSpec pod : pods) {
+                LOGGER.info("buildPods - scheduling pod source files for {}", pod.name);
+                Map<String, Object> manifestContext = createPodManifestContext(pod);
+                PodCompileCommands podCommands = createPodCompileCommands(pod, manifestContext);
+
+                // the swift modules and modulemaps of a dependency include those of its own dependencies
+                List<CompletableFuture<Void>> modules = new ArrayList<>();
+                List<CompletableFuture<Void>> headers = new ArrayList<>();
+                for (PodBuildSpec dependency : pod.dependantSpecs) {
+                    modules.add(swiftModules.getOrDefault(dependency, CompletableFuture.completedFuture(null)));
+                    headers.add(swiftHeaders.getOrDefault(dependency, CompletableFuture.completedFuture(null)));
+                }
+                List<CompletableFuture<Void>> dependencyModules = List.copyOf(modules);
+
+                List<CompletableFuture<Void>> objs = new ArrayList<>();
+                if (!pod.swiftSourceFiles.isEmpty()) {
+                    List<CompletableFuture<Void>> emittedHeaders = pipeline.addCommands("emitSwiftHeader", podCommands.emitSwiftHeader, dependencyModules);
+                    CompletableFuture<Void> header = pipeline.addStep("swiftCompatabilityHeader",
+                        () -> generateSwiftCompatabilityHeaders(pod, resolvedPods.getCurrentPodsDirectory()), emittedHeaders);
+                    CompletableFuture<Void> module = ProcessPipeline.allOf(
+                        pipeline.addCommands("emitSwiftModule", podCommands.emitSwiftModule, dependencyModules));
+                    List<CompletableFuture<Void>> compileDependencies = new ArrayList<>(dependencyModules);
+                    compileDependencies.add(module);
+                    objs.addAll(pipeline.addCommands("compileSwift", podCommands.compileSwift, compileDependencies));
+                    // dependants import the module through the modulemap which is completed by the header step
+                    modules.add(module);
+                    modules.add(header);
+                    headers.add(header);
+                }
+                swiftModules.put(pod, ProcessPipeline.allOf(modules));
+                swiftHeaders.put(pod, ProcessPipeline.allOf(headers));
+                objs.addAll(pipeline.addCommands("compile", podCommands.compile, headers));
+
+                if (!podCommands.objs.isEmpty()) {
+                    File lib = new File(pod.buildDir ,String.format(platformConfig.writeLibPattern, manifestContext.get("extension_name") + "_" + getNameUUID()));
+                    String libCommand = templateExecutor.execute(platformConfig.libCmd, createPodLibraryContext(manifestContext, lib, podCommands.objs));
+                    LOGGER.info("creating library {} from {} objects", lib.getName(), podCommands.objs.size());
+                    pipeline.addCommand("lib", libCommand, objs);
+                }
+            }
+            pipeline.await();
+            LOGGER.info("buildPods - pipeline finished in {} ms ({} ms of command time)", System.currentTimeMillis() - pipelineStart, pipeline.getTotalStepTime());
+        }
+    }
+
     // build the source files of each resolved pod file into a library
     private List<File> buildPods() throws IOException, InterruptedException, ExtenderException {
         List<File> outputFiles = new ArrayList<>();
@@ -1077,10 +1146,11 @@ class Extender {
             PodBuildUtil.generateHeaderMap(pod);
             if (asFramework) {
                 buildPodAsFramework(pod, buildState.fullPlatform, resolvedPods.getTargetSupportFilesDir());
-            } else {
-                buildPodLibrary(pod);
             }
         }
+        if (!asFramework) {
+            buildPodsPipelined(resolvedPods.getPodSpecs());
+        }
 
         LOGGER.info("buildPods - adding framework resource to build output");
         File resourcesBuildDir = new File(buildState.buildDir, "resources");
@@ -1090,13 +1160,11 @@ class Extender {
         for (File resourceFile : resources) {
             if (resourceFile.isFile()) {
                 File resourceDestFile = new File(resourcesBuildDir, resourceFile.getName());
-                resourceDestFile.getParentFile().mkdirs();
-                Files.copy(resourceFile.toPath(), resourceDestFile.toPath());
+                FileLinkUtil.linkFile(resourceFile, resourceDestFile);
                 outputFiles.add(resourceDestFile);
             } else {
                 File resourceDestDir = new File(resourcesBuildDir, resourceFile.getName());
-                resourceDestDir.mkdirs();
-                FileUtils.copyDirectory(resourceFile, resourceDestDir);
+                FileLinkUtil.linkDirectory(resourceFile, resourceDestDir);
                 outputFiles.add(resourceDestDir);
             }
         }
@@ -1110,10 +1178,10 @@ class Extender {
 
         List<File> dynamicFrameworks = resolvedPods.getDynamicFrameworks();
         for (File framework : dynamicFrameworks) {
-            // copy framework and filter out certain files and folders
+            // link framework and filter out certain files and folders
             LOGGER.info("buildPods - adding {}", framework.getName());
             File frameworkDestDir = new File(frameworksBuildDir, framework.getName());
-            FileUtils.copyDirectory(framework, frameworkDestDir, new FileFilter() {
+            FileLinkUtil.linkDirectory(framework, frameworkDestDir, new FileFilter() {
                 @Override
                 public boolean accept(File pathname) {
                     String name = pathname.getName();
@@ -1128,7 +1196,7 @@ class Extender {
         if (podfileLock != null) {
             LOGGER.info("buildPods - adding Podfile.lock to build output");
             File destPodFileLock = new File(buildState.buildDir, "Podfile.lock");
-            FileUtils.copyFile(podfileLock, destPodFileLock);
+            FileLinkUtil.linkFile(podfileLock, destPodFileLock);
             outputFiles.add(destPodFileLock);
         }
 
@@ -1557,7 +1625,7 @@ class Extender {
         }
 
         for (String filepath : dynamicLibsPathes) {
-            FileUtils.copyFileToDirectory(new File(filepath), buildState.buildDir);
+            FileLinkUtil.linkFileToDirectory(new File(filepath), buildState.buildDir);
         }
 
         // Collect output/binaries
@@ -2213,6 +2281,15 @@ class Extender {
         return resourceFile;
     }
 
+    // The context of build.yml merged with the context of the base variant
+    private Map<String, Object> getPlatformVariantMergedContext() throws ExtenderException {
+        if (platformVariantMergedContext == null) {
+            Map<String, Object> context = ExtenderUtil.mergeContexts(new HashMap<>(), this.platformConfig.context);
+            platformVariantMergedContext = ExtenderUtil.mergeContexts(context, this.platformVariantConfig.context);
+        }
+        return platformVariantMergedContext;
+    }
+
     private void loadManifests(ExtensionManifestValidator validator) throws IOException, ExtenderException {
         // Creates the contexts for each stage: extension and app
         //  extension context: merge(platform, variant, extension, app)
@@ -2244,6 +2321,10 @@ class Extender {
             manifestFiles.put(manifestConfig.name, manifest);
         }
 
+        // The platform and variant contexts are the same for all extensions, they are merged once
+        // The merged contexts share the unchanged values with it, so it's not modified
+        Map<String, Object> platformContext = getPlatformVariantMergedContext();
+
         List<String> symbols = getSortedKeys(_manifestConfigs.keySet());
         for (String extensionSymbol : symbols) {
             File manifest = manifestFiles.get(extensionSymbol);
@@ -2251,9 +2332,7 @@ class Extender {
 
             ManifestConfiguration manifestConfig = _manifestConfigs.get(extensionSymbol);
 
-            Map<String, Object> manifestContext = new HashMap<>();
-            manifestContext = ExtenderUtil.mergeContexts(manifestContext, this.platformConfig.context);
-            manifestContext = ExtenderUtil.mergeContexts(manifestContext, this.platformVariantConfig.context);
+            Map<String, Object> manifestContext = platformContext;
 
             for (String platformAlternative : ExtenderUtil.getPlatformAlternatives(buildState.fullPlatform)) {
                 Map<String, Object> ctx = getManifestContext(platformAlternative, manifestConfig);
@@ -2274,9 +2353,7 @@ class Extender {
         }
 
         // Now create the app context
-        mergedAppContext = new HashMap<>();
-        mergedAppContext = ExtenderUtil.mergeContexts(mergedAppContext, this.platformConfig.context);
-        mergedAppContext = ExtenderUtil.mergeContexts(mergedAppContext, this.platformVariantConfig.context);
+        mergedAppContext = platformContext;
 
         for (String extensionSymbol : symbols) {
             ManifestConfiguration manifestConfig = _manifestConfigs.get(extensionSymbol);
@@ -2299,7 +2376,7 @@ class Extender {
         mergedAppContext.put("host_platform", buildState.getHostPlatform());
 
         //exclude fake `jar` path for extensions without java code
-        List<String> excludeJars = ExtenderUtil.getStringList(mergedAppContext, "excludeJars");
+        List<String> excludeJars = new ArrayList<>(ExtenderUtil.getStringList(mergedAppContext, "excludeJars"));
         excludeJars.add("(.*)/proguard_files_without_jar");
         mergedAppContext.put("excludeJars", excludeJars);
 
@@ -2343,7 +2420,7 @@ class Extender {
     private boolean shouldBuildPlugins() {
         return shouldBuildArtifact("plugins");
     }
-    private boolean shouldBuildLibrary() {
+    boolean shouldBuildLibrary() {
         return shouldBuildArtifact("library");
     }
 
@@ -2477,7 +2554,7 @@ class Extender {
 
         try {
             for (File jni : jniFolders) {
-                FileUtils.copyDirectory(jni, targetDir);
+                FileLinkUtil.linkDirectory(jni, targetDir);
             }
         } catch (IOException e) {
             throw new ExtenderException(e, "Failed to copy android JNIs");
@@ -2496,7 +2573,7 @@ class Extender {
 
         try {
             for (File a : assets) {
-                FileUtils.copyDirectory(a, targetDir);
+                FileLinkUtil.linkDirectory(a, targetDir);
             }
         } catch (IOException e) {
             throw new ExtenderException(e, "Failed to copy android assets");
@@ -2518,7 +2595,7 @@ class Extender {
             for (String androidResourceFolder : androidResourceFolders) {
                 File packageResourceDir = new File(androidResourceFolder);
                 File targetDir = new File(packagesDir, packageResourceDir.getParentFile().getName() + "/res");
-                FileUtils.copyDirectory(packageResourceDir, targetDir);
+                FileLinkUtil.linkDirectory(packageResourceDir, targetDir);
 
                 String relativePath = ExtenderUtil.getRelativePath(packagesDir, targetDir);
                 packagesList.add(relativePath);
@@ -2814,6 +2891,26 @@ class Extender {
         }
     }
 
+    // Resolves CocoaPod dependencies once for several architectures of the same Apple platform
+    // which share the job directory (e.g. arm64-ios and x86_64-ios)
+    static void resolve(CocoaPodsService cocoaPodsService, List<Extender> extenders) throws ExtenderException {
+        List<PlatformConfig> configs = new ArrayList<>();
+        List<ExtenderBuildState> buildStates = new ArrayList<>();
+        for (Extender extender : extenders) {
+            configs.add(extender.platformConfig);
+            buildStates.add(extender.buildState);
+        }
+        try {
+            List<ResolvedPods> resolvedPods = cocoaPodsService.resolveDependencies(configs, buildStates);
+            for (int i = 0; i < extenders.size(); ++i) {
+                extenders.get(i).resolvedPods = resolvedPods.get(i);
+            }
+        }
+        catch (IOException e) {
+            throw new ExtenderException(e, "Failed to resolve CocoaPod dependencies. " + e.getMessage());
+        }
+    }
+
     void build() throws ExtenderException {
         outputFiles.addAll(buildManifests(buildState.fullPlatform));
 
@@ -2843,4 +2940,8 @@ class Extender {
     List<File> getOutputFiles() {
         return outputFiles;
     }
+
+    File getEngineExecutable() {
+        return new File(buildState.buildDir, platformConfig.writeExePattern);
+    }
 }
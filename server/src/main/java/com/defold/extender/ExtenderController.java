@@ -42,6 +42,8 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Supplier;
 import java.util.regex.Matcher;
@@ -163,7 +165,9 @@ public class ExtenderController {
     public void buildEngineAsync(HttpServletRequest _request,
                             HttpServletResponse response,
                             @PathVariable("platform") String platform,
-                            @PathVariable("sdkVersion") String sdkVersionString)
+                            @PathVariable("sdkVersion") String sdkVersionString,
+                            @RequestParam(value = "architectures", required = false) String architecturesString,
+                            @RequestParam(value = "universal", defaultValue = "false") boolean universal)
             throws ExtenderException, IOException, ParseException, VersionNotSupportedException, PlatformNotSupportedException {
 
         boolean isMultipart = JakartaServletFileUpload.isMultipartContent(_request);
@@ -171,6 +175,8 @@ public class ExtenderController {
             throw new ExtenderException("The request must be a multi part request");
         }
 
+        List<String> architectures = parseArchitectures(platform, architecturesString);
+
         MultipartHttpServletRequest request = (MultipartHttpServletRequest)_request;
 
         this.userUpdateService.update();
@@ -209,14 +215,13 @@ public class ExtenderController {
             DataCacheService.DataCacheServiceInfo totalCacheDownloadInfo = dataCacheService.getCachedFiles(uploadDirectory);
             metricsWriter.measureCacheDownload(totalCacheDownloadInfo.cachedFileSize.longValue(), totalCacheDownloadInfo.cachedFileCount.intValue());
 
-            // Cache upload before build because upload operation can be long-running and
-            // build can be finished before cache upload completes
+            // Schedule cache upload before build. Files are hashed and uploaded in the background
             // Regardless of success/fail status, we want to cache the uploaded files
             DataCacheService.DataCacheServiceInfo uploadResultInfo = dataCacheService.cacheFiles(uploadDirectory);
             metricsWriter.measureCacheUpload(uploadResultInfo.cachedFileSize.longValue(), uploadResultInfo.cachedFileCount.intValue());
 
             if (instanceType.equals(InstanceType.BUILDER_ONLY)) {
-                asyncBuilder.asyncBuildEngine(metricsWriter, platform, sdkVersion, jobDirectory, uploadDirectory, buildDirectory);
+                asyncBuilder.asyncBuildEngine(metricsWriter, platform, architectures, universal, sdkVersion, jobDirectory, uploadDirectory, buildDirectory);
             } else {
                 String[] buildEnvDescription = null;
                 try {
@@ -235,9 +240,9 @@ public class ExtenderController {
                 if (remoteBuilderEnabled && buildEnvDescription != null && isRemotePlatform(buildEnvDescription[0], buildEnvDescription[1])) {
                     LOGGER.info("Building engine on remote builder");
                     RemoteInstanceConfig remoteInstanceConfig = getRemoteBuilderConfig(buildEnvDescription[0], buildEnvDescription[1]);
-                    this.remoteEngineBuilder.buildAsync(remoteInstanceConfig, uploadDirectory, platform, sdkVersion, jobDirectory, buildDirectory, metricsWriter);
+                    this.remoteEngineBuilder.buildAsync(remoteInstanceConfig, uploadDirectory, platform, architectures, universal, sdkVersion, jobDirectory, buildDirectory, metricsWriter);
                 } else if (instanceType.equals(InstanceType.MIXED)) {
-                    asyncBuilder.asyncBuildEngine(metricsWriter, platform, sdkVersion, jobDirectory, uploadDirectory, buildDirectory);
+                    asyncBuilder.asyncBuildEngine(metricsWriter, platform, architectures, universal, sdkVersion, jobDirectory, uploadDirectory, buildDirectory);
                 } else {
                     // no remote builder was found and current instance can't build
                     LOGGER.error("Unsupported build platform '{}'", platform);
@@ -361,6 +366,28 @@ public class ExtenderController {
         return ignore;
     }
 
+    // Additional architectures for a multi-arch build. They must belong to the same Apple platform as the
+    // requested one, since access to the build is granted by the platform in the request path.
+    static List<String> parseArchitectures(String platform, String architectures) throws ExtenderException {
+        List<String> result = new ArrayList<>();
+        if (architectures == null || architectures.isBlank()) {
+            return result;
+        }
+        for (String arch : architectures.split(",")) {
+            arch = arch.trim();
+            if (arch.isEmpty() || arch.equals(platform) || result.contains(arch)) {
+                continue;
+            }
+            boolean sameFamily = (ExtenderUtil.isIOSTarget(platform) && ExtenderUtil.isIOSTarget(arch))
+                                || (ExtenderUtil.isMacOSTarget(platform) && ExtenderUtil.isMacOSTarget(arch));
+            if (!sameFamily) {
+                throw new ExtenderException(String.format("Architecture '%s' cannot be built together with '%s'", arch, platform));
+            }
+            result.add(arch);
+        }
+        return result;
+    }
+
     static void validateFilename(String path) throws ExtenderException {
         Matcher m = ExtenderController.FILENAME_RE.matcher(path);
         if (!m.matches()) {
@@ -25,7 +25,11 @@ import java.security.NoSuchAlgorithmException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 
 import org.apache.commons.io.comparator.NameFileComparator;
 import org.apache.commons.io.FileUtils;
@@ -414,7 +418,15 @@ public class ExtenderUtil
     }
 
     static public boolean isListOfStrings(List<Object> list) {
-        return list != null && list.stream().allMatch(o -> o instanceof String);
+        if (list == null) {
+            return false;
+        }
+        for (Object o : list) {
+            if (!(o instanceof String)) {
+                return false;
+            }
+        }
+        return true;
     }
 
     static public List<String> mergeLists(List<String> l1, List<String> l2) {
@@ -449,19 +461,23 @@ public class ExtenderUtil
     //  a = {"key": valueA, "list" : ListA}
     //  b = {"key": valueB, "list" : ListB}
     //  -> {"key": valueB, "list" : merge(ListA, ListB)}
+    // The values are shared with a and b, unchanged lists aren't copied
     static public Map<String, Object> mergeMaps(Map<String, Object> a, Map<String, Object> b) throws ExtenderException {
         Map<String, Object> context = new HashMap<>(a);
 
-        // Clean the names of the previous context
-        Set<String> originalKeys = new HashSet<>(context.keySet());
-        for (String k : originalKeys) {
-            boolean isMergeOp = isMergeOp(k);
-            String key = stripMergeKey(k);
-            if (!isMergeOp)
-            {
-                Object v = context.get(k);
-                context.remove(k);
-                context.put(key, v);
+        // Clean the names of the previous context, the renamed values replace the plain ones
+        List<String> replaceKeys = null;
+        for (String k : a.keySet()) {
+            if (!isMergeOp(k)) {
+                if (replaceKeys == null) {
+                    replaceKeys = new ArrayList<>();
+                }
+                replaceKeys.add(k);
+            }
+        }
+        if (replaceKeys != null) {
+            for (String k : replaceKeys) {
+                context.put(stripMergeKey(k), context.remove(k));
             }
         }
 
@@ -521,33 +537,74 @@ public class ExtenderUtil
             System.err.printf("%s\n", err);
             throw new ExtenderException(err);
         }
-        for (Field field : dst.getClass().getFields()) {
+        for (FieldAccessor field : FIELD_ACCESSORS.get(dst.getClass())) {
+            Object otherValue = field.get(other);
+            if (otherValue == null)
+                continue;
+
+            Object dstValue = field.get(dst);
+            if (otherValue instanceof Map) {
+                if (dstValue == null)
+                    field.set(dst, otherValue);
+                else
+                    field.set(dst, ExtenderUtil.mergeMaps((Map<String, Object>)dstValue, (Map<String, Object>)otherValue));
+            }
+            else if (otherValue instanceof List) {
+                if (dstValue == null)
+                    field.set(dst, otherValue);
+                else
+                    field.set(dst, ExtenderUtil.mergeLists((List<String>) dstValue, (List<String>) otherValue));
+            }
+            else {
+                field.set(dst, otherValue);
+            }
+        }
+    }
+
+    // Getter and setter of a public field, looked up once per class instead of for every merge
+    // Field handles don't throw checked exceptions
+    private record FieldAccessor(MethodHandle getter, MethodHandle setter) {
+        Object get(Object object) {
             try {
-                Object otherValue = field.get(other);
-                if (otherValue == null)
-                    continue;
+                return getter.invokeExact(object);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
 
-                Object dstValue = field.get(dst);
-                if (otherValue instanceof Map) {
-                    if (dstValue == null)
-                        field.set(dst, otherValue);
-                    else
-                        field.set(dst, ExtenderUtil.mergeMaps((Map<String, Object>)dstValue, (Map<String, Object>)otherValue));
-                }
-                else if (otherValue instanceof List) {
-                    if (dstValue == null)
-                        field.set(dst, otherValue);
-                    else
-                        field.set(dst, ExtenderUtil.mergeLists((List<String>) dstValue, (List<String>) otherValue));
+        void set(Object object, Object value) {
+            try {
+                setter.invokeExact(object, value);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private static final ClassValue<List<FieldAccessor>> FIELD_ACCESSORS = new ClassValue<>() {
+        @Override
+        protected List<FieldAccessor> computeValue(Class<?> type) {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            List<FieldAccessor> accessors = new ArrayList<>();
+            for (Field field : type.getFields()) {
+                if (Modifier.isStatic(field.getModifiers()) || Modifier.isFinal(field.getModifiers())) {
+                    continue;
                 }
-                else {
-                    field.set(dst, otherValue);
+                try {
+                    MethodHandle getter = lookup.unreflectGetter(field).asType(MethodType.methodType(Object.class, Object.class));
+                    MethodHandle setter = lookup.unreflectSetter(field).asType(MethodType.methodType(void.class, Object.class, Object.class));
+                    accessors.add(new FieldAccessor(getter, setter));
+                } catch (IllegalAccessException e) {
+                    throw new IllegalStateException("Field " + field.getName() + " of " + type.getName() + " isn't accessible", e);
                 }
-            } catch (IllegalArgumentException | IllegalAccessException ex) {
-                throw new ExtenderException(ex, "Failed to merge objects");
             }
+            return List.copyOf(accessors);
         }
-    }
+    };
 
     private static class PruneMapping {
         String targetName;
@@ -582,6 +639,9 @@ public class ExtenderUtil
             List<String> srcList = ExtenderUtil.getStringList(context, mapping.targetName);
             if (srcList.isEmpty())
                 continue;
+            // Nothing to include or exclude, the list is kept as it is
+            if (!b.containsKey(mapping.includeName) && !b.containsKey(mapping.excludeName))
+                continue;
             context.put(mapping.targetName,
                 ExtenderUtil.pruneItems(srcList,
                                         ExtenderUtil.getStringList(b, mapping.includeName),
@@ -1,5 +1,6 @@
 package com.defold.extender;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -66,4 +67,83 @@ public class PlatformConfig {
 
     // Deprecated
     public String mtCmd;    // Deprecated, use windres instead (Deprecated at 1.2.135)
+
+    // A deep copy, the lists and maps aren't shared with this config
+    public PlatformConfig copy() {
+        PlatformConfig copy = new PlatformConfig();
+        copy.env = env != null ? new HashMap<>(env) : null;
+        copy.context = copyMap(context);
+        copy.exePrefix = exePrefix;
+        copy.exeExt = exeExt;
+        copy.writeLibPattern = writeLibPattern;
+        copy.writeShLibPattern = writeShLibPattern;
+        copy.writeExePattern = writeExePattern;
+        copy.zipContentPattern = zipContentPattern;
+        copy.shlibRe = shlibRe;
+        copy.stlibRe = stlibRe;
+        copy.sourceRe = sourceRe;
+        copy.javaSourceRe = javaSourceRe;
+        copy.compileCmd = compileCmd;
+        copy.linkCmd = linkCmd;
+        copy.linkCmds = linkCmds != null ? new ArrayList<>(linkCmds) : null;
+        copy.libCmd = libCmd;
+        copy.dxCmd = dxCmd;
+        copy.aapt2compileCmd = aapt2compileCmd;
+        copy.aapt2linkCmd = aapt2linkCmd;
+        copy.rjavaCmd = rjavaCmd;
+        copy.manifestName = manifestName;
+        copy.manifestMergeCmd = manifestMergeCmd;
+        copy.bitcodeStripCmd = bitcodeStripCmd;
+        copy.proGuardSourceRe = proGuardSourceRe;
+        copy.proGuardCmd = proGuardCmd;
+        copy.windresCmd = windresCmd;
+        copy.symbolCmd = symbolCmd;
+        copy.symbolsPattern = symbolsPattern;
+        copy.allowedLibs = allowedLibs != null ? new ArrayList<>(allowedLibs) : null;
+        copy.allowedFlags = allowedFlags != null ? new ArrayList<>(allowedFlags) : null;
+        copy.allowedSymbols = allowedSymbols != null ? new ArrayList<>(allowedSymbols) : null;
+        copy.protoEngineCxxCmd = protoEngineCxxCmd;
+        copy.protoPipelineCmd = protoPipelineCmd;
+        copy.protoPipelineOutputRe = protoPipelineOutputRe;
+        copy.compileCmdCXX = compileCmdCXX;
+        copy.compileCmdCXXSh = compileCmdCXXSh;
+        copy.linkCmdCXX = linkCmdCXX;
+        copy.linkCmdCXXSh = linkCmdCXXSh;
+        copy.javacCmd = javacCmd;
+        copy.jarCmd = jarCmd;
+        copy.zigSourceRe = zigSourceRe;
+        copy.zigCompileCmd = zigCompileCmd;
+        copy.emitSwiftHeaderCmd = emitSwiftHeaderCmd;
+        copy.emitSwiftModuleCmd = emitSwiftModuleCmd;
+        copy.compileSwiftCmd = compileSwiftCmd;
+        copy.csSourceRe = csSourceRe;
+        copy.mtCmd = mtCmd;
+        return copy;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object copyValue(Object value) {
+        if (value instanceof Map) {
+            return copyMap((Map<String, Object>) value);
+        }
+        if (value instanceof List) {
+            List<Object> list = new ArrayList<>();
+            for (Object item : (List<Object>) value) {
+                list.add(copyValue(item));
+            }
+            return list;
+        }
+        return value;
+    }
+
+    private static Map<String, Object> copyMap(Map<String, Object> map) {
+        if (map == null) {
+            return null;
+        }
+        Map<String, Object> copy = new HashMap<>();
+        for (Map.Entry<String, Object> entry : map.entrySet()) {
+            copy.put(entry.getKey(), copyValue(entry.getValue()));
+        }
+        return copy;
+    }
 }
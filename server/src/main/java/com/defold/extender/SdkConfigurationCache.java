@@ -0,0 +1,168 @@
+package com.defold.extender;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Parsed build.yml configurations by sdk and platform.
+ * The build.yml, the base variants and the whitelist of an sdk don't change, so they are parsed and merged
+ * once instead of for every job. The cached objects are shared: jobs get their own copies of the merged
+ * platform configs, since they add their environment to them.
+ * An entry is dropped if the build.yml changes, e.g. when an sdk is downloaded again into the same directory.
+ */
+class SdkConfigurationCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SdkConfigurationCache.class);
+
+    static final SdkConfigurationCache INSTANCE = new SdkConfigurationCache(32);
+
+    private record Key(String sdk, String platform) {}
+
+    // build.yml of one sdk merged for one platform: common -> platform -> arch-platform
+    static final class Entry {
+        private final long lastModified;
+        private final long size;
+        private final File sdk;
+        private final String platform;
+        private final Configuration config;
+        private final PlatformConfig platformConfig;
+        private final ExtensionManifestValidator validator;
+        private final Map<String, PlatformConfig> variantConfigs = new ConcurrentHashMap<>();
+
+        private Entry(long lastModified, long size, File sdk, String platform, Configuration config, PlatformConfig platformConfig, ExtensionManifestValidator validator) {
+            this.lastModified = lastModified;
+            this.size = size;
+            this.sdk = sdk;
+            this.platform = platform;
+            this.config = config;
+            this.platformConfig = platformConfig;
+            this.validator = validator;
+        }
+
+        // The parsed build.yml, it's shared and must not be modified
+        Configuration getConfig() {
+            return config;
+        }
+
+        // A copy of the merged platform config for a job
+        PlatformConfig getPlatformConfig() {
+            return platformConfig.copy();
+        }
+
+        // The validator is immutable and can be shared
+        ExtensionManifestValidator getValidator() {
+            return validator;
+        }
+
+        // A copy of the merged platform config of the base variant for a job
+        PlatformConfig getVariantConfig(File root, String variant) throws IOException, ExtenderException {
+            PlatformConfig variantConfig = variantConfigs.get(variant);
+            if (variantConfig == null) {
+                variantConfig = loadVariantConfig(root, variant);
+                variantConfigs.putIfAbsent(variant, variantConfig);
+            }
+            return variantConfig.copy();
+        }
+
+        private PlatformConfig loadVariantConfig(File root, String variant) throws IOException, ExtenderException {
+            File variantFile = new File(sdk.getPath() + "/extender/variants/" + variant + ".appmanifest");
+            if (!variantFile.exists()) {
+                throw new ExtenderException("Base variant " + variant + " not found!");
+            }
+            AppManifestConfiguration variantManifest = Extender.loadYaml(root, variantFile, AppManifestConfiguration.class);
+
+            PlatformConfig variantConfig = new PlatformConfig();
+            for (String platformAlt : ExtenderUtil.getPlatformAlternatives(platform)) {
+                AppManifestPlatformConfig configAlt = variantManifest.platforms.get(platformAlt);
+                if (configAlt == null)
+                    continue;
+                PlatformConfig platformConfigAlt = ExtenderUtil.createPlatformConfig(configAlt);
+                ExtenderUtil.mergeObjects(variantConfig, platformConfigAlt);
+            }
+            return variantConfig;
+        }
+    }
+
+    private final Map<Key, Entry> entries;
+
+    SdkConfigurationCache(final int maxSize) {
+        this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the configuration of the sdk for the platform, the build.yml is parsed if it's not cached
+     * @param root the job directory, the paths in error messages are relative to it
+     */
+    Entry get(File root, File sdk, String platform) throws IOException, ExtenderException {
+        File buildYml = new File(sdk.getPath() + "/extender/build.yml");
+        Path buildYmlPath = buildYml.toPath();
+        // the entry is valid as long as the build.yml isn't replaced
+        long lastModified = Files.getLastModifiedTime(buildYmlPath).toMillis();
+        long size = Files.size(buildYmlPath);
+
+        Key key = new Key(sdk.getAbsolutePath(), platform);
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        if (entry != null && entry.lastModified == lastModified && entry.size == size) {
+            return entry;
+        }
+
+        // Parsed outside the lock, concurrent jobs may parse the same build.yml but the result is the same
+        LOGGER.info("Parsing {} for platform {}", buildYml, platform);
+        entry = load(root, buildYml, sdk, platform, lastModified, size);
+        synchronized (this) {
+            entries.put(key, entry);
+        }
+        return entry;
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Entry load(File root, File buildYml, File sdk, String platform, long lastModified, long size) throws IOException, ExtenderException {
+        Configuration config = Extender.loadYaml(root, buildYml, Configuration.class);
+
+        if (config.platforms.get(platform) == null) {
+            throw new ExtenderException(String.format("Unsupported platform %s by this sdk", platform));
+        }
+
+        // Merge the platform configs from build.yml into a single instance: common -> platform -> arch-platform
+        PlatformConfig platformConfig = new PlatformConfig();
+        platformConfig.context = new HashMap<>(config.context); // the context from build.yml
+
+        for (String platformAlt : ExtenderUtil.getPlatformAlternatives(platform)) {
+            PlatformConfig platformConfigAlt = config.platforms.get(platformAlt);
+            if (platformConfigAlt == null)
+                continue;
+
+            ExtenderUtil.mergeObjects(platformConfig, platformConfigAlt);
+        }
+
+        // The allowed symbols are the union of the values from the different "levels": "context: allowedSymbols: [...]" + "context: platforms: arm64-osx: allowedSymbols: [...]"
+        List<String> allowedSymbols = ExtenderUtil.mergeLists(platformConfig.allowedSymbols, (List<String>) config.context.getOrDefault("allowedSymbols", new ArrayList<String>()) );
+
+        // The user input (ext.manifest + _app/app.manifest) will be checked against this validator
+        ExtensionManifestValidator validator = new ExtensionManifestValidator(new WhitelistConfig(), platformConfig.allowedFlags, allowedSymbols);
+
+        return new Entry(lastModified, size, sdk, platform, config, platformConfig, validator);
+    }
+}
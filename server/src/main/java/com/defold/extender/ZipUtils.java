@@ -3,12 +3,15 @@ package com.defold.extender;
 import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.PosixFilePermission;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Enumeration;
 import java.util.EnumSet;
 import java.util.Set;
 import java.util.HashSet;
+import java.util.function.Predicate;
 
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
@@ -17,6 +20,7 @@ import java.util.zip.ZipOutputStream;
 // For reading and preserving attributes
 import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
 import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
 
 public class ZipUtils {
 
@@ -42,10 +46,19 @@ public class ZipUtils {
     }
 
     public static void unzip(InputStream inputStream, Path targetDirectory) throws IOException {
+        unzip(inputStream, targetDirectory, name -> true);
+    }
+
+    // Extracts the entries which are accepted by the filter, the other entries are skipped
+    public static void unzip(InputStream inputStream, Path targetDirectory, Predicate<String> filter) throws IOException {
         try (ZipArchiveInputStream zipInputStream = new ZipArchiveInputStream(inputStream)) {
-            ZipArchiveEntry zipEntry = zipInputStream.getNextZipEntry();
+            ZipArchiveEntry zipEntry = zipInputStream.getNextEntry();
 
             while (zipEntry != null) {
+                if (!filter.test(zipEntry.getName())) {
+                    zipEntry = zipInputStream.getNextEntry();
+                    continue;
+                }
                 File entryTargetFile = new File(targetDirectory.toFile(), zipEntry.getName());
 
                 if (zipEntry.isDirectory()) {
@@ -56,29 +69,68 @@ public class ZipUtils {
                         Files.createDirectories(parentDir.toPath());
                     }
                     extractFile(zipInputStream, entryTargetFile);
+                    setExtractedFilePermissions(entryTargetFile);
+                }
 
-                    // TODO: Find out why it doesn't return other than 0 !?
-                    //int permissions = zipEntry.getUnixMode();
-                    //Set<PosixFilePermission> s = getPosixFilePermissions(permissions);
-                    Set<PosixFilePermission> s = new HashSet<>();
-                    s.add(PosixFilePermission.OTHERS_READ);
-                    s.add(PosixFilePermission.GROUP_READ);
-                    s.add(PosixFilePermission.OWNER_READ);
-
-                    // Poor man's version of making sure the stuff in the bin folder is executable
-                    if (entryTargetFile.getAbsolutePath().contains("/bin/")) {
-                        s.add(PosixFilePermission.GROUP_EXECUTE);
-                        s.add(PosixFilePermission.OWNER_EXECUTE);
-                    }
+                zipEntry = zipInputStream.getNextEntry();
+            }
+        }
+    }
+
+    // Extracts the archive using its central directory. Works for all archives, also for those which can't be
+    // read as a stream (e.g. stored entries with data descriptors)
+    public static void unzip(File zipFile, Path targetDirectory) throws IOException {
+        unzip(zipFile, targetDirectory, name -> true);
+    }
 
-                    Files.setPosixFilePermissions(entryTargetFile.toPath(), s);
+    public static void unzip(File zipFile, Path targetDirectory, Predicate<String> filter) throws IOException {
+        try (ZipFile archive = ZipFile.builder().setFile(zipFile).get()) {
+            Enumeration<ZipArchiveEntry> entries = archive.getEntriesInPhysicalOrder();
+            while (entries.hasMoreElements()) {
+                ZipArchiveEntry zipEntry = entries.nextElement();
+                if (filter.test(zipEntry.getName())) {
+                    extractEntry(archive, zipEntry, targetDirectory);
                 }
+            }
+        }
+    }
 
-                zipEntry = zipInputStream.getNextZipEntry();
+    // Extracts a single entry of an opened archive
+    public static void extractEntry(ZipFile archive, ZipArchiveEntry zipEntry, Path targetDirectory) throws IOException {
+        File entryTargetFile = new File(targetDirectory.toFile(), zipEntry.getName());
+
+        if (zipEntry.isDirectory()) {
+            Files.createDirectories(entryTargetFile.toPath());
+        } else {
+            File parentDir = entryTargetFile.getParentFile();
+            if (!parentDir.exists()) {
+                Files.createDirectories(parentDir.toPath());
+            }
+            try (InputStream entryInputStream = archive.getInputStream(zipEntry)) {
+                Files.copy(entryInputStream, entryTargetFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
             }
+            setExtractedFilePermissions(entryTargetFile);
         }
     }
 
+    private static void setExtractedFilePermissions(File entryTargetFile) throws IOException {
+        // TODO: Find out why it doesn't return other than 0 !?
+        //int permissions = zipEntry.getUnixMode();
+        //Set<PosixFilePermission> s = getPosixFilePermissions(permissions);
+        Set<PosixFilePermission> s = new HashSet<>();
+        s.add(PosixFilePermission.OTHERS_READ);
+        s.add(PosixFilePermission.GROUP_READ);
+        s.add(PosixFilePermission.OWNER_READ);
+
+        // Poor man's version of making sure the stuff in the bin folder is executable
+        if (entryTargetFile.getAbsolutePath().contains("/bin/")) {
+            s.add(PosixFilePermission.GROUP_EXECUTE);
+            s.add(PosixFilePermission.OWNER_EXECUTE);
+        }
+
+        Files.setPosixFilePermissions(entryTargetFile.toPath(), s);
+    }
+
     private static void getFilesFromFolder(File file, List<File> output) {
         if (file.isFile()) {
             output.add(file);
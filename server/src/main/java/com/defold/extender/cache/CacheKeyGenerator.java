@@ -27,6 +27,11 @@ public class CacheKeyGenerator {
             }
         }
 
+        return generate(digest);
+    }
+
+    // Key from a digest which was filled elsewhere, e.g. by a DigestInputStream while the data was copied
+    public String generate(MessageDigest digest) {
         // Note: If you change this, the format of the cache is changed
         // See: ./client/src/main/java/com/defold/extender/client/ExtenderClient.java (which is then bundled in bob.jar)
         // and native_extensions.clj in the editor for the equivalent parts
@@ -34,7 +39,7 @@ public class CacheKeyGenerator {
         return new BigInteger(1, bytes).toString(16);
     }
 
-    private MessageDigest getDigest() {
+    public MessageDigest getDigest() {
         try {
             return MessageDigest.getInstance(SHA256);
         } catch (NoSuchAlgorithmException e) {
@@ -0,0 +1,53 @@
+package com.defold.extender.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Node-local index of keys which are known to exist in a remote cache.
+ * Keys are added after puts and lookups and are trusted for a limited time only, because the storage
+ * removes old objects. The index holds a bounded number of keys and forgets the least recently used ones.
+ * Missing keys are never recorded, since other nodes can upload them at any time. A key is dropped as soon as
+ * a read finds the entry missing, so an entry removed by the storage is reported as missing by the next lookup.
+ * The time to live must stay well below the time between the last touch of an entry and its removal by the
+ * storage lifecycle rules.
+ */
+public class CachePresenceIndex {
+
+    private final long timeToLive;
+    private final Map<String, Long> keys;
+
+    public CachePresenceIndex(final int maxSize, final long timeToLive) {
+        this.timeToLive = timeToLive;
+        this.keys = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public synchronized void add(final String key) {
+        keys.put(key, System.currentTimeMillis());
+    }
+
+    public synchronized void remove(final String key) {
+        keys.remove(key);
+    }
+
+    public synchronized boolean contains(final String key) {
+        Long timestamp = keys.get(key);
+        if (timestamp == null) {
+            return false;
+        }
+        if (System.currentTimeMillis() - timestamp > timeToLive) {
+            keys.remove(key);
+            return false;
+        }
+        return true;
+    }
+
+    public synchronized int size() {
+        return keys.size();
+    }
+}
@@ -0,0 +1,162 @@
+package com.defold.extender.cache;
+
+import com.defold.extender.log.Markers;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Refreshes cache entries in the background.
+ * A key is touched at most once per time window: keys which were queued or flushed within the window are skipped.
+ * Workers flush the queue with a limited rate, so a large /query doesn't turn into a burst of storage requests.
+ * If the queue is full, new keys are dropped. They will be queued again by the next job which uses them.
+ */
+public class CacheTouchQueue implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CacheTouchQueue.class);
+
+    private record PendingTouch(String key, long enqueueTime) {}
+
+    private final BlockingQueue<PendingTouch> queue;
+    // keys queued within the time window, in the order they were queued
+    private final LinkedHashMap<String, Long> recentKeys = new LinkedHashMap<>();
+    private final long window;
+    private final long permitInterval;
+    private final int workerCount;
+    private long nextPermitTime = System.nanoTime();
+    private ExecutorService workers;
+    private volatile boolean isRunning = false;
+
+    private Counter flushedCounter;
+    private Counter skippedCounter;
+    private Counter droppedCounter;
+    private Timer lagTimer;
+
+    /**
+     * @param workerCount how many touches can be in flight at the same time
+     * @param queueSize max number of keys waiting to be touched
+     * @param window milliseconds during which repeated touches of a key are skipped
+     * @param maxRate max number of touches per second. 0 - not limited
+     */
+    public CacheTouchQueue(int workerCount, int queueSize, long window, int maxRate, MeterRegistry meterRegistry) {
+        this.workerCount = workerCount;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.window = window;
+        this.permitInterval = maxRate > 0 ? TimeUnit.SECONDS.toNanos(1) / maxRate : 0;
+
+        if (meterRegistry != null) {
+            Gauge.builder("extender.cache.touch.queue", queue, BlockingQueue::size).register(meterRegistry);
+            flushedCounter = meterRegistry.counter("extender.cache.touch", "result", "flushed");
+            skippedCounter = meterRegistry.counter("extender.cache.touch", "result", "skipped");
+            droppedCounter = meterRegistry.counter("extender.cache.touch", "result", "dropped");
+            lagTimer = meterRegistry.timer("extender.cache.touch.lag");
+        }
+    }
+
+    // Starts the workers which call the action for each queued key
+    public void start(final Consumer<String> touchAction) {
+        isRunning = true;
+        workers = Executors.newFixedThreadPool(workerCount, Thread.ofVirtual().name("cache-touch-", 0).factory());
+        for (int i = 0; i < workerCount; ++i) {
+            workers.execute(() -> processQueue(touchAction));
+        }
+    }
+
+    /**
+     * Queue the key for touching. Never blocks
+     * @return false if the key was skipped or dropped
+     */
+    public boolean enqueue(final String key) {
+        final long now = System.currentTimeMillis();
+        synchronized (recentKeys) {
+            Iterator<Map.Entry<String, Long>> it = recentKeys.entrySet().iterator();
+            while (it.hasNext() && it.next().getValue() + window <= now) {
+                it.remove();
+            }
+            if (recentKeys.containsKey(key)) {
+                increment(skippedCounter);
+                return false;
+            }
+            if (!queue.offer(new PendingTouch(key, now))) {
+                increment(droppedCounter);
+                return false;
+            }
+            recentKeys.put(key, now);
+        }
+        return true;
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    private void processQueue(final Consumer<String> touchAction) {
+        while (isRunning || !queue.isEmpty()) {
+            try {
+                PendingTouch touch = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (touch == null) {
+                    continue;
+                }
+                acquirePermit();
+                if (lagTimer != null) {
+                    lagTimer.record(System.currentTimeMillis() - touch.enqueueTime(), TimeUnit.MILLISECONDS);
+                }
+                try {
+                    touchAction.accept(touch.key());
+                    increment(flushedCounter);
+                } catch (Exception e) {
+                    LOGGER.error(Markers.CACHE_ERROR, "Failed to touch cache entry " + touch.key(), e);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // Waits until the next touch is allowed by the rate limit
+    private void acquirePermit() throws InterruptedException {
+        if (permitInterval == 0) {
+            return;
+        }
+        long waitTime;
+        synchronized (this) {
+            final long now = System.nanoTime();
+            nextPermitTime = Math.max(nextPermitTime, now);
+            waitTime = nextPermitTime - now;
+            nextPermitTime += permitInterval;
+        }
+        if (waitTime > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitTime);
+        }
+    }
+
+    private static void increment(Counter counter) {
+        if (counter != null) {
+            counter.increment();
+        }
+    }
+
+    // Flushes queued keys and stops the workers
+    @Override
+    public void close() throws InterruptedException {
+        isRunning = false;
+        if (workers != null) {
+            workers.shutdown();
+            workers.awaitTermination(1, TimeUnit.MINUTES);
+        }
+    }
+}
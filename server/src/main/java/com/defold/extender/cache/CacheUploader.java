@@ -0,0 +1,109 @@
+package com.defold.extender.cache;
+
+import com.defold.extender.log.Markers;
+import com.defold.extender.utils.FileLinkUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashes and uploads files to the data cache in the background.
+ * Files are hardlinked into a staging directory when they are submitted, so the job can delete its files or
+ * replace them with new files while the upload is still pending. The staged link shares the content with the
+ * submitted file, so files must not be modified in place. The staging directory should be on the same filesystem
+ * as the submitted files, otherwise they are copied. Uploads of the same key from different jobs are only done once.
+ * If all workers are busy and the queue is full, new files are dropped instead of slowing down the builds.
+ */
+public class CacheUploader implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CacheUploader.class);
+
+    private final DataCache dataCache;
+    private final CacheKeyGenerator cacheKeyGenerator;
+    // used if no staging directory is given for a file
+    private final File stagingDirectory;
+    private final ThreadPoolExecutor executor;
+    private final Set<String> inFlightKeys = ConcurrentHashMap.newKeySet();
+
+    public CacheUploader(final DataCache dataCache,
+                         final CacheKeyGenerator cacheKeyGenerator,
+                         final File stagingDirectory,
+                         int concurrency,
+                         int queueSize) {
+        this.dataCache = dataCache;
+        this.cacheKeyGenerator = cacheKeyGenerator;
+        this.stagingDirectory = stagingDirectory;
+        this.executor = new ThreadPoolExecutor(concurrency, concurrency, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize), Thread.ofVirtual().name("cache-upload-", 0).factory());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Schedule the file for upload. The file is staged in the default staging directory
+     * @return false if the upload queue is full and the file was dropped
+     */
+    public boolean submit(final File file) throws IOException {
+        return submit(file, stagingDirectory);
+    }
+
+    /**
+     * Schedule the file for upload
+     * @param stagingDirectory where the file is linked until it is uploaded. Created if missing
+     * @return false if the upload queue is full and the file was dropped
+     */
+    public boolean submit(final File file, final File stagingDirectory) throws IOException {
+        if (executor.getQueue().remainingCapacity() == 0) {
+            return false;
+        }
+        // keep the original name, the cache can choose how to store the file by its type
+        final File stagedFile = new File(stagingDirectory, UUID.randomUUID() + "-" + file.getName());
+        FileLinkUtil.linkFile(file, stagedFile);
+        try {
+            executor.execute(() -> upload(file.getName(), stagedFile));
+        } catch (RejectedExecutionException e) {
+            stagedFile.delete();
+            return false;
+        }
+        return true;
+    }
+
+    private void upload(final String name, final File stagedFile) {
+        try {
+            final String key = cacheKeyGenerator.generate(stagedFile);
+            if (!inFlightKeys.add(key)) {
+                LOGGER.debug(String.format("[cache] %s - %s is already uploading", name, key));
+                return;
+            }
+            try {
+                LOGGER.debug(String.format("[cache] %s - %s", name, key));
+                dataCache.put(key, stagedFile);
+            } finally {
+                inFlightKeys.remove(key);
+            }
+        } catch (Exception e) {
+            LOGGER.error(Markers.CACHE_ERROR, "Could not cache file " + name, e);
+        } finally {
+            stagedFile.delete();
+        }
+    }
+
+    public int getPendingCount() {
+        return executor.getQueue().size() + executor.getActiveCount();
+    }
+
+    // Finishes pending uploads. New files are not accepted afterwards
+    @Override
+    public void close() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+    }
+}
@@ -0,0 +1,417 @@
+package com.defold.extender.cache;
+
+import com.defold.extender.log.Markers;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.commons.io.FilenameUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stores large files as chunks split by content (see ContentDefinedChunker) and a manifest.
+ * Chunks are stored by the hash of their content, so regions which are the same in different versions
+ * of a library are stored and uploaded once. The manifest is stored under the file key and lists
+ * the chunk keys. Small files and entries without a manifest header are passed through as they are.
+ * A copy of the manifest is stored under the file key with the MANIFEST_SUFFIX, so chunked entries can be
+ * found by existence checks, without reading the entries which are stored as a whole.
+ * Chunks are written before the manifests, so a manifest refers only to chunks which were stored. The wrapped
+ * cache must store the entries in the order they are put, i.e. it must not write behind.
+ * An entry is reported as cached only if all of its chunks exist, since the storage can remove a chunk
+ * independently of the manifest. Touching an entry touches its manifest copy and its chunks as well.
+ * The manifest copies are read for that and the chunk keys are remembered for the most recently used entries.
+ * Entries which were stored before the manifest copies existed are checked for missing chunks only when they are read.
+ */
+public class ChunkingDataCache implements DataCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChunkingDataCache.class);
+
+    static final byte[] MAGIC = { (byte)0x89, 'D', 'C', 'M', '\r', '\n', 0x1a, '\n' };
+    private static final int MANIFEST_VERSION = 1;
+    static final String MANIFEST_SUFFIX = ".manifest";
+    // how many manifests are remembered to check and touch their chunks together with the file entry
+    private static final int KNOWN_MANIFESTS_SIZE = 10000;
+    // remembered for entries which are stored as a whole
+    private static final List<String> NOT_CHUNKED = List.of();
+    // how many manifests are read in parallel by existsAll() and in the background by touch()
+    private static final int MANIFEST_READ_CONCURRENCY = 8;
+    private static final int MANIFEST_READ_QUEUE_SIZE = 1000;
+
+    private final DataCache dataCache;
+    private final ContentDefinedChunker chunker;
+    private final long minFileSize;
+    // chunk keys by entry key, NOT_CHUNKED for entries stored as a whole
+    private final Map<String, List<String>> knownManifests;
+    private final ThreadPoolExecutor touchExecutor;
+
+    private Counter storedBytesCounter;
+    private Counter deduplicatedBytesCounter;
+
+    /**
+     * @param minFileSize files smaller than this are stored without chunking
+     * @param averageChunkSize expected chunk size in bytes
+     */
+    public ChunkingDataCache(final DataCache dataCache, long minFileSize, int averageChunkSize, MeterRegistry meterRegistry) {
+        this.dataCache = dataCache;
+        this.chunker = new ContentDefinedChunker(averageChunkSize, new CacheKeyGenerator());
+        this.minFileSize = minFileSize;
+        this.knownManifests = new LinkedHashMap<String, List<String>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, List<String>> eldest) {
+                return size() > KNOWN_MANIFESTS_SIZE;
+            }
+        };
+        // touches which need to read a manifest are dropped if the queue is full
+        this.touchExecutor = new ThreadPoolExecutor(MANIFEST_READ_CONCURRENCY, MANIFEST_READ_CONCURRENCY, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(MANIFEST_READ_QUEUE_SIZE), Thread.ofVirtual().name("cache-chunk-touch-", 0).factory(),
+                new ThreadPoolExecutor.DiscardPolicy());
+        this.touchExecutor.allowCoreThreadTimeOut(true);
+
+        if (meterRegistry != null) {
+            storedBytesCounter = meterRegistry.counter("extender.cache.chunks", "result", "stored");
+            deduplicatedBytesCounter = meterRegistry.counter("extender.cache.chunks", "result", "deduplicated");
+        }
+    }
+
+    @Override
+    public InputStream get(final String key) {
+        InputStream inputStream = dataCache.get(key);
+        if (inputStream == null) {
+            return null;
+        }
+        try {
+            BufferedInputStream bufferedStream = new BufferedInputStream(inputStream);
+            bufferedStream.mark(MAGIC.length);
+            byte[] header = bufferedStream.readNBytes(MAGIC.length);
+            if (!Arrays.equals(header, MAGIC)) {
+                bufferedStream.reset();
+                rememberManifest(key, NOT_CHUNKED);
+                return bufferedStream;
+            }
+            List<String> chunkKeys = readManifest(bufferedStream);
+            bufferedStream.close();
+            rememberManifest(key, chunkKeys);
+            // a missing chunk is a cache miss, instead of a failure in the middle of the stream
+            if (!dataCache.existsAll(chunkKeys).containsAll(chunkKeys)) {
+                LOGGER.warn("Cache entry {} is missing chunks", key);
+                return null;
+            }
+            return new ChunkedInputStream(chunkKeys);
+        } catch (IOException e) {
+            LOGGER.error(Markers.CACHE_ERROR, "Failed to read cache manifest " + key, e);
+            try {
+                inputStream.close();
+            } catch (IOException ignored) {
+                // ignore
+            }
+            return null;
+        }
+    }
+
+    @Override
+    public boolean exists(final String key) {
+        return existsAll(List.of(key)).contains(key);
+    }
+
+    // The entries and their manifest copies are checked in one call, the unknown manifests of the chunked entries
+    // are read in parallel and all chunks are checked in one more call
+    @Override
+    public Set<String> existsAll(final Collection<String> keys) {
+        Set<String> checkedKeys = new HashSet<>(keys);
+        for (String key : keys) {
+            checkedKeys.add(getManifestKey(key));
+        }
+        Set<String> existingKeys = dataCache.existsAll(checkedKeys);
+        Set<String> result = new HashSet<>();
+        Map<String, List<String>> chunkKeysByKey = new HashMap<>();
+        List<String> unknownKeys = new ArrayList<>();
+        for (String key : keys) {
+            if (!existingKeys.contains(key)) {
+                continue;
+            }
+            result.add(key);
+            List<String> chunkKeys = getKnownManifest(key);
+            if (chunkKeys != null) {
+                chunkKeysByKey.put(key, chunkKeys);
+            } else if (existingKeys.contains(getManifestKey(key))) {
+                unknownKeys.add(key);
+            } else {
+                chunkKeysByKey.put(key, NOT_CHUNKED);
+            }
+        }
+        chunkKeysByKey.putAll(readChunkKeys(unknownKeys));
+        Set<String> chunkKeys = new HashSet<>();
+        for (List<String> entryChunkKeys : chunkKeysByKey.values()) {
+            chunkKeys.addAll(entryChunkKeys);
+        }
+        Set<String> existingChunkKeys = chunkKeys.isEmpty() ? Set.of() : dataCache.existsAll(chunkKeys);
+        result.removeIf(key -> {
+            List<String> entryChunkKeys = chunkKeysByKey.get(key);
+            return entryChunkKeys == null || !existingChunkKeys.containsAll(entryChunkKeys);
+        });
+        return result;
+    }
+
+    // The manifest copy and the chunks are touched together with the entry. Unknown manifests are read in the background
+    @Override
+    public void touch(final String key) {
+        dataCache.touch(key);
+        List<String> chunkKeys = getKnownManifest(key);
+        if (chunkKeys != null) {
+            if (!chunkKeys.isEmpty()) {
+                dataCache.touch(getManifestKey(key));
+                touchChunks(chunkKeys);
+            }
+            return;
+        }
+        touchExecutor.execute(() -> {
+            try {
+                List<String> readChunkKeys = readChunkKeys(key);
+                if (!readChunkKeys.isEmpty()) {
+                    dataCache.touch(getManifestKey(key));
+                    touchChunks(readChunkKeys);
+                }
+            } catch (IOException e) {
+                LOGGER.warn("Failed to read cache manifest {}: {}", key, e.getMessage());
+            }
+        });
+    }
+
+    private void touchChunks(final List<String> chunkKeys) {
+        for (String chunkKey : chunkKeys) {
+            dataCache.touch(chunkKey);
+        }
+    }
+
+    private List<String> getKnownManifest(final String key) {
+        synchronized (knownManifests) {
+            return knownManifests.get(key);
+        }
+    }
+
+    static String getManifestKey(final String key) {
+        return key + MANIFEST_SUFFIX;
+    }
+
+    // Chunk keys of the entries whose manifest copies could be read
+    private Map<String, List<String>> readChunkKeys(final List<String> keys) {
+        Map<String, List<String>> result = new HashMap<>();
+        if (keys.isEmpty()) {
+            return result;
+        }
+        List<Callable<List<String>>> callables = new ArrayList<>();
+        for (String key : keys) {
+            callables.add(() -> readChunkKeys(key));
+        }
+        try (ExecutorService executor = Executors.newFixedThreadPool(MANIFEST_READ_CONCURRENCY, Thread.ofVirtual().name("cache-manifest-", 0).factory())) {
+            List<Future<List<String>>> futures = executor.invokeAll(callables);
+            for (int i = 0; i < keys.size(); ++i) {
+                try {
+                    result.put(keys.get(i), futures.get(i).get());
+                } catch (ExecutionException e) {
+                    LOGGER.warn("Failed to read cache manifest {}: {}", keys.get(i), e.getCause().getMessage());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return result;
+    }
+
+    // Reads the manifest copy of the entry. Entries without a copy are stored as a whole
+    private List<String> readChunkKeys(final String key) throws IOException {
+        InputStream inputStream = dataCache.get(getManifestKey(key));
+        List<String> chunkKeys = NOT_CHUNKED;
+        if (inputStream != null) {
+            try (BufferedInputStream bufferedStream = new BufferedInputStream(inputStream)) {
+                byte[] header = bufferedStream.readNBytes(MAGIC.length);
+                if (!Arrays.equals(header, MAGIC)) {
+                    throw new IOException("Invalid cache manifest " + key);
+                }
+                chunkKeys = readManifest(bufferedStream);
+            }
+        }
+        rememberManifest(key, chunkKeys);
+        return chunkKeys;
+    }
+
+    @Override
+    public void put(final String key, final File file) throws IOException {
+        if (file.length() < minFileSize) {
+            dataCache.put(key, file);
+            return;
+        }
+        List<ContentDefinedChunker.Chunk> chunks = chunker.split(file);
+        List<String> chunkKeys = new ArrayList<>();
+        for (ContentDefinedChunker.Chunk chunk : chunks) {
+            chunkKeys.add(chunk.key());
+        }
+        Set<String> existingKeys = new HashSet<>(dataCache.existsAll(chunkKeys));
+
+        // keep the extension, the wrapped cache can choose how to store the chunk by the file type
+        String extension = FilenameUtils.getExtension(file.getName());
+        File chunkFile = Files.createTempFile("cache-chunk", extension.isEmpty() ? "" : "." + extension).toFile();
+        try (RandomAccessFile source = new RandomAccessFile(file, "r")) {
+            byte[] buffer = new byte[chunker.getMaxSize()];
+            for (ContentDefinedChunker.Chunk chunk : chunks) {
+                if (existingKeys.contains(chunk.key())) {
+                    // refresh shared chunks, they are referred by one more manifest now
+                    dataCache.touch(chunk.key());
+                    increment(deduplicatedBytesCounter, chunk.length());
+                    continue;
+                }
+                source.seek(chunk.offset());
+                source.readFully(buffer, 0, chunk.length());
+                Files.write(chunkFile.toPath(), Arrays.copyOf(buffer, chunk.length()));
+                dataCache.put(chunk.key(), chunkFile);
+                existingKeys.add(chunk.key());
+                increment(storedBytesCounter, chunk.length());
+            }
+        } finally {
+            chunkFile.delete();
+        }
+
+        File manifestFile = Files.createTempFile("cache-manifest", ".dcm").toFile();
+        try {
+            writeManifest(manifestFile, chunkKeys);
+            dataCache.put(getManifestKey(key), manifestFile);
+            dataCache.put(key, manifestFile);
+        } finally {
+            manifestFile.delete();
+        }
+        rememberManifest(key, chunkKeys);
+    }
+
+    static void writeManifest(final File manifestFile, final List<String> chunkKeys) throws IOException {
+        try (DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(manifestFile)))) {
+            outputStream.write(MAGIC);
+            outputStream.writeInt(MANIFEST_VERSION);
+            outputStream.writeInt(chunkKeys.size());
+            for (String chunkKey : chunkKeys) {
+                outputStream.writeUTF(chunkKey);
+            }
+        }
+    }
+
+    // reads the manifest after the header
+    static List<String> readManifest(final InputStream inputStream) throws IOException {
+        DataInputStream dataStream = new DataInputStream(inputStream);
+        int version = dataStream.readInt();
+        if (version != MANIFEST_VERSION) {
+            throw new IOException("Unsupported manifest version " + version);
+        }
+        int count = dataStream.readInt();
+        List<String> chunkKeys = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            chunkKeys.add(dataStream.readUTF());
+        }
+        return chunkKeys;
+    }
+
+    private void rememberManifest(final String key, final List<String> chunkKeys) {
+        synchronized (knownManifests) {
+            knownManifests.put(key, chunkKeys);
+        }
+    }
+
+    @Override
+    public void close() throws IOException, InterruptedException {
+        touchExecutor.shutdown();
+        touchExecutor.awaitTermination(1, TimeUnit.MINUTES);
+        dataCache.close();
+    }
+
+    private static void increment(Counter counter, long amount) {
+        if (counter != null) {
+            counter.increment(amount);
+        }
+    }
+
+    // Reads the chunks one after another, a chunk is requested when the previous one is read to the end
+    private class ChunkedInputStream extends InputStream {
+        private final List<String> chunkKeys;
+        private int nextChunk = 0;
+        private InputStream current;
+
+        ChunkedInputStream(final List<String> chunkKeys) {
+            this.chunkKeys = chunkKeys;
+        }
+
+        private boolean openNextChunk() throws IOException {
+            if (current != null) {
+                current.close();
+                current = null;
+            }
+            if (nextChunk == chunkKeys.size()) {
+                return false;
+            }
+            String chunkKey = chunkKeys.get(nextChunk++);
+            current = dataCache.get(chunkKey);
+            if (current == null) {
+                throw new IOException("Missing cache chunk " + chunkKey);
+            }
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int count = read(single, 0, 1);
+            return count == -1 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            while (true) {
+                if (current != null) {
+                    int count = current.read(buffer, offset, length);
+                    if (count != -1) {
+                        return count;
+                    }
+                }
+                if (!openNextChunk()) {
+                    return -1;
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (current != null) {
+                current.close();
+                current = null;
+            }
+            nextChunk = chunkKeys.size();
+        }
+    }
+}
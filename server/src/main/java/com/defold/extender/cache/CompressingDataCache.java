@@ -0,0 +1,171 @@
+package com.defold.extender.cache;
+
+import com.defold.extender.log.Markers;
+import org.apache.commons.compress.compressors.lz4.FramedLZ4CompressorInputStream;
+import org.apache.commons.compress.compressors.lz4.FramedLZ4CompressorOutputStream;
+import org.apache.commons.io.FilenameUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Compresses entries before they are stored in the wrapped cache.
+ * Each stored entry starts with a header which records the codec. Entries without the header were written
+ * without compression and are returned as they are. Entries with the header are always decoded, so entries
+ * written by nodes with compression stay readable when it is disabled: the setting only affects writes.
+ * Files with already compressed formats (archives, images, audio) are stored without compression,
+ * as well as files which don't get smaller.
+ */
+public class CompressingDataCache implements DataCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CompressingDataCache.class);
+
+    // PNG-like signature, so a raw file is very unlikely to start with it
+    static final byte[] MAGIC = { (byte)0x89, 'D', 'C', 'Z', '\r', '\n', 0x1a, '\n' };
+    static final int HEADER_SIZE = MAGIC.length + 1;
+
+    static final byte CODEC_NONE = 0;
+    static final byte CODEC_LZ4 = 1;
+
+    // compressed data is stored only if it is at most this part of the original size
+    private static final double MAX_COMPRESSION_RATIO = 0.9;
+
+    private final DataCache dataCache;
+    private final boolean isCompressionEnabled;
+    private final Set<String> skipExtensions;
+
+    /**
+     * @param isCompressionEnabled false if entries are written without compression. They are decoded in any case
+     */
+    public CompressingDataCache(final DataCache dataCache, boolean isCompressionEnabled, final Collection<String> skipExtensions) {
+        this.dataCache = dataCache;
+        this.isCompressionEnabled = isCompressionEnabled;
+        this.skipExtensions = Set.copyOf(skipExtensions.stream().map(String::toLowerCase).toList());
+    }
+
+    byte selectCodec(final File file) {
+        String extension = FilenameUtils.getExtension(file.getName()).toLowerCase();
+        return skipExtensions.contains(extension) ? CODEC_NONE : CODEC_LZ4;
+    }
+
+    @Override
+    public InputStream get(final String key) {
+        InputStream inputStream = dataCache.get(key);
+        if (inputStream == null) {
+            return null;
+        }
+        try {
+            return decode(inputStream);
+        } catch (IOException e) {
+            LOGGER.error(Markers.CACHE_ERROR, "Failed to read cache entry " + key, e);
+            closeQuietly(inputStream);
+            return null;
+        }
+    }
+
+    static InputStream decode(final InputStream inputStream) throws IOException {
+        BufferedInputStream bufferedStream = new BufferedInputStream(inputStream);
+        bufferedStream.mark(HEADER_SIZE);
+        byte[] header = bufferedStream.readNBytes(HEADER_SIZE);
+        if (header.length < HEADER_SIZE || !Arrays.equals(header, 0, MAGIC.length, MAGIC, 0, MAGIC.length)) {
+            // entry written without compression layer
+            bufferedStream.reset();
+            return bufferedStream;
+        }
+        byte codec = header[MAGIC.length];
+        switch (codec) {
+            case CODEC_NONE:
+                return bufferedStream;
+            case CODEC_LZ4:
+                return new FramedLZ4CompressorInputStream(bufferedStream);
+            default:
+                throw new IOException("Unknown cache entry codec " + codec);
+        }
+    }
+
+    @Override
+    public boolean exists(final String key) {
+        return dataCache.exists(key);
+    }
+
+    @Override
+    public Set<String> existsAll(final Collection<String> keys) {
+        return dataCache.existsAll(keys);
+    }
+
+    @Override
+    public void touch(final String key) {
+        dataCache.touch(key);
+    }
+
+    @Override
+    public void put(final String key, final File file) throws IOException {
+        // a raw file which starts with the header gets a header of its own, so it isn't decoded by mistake
+        if (!isCompressionEnabled && !startsWithMagic(file)) {
+            dataCache.put(key, file);
+            return;
+        }
+        File encodedFile = Files.createTempFile("cache-entry", ".dcz").toFile();
+        try {
+            byte codec = isCompressionEnabled ? selectCodec(file) : CODEC_NONE;
+            if (codec == CODEC_LZ4) {
+                encode(file, encodedFile, CODEC_LZ4);
+                if (encodedFile.length() > file.length() * MAX_COMPRESSION_RATIO) {
+                    codec = CODEC_NONE;
+                }
+            }
+            if (codec == CODEC_NONE) {
+                encode(file, encodedFile, CODEC_NONE);
+            }
+            dataCache.put(key, encodedFile);
+        } finally {
+            encodedFile.delete();
+        }
+    }
+
+    static void encode(final File file, final File encodedFile, byte codec) throws IOException {
+        try (InputStream inputStream = new FileInputStream(file);
+             OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(encodedFile))) {
+            outputStream.write(MAGIC);
+            outputStream.write(codec);
+            if (codec == CODEC_LZ4) {
+                try (OutputStream compressedStream = new FramedLZ4CompressorOutputStream(outputStream)) {
+                    inputStream.transferTo(compressedStream);
+                }
+            } else {
+                inputStream.transferTo(outputStream);
+            }
+        }
+    }
+
+    private static boolean startsWithMagic(final File file) throws IOException {
+        try (InputStream inputStream = new FileInputStream(file)) {
+            return Arrays.equals(inputStream.readNBytes(MAGIC.length), MAGIC);
+        }
+    }
+
+    private static void closeQuietly(final InputStream inputStream) {
+        try {
+            inputStream.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    @Override
+    public void close() throws IOException, InterruptedException {
+        dataCache.close();
+    }
+}
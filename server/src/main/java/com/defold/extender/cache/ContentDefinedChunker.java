@@ -0,0 +1,88 @@
+package com.defold.extender.cache;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Splits files into chunks at positions chosen by the content (gear rolling hash).
+ * An insertion or removal in a file moves only the nearby chunk boundaries, so the other chunks
+ * of two versions of a library are the same and have the same keys.
+ */
+class ContentDefinedChunker {
+
+    record Chunk(long offset, int length, String key) {}
+
+    // Note: If you change the table or the seed, all stored chunks are different
+    private static final long[] GEAR = new long[256];
+    static {
+        Random random = new Random(0x44454644L);
+        for (int i = 0; i < GEAR.length; ++i) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    private final int minSize;
+    private final int maxSize;
+    private final long mask;
+    private final CacheKeyGenerator cacheKeyGenerator;
+
+    /**
+     * @param averageSize expected chunk size, rounded down to a power of two.
+     *                    Chunks are between a quarter and four times this size
+     */
+    ContentDefinedChunker(int averageSize, CacheKeyGenerator cacheKeyGenerator) {
+        int bits = 31 - Integer.numberOfLeadingZeros(averageSize);
+        this.minSize = (1 << bits) / 4;
+        this.maxSize = (1 << bits) * 4;
+        // the top bits of the hash depend on the last 64 bytes
+        this.mask = ((1L << bits) - 1) << (64 - bits);
+        this.cacheKeyGenerator = cacheKeyGenerator;
+    }
+
+    int getMaxSize() {
+        return maxSize;
+    }
+
+    List<Chunk> split(final File file) throws IOException {
+        try (InputStream inputStream = new BufferedInputStream(new FileInputStream(file))) {
+            return split(inputStream);
+        }
+    }
+
+    List<Chunk> split(final InputStream inputStream) throws IOException {
+        List<Chunk> chunks = new ArrayList<>();
+        MessageDigest digest = cacheKeyGenerator.getDigest();
+        byte[] buffer = new byte[8192];
+        long offset = 0;
+        int length = 0;
+        long hash = 0;
+        int count;
+        while ((count = inputStream.read(buffer)) > 0) {
+            int start = 0;
+            for (int i = 0; i < count; ++i) {
+                hash = (hash << 1) + GEAR[buffer[i] & 0xff];
+                ++length;
+                if ((length >= minSize && (hash & mask) == 0) || length >= maxSize) {
+                    digest.update(buffer, start, i + 1 - start);
+                    chunks.add(new Chunk(offset, length, cacheKeyGenerator.generate(digest)));
+                    offset += length;
+                    start = i + 1;
+                    length = 0;
+                    hash = 0;
+                }
+            }
+            digest.update(buffer, start, count - start);
+        }
+        if (length > 0) {
+            chunks.add(new Chunk(offset, length, cacheKeyGenerator.generate(digest)));
+        }
+        return chunks;
+    }
+}
@@ -3,10 +3,28 @@ package com.defold.extender.cache;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
 
 public interface DataCache {
     InputStream get(String key);
     boolean exists(String key);
     void touch(String key);
     void put(String key, File file) throws IOException;
+
+    // Returns the subset of keys which exist in the cache. Remote caches should check all keys in a few requests
+    default Set<String> existsAll(Collection<String> keys) {
+        Set<String> result = new HashSet<>();
+        for (String key : keys) {
+            if (exists(key)) {
+                result.add(key);
+            }
+        }
+        return result;
+    }
+
+    // Stops background work and releases connections. Pending writes are finished first
+    default void close() throws IOException, InterruptedException {
+    }
 }
@@ -1,11 +1,13 @@
 package com.defold.extender.cache;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.util.Arrays;
 
 @Service
 public class DataCacheFactory {
@@ -14,23 +16,101 @@ public class DataCacheFactory {
 
     private static final String STORE_TYPE_GCP = "GCP";
     private static final String STORE_TYPE_LOCAL = "LOCAL";
+    // plain GET/HEAD/PUT requests
+    private static final String STORE_TYPE_HTTP = "HTTP";
+    // S3-compatible object storage
+    private static final String STORE_TYPE_S3 = "S3";
+    // local disk cache in front of a remote cache
+    private static final String STORE_TYPE_TIERED = "TIERED";
 
     private final boolean isEnabled;
     private final String storeType;
     private final String prefix;
     private final String baseDirectory;
     private final String bucketName;
+    private final int presenceIndexSize;
+    private final long presenceIndexTimeToLive;
+    private final long localMaxSize;
+    private final long localEvictionInterval;
+    private final String httpUrl;
+    private final String httpAuthorization;
+    private final long httpPartSize;
+    private final int httpConcurrency;
+    private final String s3AccessKey;
+    private final String s3SecretKey;
+    private final String s3Region;
+    private final String tieredRemoteType;
+    private final int tieredWriteConcurrency;
+    private final int tieredWriteQueueSize;
+    private final int touchConcurrency;
+    private final int touchQueueSize;
+    private final long touchWindow;
+    private final int touchMaxRate;
+    private final boolean isCompressionEnabled;
+    private final String[] compressionSkipExtensions;
+    private final boolean isChunkingEnabled;
+    private final long chunkingMinFileSize;
+    private final int chunkingAverageChunkSize;
+    private final MeterRegistry meterRegistry;
 
     public DataCacheFactory(@Value("${extender.cache.enabled}") boolean isEnabled,
                             @Value("${extender.cache.type:}") String storeType,
                             @Value("${extender.cache.prefix:}") String prefix,
                             @Value("${extender.cache.local.basedir:}") String baseDirectory,
-                            @Value("${extender.cache.gcp.bucket:}") String bucketName) {
+                            @Value("${extender.cache.gcp.bucket:}") String bucketName,
+                            @Value("${extender.cache.presence-index.size:100000}") int presenceIndexSize,
+                            @Value("${extender.cache.presence-index.ttl:600000}") long presenceIndexTimeToLive,
+                            @Value("${extender.cache.local.max-size:0}") long localMaxSize,
+                            @Value("${extender.cache.local.eviction-interval:60000}") long localEvictionInterval,
+                            @Value("${extender.cache.http.url:}") String httpUrl,
+                            @Value("${extender.cache.http.authorization:}") String httpAuthorization,
+                            @Value("${extender.cache.http.part-size:8388608}") long httpPartSize,
+                            @Value("${extender.cache.http.concurrency:8}") int httpConcurrency,
+                            @Value("${extender.cache.s3.access-key:}") String s3AccessKey,
+                            @Value("${extender.cache.s3.secret-key:}") String s3SecretKey,
+                            @Value("${extender.cache.s3.region:us-east-1}") String s3Region,
+                            @Value("${extender.cache.tiered.remote-type:GCP}") String tieredRemoteType,
+                            @Value("${extender.cache.tiered.write-concurrency:4}") int tieredWriteConcurrency,
+                            @Value("${extender.cache.tiered.write-queue-size:1000}") int tieredWriteQueueSize,
+                            @Value("${extender.cache.touch.concurrency:4}") int touchConcurrency,
+                            @Value("${extender.cache.touch.queue-size:10000}") int touchQueueSize,
+                            @Value("${extender.cache.touch.window:600000}") long touchWindow,
+                            @Value("${extender.cache.touch.max-rate:50}") int touchMaxRate,
+                            @Value("${extender.cache.compression.enabled:false}") boolean isCompressionEnabled,
+                            @Value("${extender.cache.compression.skip-extensions:}") String[] compressionSkipExtensions,
+                            @Value("${extender.cache.chunking.enabled:false}") boolean isChunkingEnabled,
+                            @Value("${extender.cache.chunking.min-file-size:1048576}") long chunkingMinFileSize,
+                            @Value("${extender.cache.chunking.average-chunk-size:65536}") int chunkingAverageChunkSize,
+                            MeterRegistry meterRegistry) {
         this.isEnabled = isEnabled;
         this.storeType = storeType;
         this.prefix = prefix;
         this.baseDirectory = baseDirectory;
         this.bucketName = bucketName;
+        this.presenceIndexSize = presenceIndexSize;
+        this.presenceIndexTimeToLive = presenceIndexTimeToLive;
+        this.localMaxSize = localMaxSize;
+        this.localEvictionInterval = localEvictionInterval;
+        this.httpUrl = httpUrl;
+        this.httpAuthorization = httpAuthorization;
+        this.httpPartSize = httpPartSize;
+        this.httpConcurrency = httpConcurrency;
+        this.s3AccessKey = s3AccessKey;
+        this.s3SecretKey = s3SecretKey;
+        this.s3Region = s3Region;
+        this.tieredRemoteType = tieredRemoteType;
+        this.tieredWriteConcurrency = tieredWriteConcurrency;
+        this.tieredWriteQueueSize = tieredWriteQueueSize;
+        this.touchConcurrency = touchConcurrency;
+        this.touchQueueSize = touchQueueSize;
+        this.touchWindow = touchWindow;
+        this.touchMaxRate = touchMaxRate;
+        this.isCompressionEnabled = isCompressionEnabled;
+        this.compressionSkipExtensions = compressionSkipExtensions;
+        this.isChunkingEnabled = isChunkingEnabled;
+        this.chunkingMinFileSize = chunkingMinFileSize;
+        this.chunkingAverageChunkSize = chunkingAverageChunkSize;
+        this.meterRegistry = meterRegistry;
     }
 
     public DataCache createCache() {
@@ -39,18 +119,72 @@ public class DataCacheFactory {
             return new DummyDataCache();
         }
 
-        if (STORE_TYPE_GCP.equals(storeType)) {
-            LOGGER.info("Creating GCP cache with bucket name {}", bucketName);
-            return new GCPDataCache(bucketName, prefix);
-        } else if (STORE_TYPE_LOCAL.equals(storeType)) {
-            LOGGER.info("Creating local disk cache in directory {}", baseDirectory);
-            try {
-                return new LocalDiskDataCache(baseDirectory);
-            } catch (IOException e) {
-                throw new IllegalArgumentException("Illegal base directory for local disk cache: " + baseDirectory, e);
+        if (STORE_TYPE_LOCAL.equals(storeType)) {
+            return createEntryCache(instrument(createLocalCache(), storeType));
+        } else if (STORE_TYPE_TIERED.equals(storeType)) {
+            // the local tier keeps a copy of every entry which was read or written
+            if (localMaxSize <= 0) {
+                throw new IllegalArgumentException("extender.cache.local.max-size must be set for a tiered cache");
             }
+            LOGGER.info("Creating tiered cache");
+            // the local tier stores whole files. Chunks are written to the remote tier by the write-behind,
+            // which stores the chunks of a file before its manifest
+            return instrument(new TieredDataCache(createLocalCache(), createEntryCache(createRemoteCache(tieredRemoteType)),
+                    tieredWriteConcurrency, tieredWriteQueueSize, meterRegistry), storeType);
         } else {
-            throw new IllegalArgumentException(String.format("No cache store of type %s implemented!", storeType));
+            return createEntryCache(createRemoteCache(storeType));
+        }
+    }
+
+    // Adds compression and chunking of entries in front of the store
+    private DataCache createEntryCache(DataCache dataCache) {
+        // compressed entries are decoded even if compression is disabled, they may be written by other nodes
+        if (isCompressionEnabled) {
+            LOGGER.info("Enabling compression of cache entries");
+        }
+        dataCache = new CompressingDataCache(dataCache, isCompressionEnabled, Arrays.asList(compressionSkipExtensions));
+        // chunks are split from the original files and compressed one by one
+        if (isChunkingEnabled) {
+            LOGGER.info("Enabling chunked storage of large cache entries");
+            dataCache = new ChunkingDataCache(dataCache, chunkingMinFileSize, chunkingAverageChunkSize, meterRegistry);
+        }
+        return dataCache;
+    }
+
+    private DataCache instrument(final DataCache dataCache, final String type) {
+        return new InstrumentedDataCache(dataCache, type.toLowerCase(), meterRegistry);
+    }
+
+    private DataCache createRemoteCache(final String type) {
+        if (STORE_TYPE_GCP.equals(type)) {
+            return instrument(createGCPCache(), type);
+        } else if (STORE_TYPE_HTTP.equals(type)) {
+            LOGGER.info("Creating HTTP cache with url {}", httpUrl);
+            return instrument(new HttpDataCache(httpUrl, prefix, httpAuthorization, null,
+                    new CachePresenceIndex(presenceIndexSize, presenceIndexTimeToLive), null, httpPartSize, httpConcurrency), type);
+        } else if (STORE_TYPE_S3.equals(type)) {
+            LOGGER.info("Creating S3 cache with url {}", httpUrl);
+            return instrument(new HttpDataCache(httpUrl, prefix, null, new S3RequestSigner(s3AccessKey, s3SecretKey, s3Region),
+                    new CachePresenceIndex(presenceIndexSize, presenceIndexTimeToLive),
+                    new CacheTouchQueue(touchConcurrency, touchQueueSize, touchWindow, touchMaxRate, meterRegistry),
+                    httpPartSize, httpConcurrency), type);
+        } else {
+            throw new IllegalArgumentException(String.format("No cache store of type %s implemented!", type));
+        }
+    }
+
+    private GCPDataCache createGCPCache() {
+        LOGGER.info("Creating GCP cache with bucket name {}", bucketName);
+        return new GCPDataCache(bucketName, prefix, new CachePresenceIndex(presenceIndexSize, presenceIndexTimeToLive),
+                new CacheTouchQueue(touchConcurrency, touchQueueSize, touchWindow, touchMaxRate, meterRegistry));
+    }
+
+    private LocalDiskDataCache createLocalCache() {
+        LOGGER.info("Creating local disk cache in directory {}", baseDirectory);
+        try {
+            return new LocalDiskDataCache(baseDirectory, localMaxSize, localEvictionInterval, meterRegistry);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Illegal base directory for local disk cache: " + baseDirectory, e);
         }
     }
 }
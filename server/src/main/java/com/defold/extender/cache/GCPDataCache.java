@@ -6,7 +6,11 @@ import java.io.InputStream;
 import java.io.FileInputStream;
 import java.nio.channels.Channels;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 
 import org.slf4j.Logger;
@@ -28,40 +32,88 @@ private static final Logger LOGGER = LoggerFactory.getLogger(GCPDataCache.class)
     private String prefix;
 
     private Set<String> currentUploads = new HashSet<>();
-    private Set<String> currentUpdates = new HashSet<>();
+    private CachePresenceIndex presenceIndex;
+    private CacheTouchQueue touchQueue;
 
-    public GCPDataCache(final String bucketName, final String prefix) {
+    // storage batch requests are limited to 100 calls
+    private static final int MAX_BATCH_SIZE = 100;
+
+    public GCPDataCache(final String bucketName, final String prefix, final CachePresenceIndex presenceIndex, final CacheTouchQueue touchQueue) {
         this.storage = StorageOptions.getDefaultInstance().getService();
         this.bucketName = bucketName;
         this.prefix = prefix;
+        this.presenceIndex = presenceIndex;
+        this.touchQueue = touchQueue;
+        this.touchQueue.start(this::touchBlob);
     }
 
     @Override
     public InputStream get(String key) {
         Blob blob = storage.get(this.bucketName, getBlobKey(key));
+        if (blob == null) {
+            presenceIndex.remove(key);
+            return null;
+        }
         return Channels.newInputStream(blob.reader());
     }
 
     @Override
     public boolean exists(String key) {
+        if (presenceIndex.contains(key)) {
+            return true;
+        }
         Blob blob = storage.get(this.bucketName, getBlobKey(key));
-        return blob != null && blob.exists();
+        boolean exists = blob != null && blob.exists();
+        if (exists) {
+            presenceIndex.add(key);
+        }
+        return exists;
     }
 
     @Override
-    public void touch(String key) {
-        String fullKey = getBlobKey(key);
-        // synchronized on full
-        synchronized(currentUpdates) {
-            if (currentUpdates.contains(fullKey)) {
-                return;
+    public Set<String> existsAll(Collection<String> keys) {
+        Set<String> result = new HashSet<>();
+        Set<String> unknownKeySet = new LinkedHashSet<>();
+        for (String key : keys) {
+            if (presenceIndex.contains(key)) {
+                result.add(key);
             } else {
-                currentUpdates.add(fullKey);
+                unknownKeySet.add(key);
             }
         }
+        List<String> unknownKeys = new ArrayList<>(unknownKeySet);
+        for (int i = 0; i < unknownKeys.size(); i += MAX_BATCH_SIZE) {
+            List<String> batchKeys = unknownKeys.subList(i, Math.min(i + MAX_BATCH_SIZE, unknownKeys.size()));
+            List<BlobId> blobIds = new ArrayList<>();
+            for (String key : batchKeys) {
+                blobIds.add(BlobId.of(this.bucketName, getBlobKey(key)));
+            }
+            // missing blobs are returned as null
+            List<Blob> blobs = storage.get(blobIds);
+            for (int j = 0; j < batchKeys.size(); j++) {
+                Blob blob = blobs.get(j);
+                if (blob != null && blob.exists()) {
+                    result.add(batchKeys.get(j));
+                    presenceIndex.add(batchKeys.get(j));
+                }
+            }
+        }
+        return result;
+    }
+
+    // Touches are deduplicated and flushed in the background, so the caller doesn't wait for storage requests
+    @Override
+    public void touch(String key) {
+        touchQueue.enqueue(key);
+    }
+
+    private void touchBlob(String key) {
+        String fullKey = getBlobKey(key);
         try {
             Blob blob = storage.get(this.bucketName, fullKey);
-            if (blob != null) {
+            if (blob == null) {
+                presenceIndex.remove(key);
+            } else {
                 OffsetDateTime now = OffsetDateTime.now();
                 OffsetDateTime creationTime = blob.getCreateTimeOffsetDateTime();
                 // once per day
@@ -74,10 +126,6 @@ private static final Logger LOGGER = LoggerFactory.getLogger(GCPDataCache.class)
             }
         } catch (StorageException exc) {
             LOGGER.warn("Exception when touch object '{}' {}", fullKey, exc.getReason());
-        } finally {
-            synchronized (currentUpdates) {
-                currentUpdates.remove(fullKey);
-            }
         }
     }
 
@@ -87,6 +135,9 @@ private static final Logger LOGGER = LoggerFactory.getLogger(GCPDataCache.class)
         BlobId blobId = BlobId.of(this.bucketName, blobKey);
         BlobInfo blobInfo = BlobInfo.newBuilder(blobId).build();
     
+        if (presenceIndex.contains(key)) {
+            return;
+        }
         Blob blob = this.storage.get(this.bucketName, blobKey);
         if (blob == null) {
             // For a target object that does not yet exist, set the DoesNotExist precondition.
@@ -101,6 +152,7 @@ private static final Logger LOGGER = LoggerFactory.getLogger(GCPDataCache.class)
             }
             try (InputStream in = new FileInputStream(file)) {
                 this.storage.createFrom(blobInfo, in, precondition);
+                presenceIndex.add(key);
             } catch (StorageException storageExc) {
                 // in case if some concurrent requests uploads the same thing at the same time precondition can fail
                 // we can catch exception and continue working without any issue because file was uploaded by another job
@@ -110,9 +162,16 @@ private static final Logger LOGGER = LoggerFactory.getLogger(GCPDataCache.class)
                     currentUploads.remove(blobKey);
                 }
             }
+        } else {
+            presenceIndex.add(key);
         }
     }
     
+    @Override
+    public void close() throws InterruptedException {
+        touchQueue.close();
+    }
+
     private String getBlobKey(final String key) {
         if (prefix == null || prefix.isEmpty()) {
             return key;
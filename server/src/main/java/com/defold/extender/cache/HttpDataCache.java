@@ -0,0 +1,347 @@
+package com.defold.extender.cache;
+
+import com.defold.extender.log.Markers;
+import com.defold.extender.utils.RangedDownloader;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpDelete;
+import org.apache.http.client.methods.HttpHead;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.FileEntity;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Cache in a blob store which is accessed with plain HTTP GET/HEAD/PUT requests, e.g. a WebDAV enabled
+ * web server or an S3-compatible object storage.
+ * With a request signer the S3 API is used: requests are signed, large files are uploaded in parts
+ * (multipart upload) and entries are refreshed by copying them onto themselves.
+ * Large entries are downloaded as several ranges in parallel.
+ * Presence checks, range downloads and multipart uploads run in separate pools, so one kind of request
+ * can't starve the others, e.g. a write-behind upload waiting for its parts while downloads fill the pool.
+ */
+public class HttpDataCache implements DataCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HttpDataCache.class);
+
+    private static final Pattern UPLOAD_ID_PATTERN = Pattern.compile("<UploadId>([^<]+)</UploadId>");
+
+    private final CloseableHttpClient httpClient;
+    private final String baseUrl;
+    private final String prefix;
+    private final String authorization;
+    private final S3RequestSigner signer;
+    private final CachePresenceIndex presenceIndex;
+    private final CacheTouchQueue touchQueue;
+    private final long partSize;
+    private final ExecutorService existsExecutor;
+    private final ExecutorService downloadExecutor;
+    private final ExecutorService uploadExecutor;
+    private final RangedDownloader downloader;
+
+    /**
+     * @param baseUrl url of the bucket or the directory, e.g. https://storage.example.com/extender-cache.
+     *                With the S3 API it must be a path-style url (https://host/bucket), since entries are
+     *                refreshed by copying "bucket/key" onto itself
+     * @param authorization value of the Authorization header for plain HTTP requests. Can be empty
+     * @param signer signs requests with the S3 API. Null for plain HTTP requests
+     * @param touchQueue queue which refreshes the entries. Null if entries can't be refreshed (plain HTTP)
+     * @param partSize size of ranges for downloads and parts for multipart uploads
+     * @param concurrency how many requests of each kind (presence checks, downloads, uploads) run in parallel
+     */
+    public HttpDataCache(final String baseUrl,
+                         final String prefix,
+                         final String authorization,
+                         final S3RequestSigner signer,
+                         final CachePresenceIndex presenceIndex,
+                         final CacheTouchQueue touchQueue,
+                         long partSize,
+                         int concurrency) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.prefix = prefix;
+        this.authorization = authorization;
+        this.signer = signer;
+        this.presenceIndex = presenceIndex;
+        this.touchQueue = touchQueue;
+        this.partSize = partSize;
+
+        // one set of connections per pool and some for the requests of the callers
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(concurrency * 4);
+        connectionManager.setDefaultMaxPerRoute(concurrency * 4);
+        this.httpClient = HttpClients.custom().setConnectionManager(connectionManager).build();
+        this.existsExecutor = Executors.newFixedThreadPool(concurrency, Thread.ofVirtual().name("http-cache-exists-", 0).factory());
+        this.downloadExecutor = Executors.newFixedThreadPool(concurrency, Thread.ofVirtual().name("http-cache-download-", 0).factory());
+        this.uploadExecutor = Executors.newFixedThreadPool(concurrency, Thread.ofVirtual().name("http-cache-upload-", 0).factory());
+        // a failed range is requested again up to 3 times
+        this.downloader = new RangedDownloader(httpClient, downloadExecutor, partSize, 3, this::authorize);
+
+        if (this.touchQueue != null) {
+            this.touchQueue.start(this::touchBlob);
+        }
+    }
+
+    @Override
+    public InputStream get(final String key) {
+        try {
+            InputStream inputStream = downloader.open(getUri(key, null));
+            if (inputStream == null) {
+                presenceIndex.remove(key);
+            }
+            return inputStream;
+        } catch (IOException e) {
+            LOGGER.error(Markers.CACHE_ERROR, "Failed to get cache entry " + key, e);
+            presenceIndex.remove(key);
+            return null;
+        }
+    }
+
+    @Override
+    public boolean exists(final String key) {
+        if (presenceIndex.contains(key)) {
+            return true;
+        }
+        try (CloseableHttpResponse response = execute(new HttpHead(getUri(key, null)))) {
+            boolean exists = response.getStatusLine().getStatusCode() == HttpStatus.SC_OK;
+            if (exists) {
+                presenceIndex.add(key);
+            }
+            return exists;
+        } catch (IOException e) {
+            LOGGER.warn("Failed to check cache entry {}: {}", key, e.getMessage());
+            return false;
+        }
+    }
+
+    // There is no batch request, so the keys are checked in parallel
+    @Override
+    public Set<String> existsAll(final Collection<String> keys) {
+        Set<String> result = new HashSet<>();
+        List<String> keyList = new ArrayList<>(keys);
+        List<Callable<Boolean>> callables = new ArrayList<>();
+        for (String key : keyList) {
+            callables.add(() -> exists(key));
+        }
+        try {
+            List<Future<Boolean>> futures = existsExecutor.invokeAll(callables);
+            for (int i = 0; i < keyList.size(); ++i) {
+                if (futures.get(i).get()) {
+                    result.add(keyList.get(i));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            LOGGER.warn("Failed to check cache entries: {}", e.getMessage());
+        }
+        return result;
+    }
+
+    @Override
+    public void touch(final String key) {
+        if (touchQueue != null) {
+            touchQueue.enqueue(key);
+        }
+    }
+
+    // Refreshes the modification time once per day, so the lifecycle rules of the storage don't remove the entry
+    private void touchBlob(final String key) {
+        try {
+            Date lastModified;
+            try (CloseableHttpResponse response = execute(new HttpHead(getUri(key, null)))) {
+                Header header = response.getFirstHeader("Last-Modified");
+                if (response.getStatusLine().getStatusCode() == HttpStatus.SC_NOT_FOUND) {
+                    presenceIndex.remove(key);
+                    return;
+                }
+                if (response.getStatusLine().getStatusCode() != HttpStatus.SC_OK || header == null) {
+                    return;
+                }
+                lastModified = DateUtils.parseDate(header.getValue());
+            }
+            if (lastModified == null || lastModified.toInstant().plus(1, ChronoUnit.DAYS).isAfter(Instant.now())) {
+                LOGGER.debug("Cache update for {} skipped", key);
+                return;
+            }
+            URI uri = getUri(key, null);
+            HttpPut request = new HttpPut(uri);
+            request.setHeader("x-amz-copy-source", getCopySource(uri));
+            request.setHeader("x-amz-metadata-directive", "REPLACE");
+            try (CloseableHttpResponse response = execute(request)) {
+                EntityUtils.consumeQuietly(response.getEntity());
+                checkStatus(response, "copy " + key);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Exception when touch object '{}' {}", key, e.getMessage());
+        }
+    }
+
+    @Override
+    public void put(final String key, final File file) throws IOException {
+        if (exists(key)) {
+            return;
+        }
+        if (signer != null && file.length() > partSize) {
+            putMultipart(key, file);
+        } else {
+            HttpPut request = new HttpPut(getUri(key, null));
+            request.setEntity(new FileEntity(file, ContentType.APPLICATION_OCTET_STREAM));
+            try (CloseableHttpResponse response = execute(request)) {
+                EntityUtils.consumeQuietly(response.getEntity());
+                checkStatus(response, "upload " + key);
+            }
+        }
+        presenceIndex.add(key);
+    }
+
+    // S3 multipart upload: the parts are uploaded in parallel and joined by the storage
+    private void putMultipart(final String key, final File file) throws IOException {
+        String uploadId;
+        try (CloseableHttpResponse response = execute(new HttpPost(getUri(key, "uploads")))) {
+            checkStatus(response, "start multipart upload " + key);
+            Matcher matcher = UPLOAD_ID_PATTERN.matcher(EntityUtils.toString(response.getEntity()));
+            if (!matcher.find()) {
+                throw new IOException("Missing upload id for " + key);
+            }
+            uploadId = matcher.group(1);
+        }
+        try {
+            List<Callable<String>> callables = new ArrayList<>();
+            int partNumber = 1;
+            for (long offset = 0; offset < file.length(); offset += partSize, ++partNumber) {
+                final long partOffset = offset;
+                final long partLength = Math.min(partSize, file.length() - offset);
+                final String query = String.format("partNumber=%d&uploadId=%s", partNumber, S3RequestSigner.encode(uploadId));
+                callables.add(() -> {
+                    try (FileInputStream inputStream = new FileInputStream(file)) {
+                        inputStream.getChannel().position(partOffset);
+                        HttpPut request = new HttpPut(getUri(key, query));
+                        request.setEntity(new InputStreamEntity(inputStream, partLength, ContentType.APPLICATION_OCTET_STREAM));
+                        try (CloseableHttpResponse response = execute(request)) {
+                            EntityUtils.consumeQuietly(response.getEntity());
+                            checkStatus(response, "upload part of " + key);
+                            return response.getFirstHeader("ETag").getValue();
+                        }
+                    }
+                });
+            }
+            StringBuilder body = new StringBuilder("<CompleteMultipartUpload>");
+            List<Future<String>> futures = uploadExecutor.invokeAll(callables);
+            for (int i = 0; i < futures.size(); ++i) {
+                body.append(String.format("<Part><PartNumber>%d</PartNumber><ETag>%s</ETag></Part>", i + 1, futures.get(i).get()));
+            }
+            body.append("</CompleteMultipartUpload>");
+
+            HttpPost request = new HttpPost(getUri(key, "uploadId=" + S3RequestSigner.encode(uploadId)));
+            request.setEntity(new StringEntity(body.toString(), ContentType.APPLICATION_XML));
+            try (CloseableHttpResponse response = execute(request)) {
+                EntityUtils.consumeQuietly(response.getEntity());
+                checkStatus(response, "complete multipart upload " + key);
+            }
+        } catch (IOException | InterruptedException | ExecutionException e) {
+            abortMultipart(key, uploadId);
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            throw e instanceof IOException ? (IOException)e : new IOException("Multipart upload of " + key + " failed", e);
+        }
+    }
+
+    private void abortMultipart(final String key, final String uploadId) {
+        try (CloseableHttpResponse response = execute(new HttpDelete(getUri(key, "uploadId=" + S3RequestSigner.encode(uploadId))))) {
+            EntityUtils.consumeQuietly(response.getEntity());
+        } catch (IOException e) {
+            LOGGER.warn("Failed to abort multipart upload of {}: {}", key, e.getMessage());
+        }
+    }
+
+    private CloseableHttpResponse execute(final HttpRequestBase request) throws IOException {
+        authorize(request);
+        return httpClient.execute(request);
+    }
+
+    private void authorize(final HttpRequestBase request) {
+        if (signer != null) {
+            Map<String, String> headers = new HashMap<>();
+            for (Header header : request.getAllHeaders()) {
+                headers.put(header.getName().toLowerCase(), header.getValue());
+            }
+            HttpEntity entity = request instanceof HttpPut put ? put.getEntity() : request instanceof HttpPost post ? post.getEntity() : null;
+            String payloadHash = entity != null ? S3RequestSigner.UNSIGNED_PAYLOAD : S3RequestSigner.EMPTY_PAYLOAD;
+            String signature = signer.sign(request.getMethod(), request.getURI(), headers, payloadHash, ZonedDateTime.now());
+            request.setHeader("x-amz-date", headers.get("x-amz-date"));
+            request.setHeader("x-amz-content-sha256", headers.get("x-amz-content-sha256"));
+            request.setHeader("Authorization", signature);
+        } else if (authorization != null && !authorization.isEmpty()) {
+            request.setHeader("Authorization", authorization);
+        }
+    }
+
+    private static void checkStatus(final CloseableHttpResponse response, final String operation) throws IOException {
+        int status = response.getStatusLine().getStatusCode();
+        if (status < 200 || status >= 300) {
+            throw new IOException(String.format("Failed to %s: status %d", operation, status));
+        }
+    }
+
+    // The copy source is "bucket/key". With a path-style base url the path of the entry starts with the bucket
+    private static String getCopySource(final URI uri) {
+        return uri.getRawPath().substring(1);
+    }
+
+    private URI getUri(final String key, final String query) {
+        String path = prefix == null || prefix.isEmpty() ? key : String.format("%s/%s", prefix, key);
+        return URI.create(String.format("%s/%s%s", baseUrl, path, query != null ? "?" + query : ""));
+    }
+
+    @Override
+    public void close() throws IOException, InterruptedException {
+        if (touchQueue != null) {
+            touchQueue.close();
+        }
+        for (ExecutorService executor : List.of(existsExecutor, downloadExecutor, uploadExecutor)) {
+            executor.shutdown();
+        }
+        for (ExecutorService executor : List.of(existsExecutor, downloadExecutor, uploadExecutor)) {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        httpClient.close();
+    }
+}
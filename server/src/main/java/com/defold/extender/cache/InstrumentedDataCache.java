@@ -0,0 +1,110 @@
+package com.defold.extender.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records latency, errors and hit ratio of the wrapped cache.
+ * The latency of get() is the time until the stream is returned, i.e. the time to the first byte for remote caches.
+ */
+public class InstrumentedDataCache implements DataCache {
+
+    private static final String OPERATION_GET = "get";
+    private static final String OPERATION_EXISTS = "exists";
+    private static final String OPERATION_EXISTS_ALL = "existsAll";
+    private static final String OPERATION_TOUCH = "touch";
+    private static final String OPERATION_PUT = "put";
+
+    private final DataCache dataCache;
+    private final Map<String, Timer> timers = new HashMap<>();
+    private final Map<String, Counter> errorCounters = new HashMap<>();
+    private final Counter hitCounter;
+    private final Counter missCounter;
+
+    public InstrumentedDataCache(final DataCache dataCache, final String backend, final MeterRegistry meterRegistry) {
+        this.dataCache = dataCache;
+        for (String operation : new String[] { OPERATION_GET, OPERATION_EXISTS, OPERATION_EXISTS_ALL, OPERATION_TOUCH, OPERATION_PUT }) {
+            timers.put(operation, Timer.builder("extender.cache.operation")
+                    .tags("operation", operation, "backend", backend)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+            errorCounters.put(operation, meterRegistry.counter("extender.cache.errors", "operation", operation, "backend", backend));
+        }
+        hitCounter = meterRegistry.counter("extender.cache.requests", "result", "hit", "backend", backend);
+        missCounter = meterRegistry.counter("extender.cache.requests", "result", "miss", "backend", backend);
+    }
+
+    private <T> T record(final String operation, final Callable<T> callable) throws IOException {
+        final long start = System.nanoTime();
+        try {
+            return callable.call();
+        } catch (IOException | RuntimeException e) {
+            errorCounters.get(operation).increment();
+            throw e;
+        } catch (Exception e) {
+            errorCounters.get(operation).increment();
+            throw new IOException(e);
+        } finally {
+            timers.get(operation).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    // for operations which don't throw checked exceptions
+    private <T> T recordUnchecked(final String operation, final Callable<T> callable) {
+        try {
+            return record(operation, callable);
+        } catch (IOException e) {
+            // not thrown by the wrapped calls
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public InputStream get(final String key) {
+        InputStream inputStream = recordUnchecked(OPERATION_GET, () -> dataCache.get(key));
+        (inputStream != null ? hitCounter : missCounter).increment();
+        return inputStream;
+    }
+
+    @Override
+    public boolean exists(final String key) {
+        return recordUnchecked(OPERATION_EXISTS, () -> dataCache.exists(key));
+    }
+
+    @Override
+    public Set<String> existsAll(final Collection<String> keys) {
+        return recordUnchecked(OPERATION_EXISTS_ALL, () -> dataCache.existsAll(keys));
+    }
+
+    @Override
+    public void touch(final String key) {
+        recordUnchecked(OPERATION_TOUCH, () -> {
+            dataCache.touch(key);
+            return null;
+        });
+    }
+
+    @Override
+    public void put(final String key, final File file) throws IOException {
+        record(OPERATION_PUT, () -> {
+            dataCache.put(key, file);
+            return null;
+        });
+    }
+
+    @Override
+    public void close() throws IOException, InterruptedException {
+        dataCache.close();
+    }
+}
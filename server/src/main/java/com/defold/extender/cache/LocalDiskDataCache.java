@@ -1,39 +1,159 @@
 package com.defold.extender.cache;
 
+import com.defold.extender.log.Markers;
+import com.defold.extender.utils.FileLinkUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
-public class LocalDiskDataCache implements DataCache {
+/**
+ * Data cache which stores entries on the local disk.
+ * If a max size is set, the access time of each entry is tracked and the least recently used entries are
+ * evicted in the background once the cache grows above the max size. Entries which are currently read are
+ * never evicted. Access tracking is stored in a compact index file, so it survives restarts.
+ */
+public final class LocalDiskDataCache implements DataCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LocalDiskDataCache.class);
+
+    static final String INDEX_FILENAME = "index";
+    // staged copies of entries, see stage()
+    static final String STAGING_DIRECTORY = ".staging";
+    private static final int INDEX_VERSION = 1;
+    // eviction stops once the cache is below this part of the max size
+    private static final double EVICTION_TARGET = 0.9;
+
+    private static class IndexEntry {
+        long size;
+        long lastAccess;
+
+        IndexEntry(long size, long lastAccess) {
+            this.size = size;
+            this.lastAccess = lastAccess;
+        }
+    }
 
     private final File baseDirectory;
+    private final long maxSize;
+
+    // entries in access order, least recently used first
+    private final LinkedHashMap<String, IndexEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Integer> readers = new HashMap<>();
+    private long totalSize = 0;
+    private boolean isIndexDirty = false;
+    private ScheduledExecutorService evictionExecutor;
+
+    private Counter evictionCounter;
+    private Counter hitCounter;
+    private Counter missCounter;
 
     public LocalDiskDataCache(final Path baseDirectory) {
         this.baseDirectory = baseDirectory.toFile();
+        this.maxSize = 0;
     }
 
     public LocalDiskDataCache(final String baseDirectory) throws IOException {
+        this(baseDirectory, 0, 0, null);
+    }
+
+    /**
+     * @param maxSize Max size of the cache in bytes. 0 means the cache is not bounded
+     * @param evictionInterval How often the eviction runs and the index is stored (in milliseconds)
+     * @param meterRegistry Registry for size, eviction and hit rate metrics. Can be null
+     */
+    public LocalDiskDataCache(final String baseDirectory, long maxSize, long evictionInterval, MeterRegistry meterRegistry) throws IOException {
         this.baseDirectory = StringUtils.isNotBlank(baseDirectory)
                 ? new File(pruneLastSlashInDirectory(baseDirectory))
                 : createTemporaryDirectory();
+        this.maxSize = maxSize;
+
+        if (meterRegistry != null) {
+            Gauge.builder("extender.cache.local.size", this, LocalDiskDataCache::getSize).baseUnit(BaseUnits.BYTES).register(meterRegistry);
+            evictionCounter = meterRegistry.counter("extender.cache.local.evictions");
+            hitCounter = meterRegistry.counter("extender.cache.local.requests", "result", "hit");
+            missCounter = meterRegistry.counter("extender.cache.local.requests", "result", "miss");
+        }
+
+        // staged files left behind by a previous run
+        FileUtils.deleteQuietly(new File(this.baseDirectory, STAGING_DIRECTORY));
+
+        if (maxSize > 0) {
+            this.baseDirectory.mkdirs();
+            loadIndex();
+            evictionExecutor = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("local-cache-eviction").factory());
+            evictionExecutor.scheduleWithFixedDelay(this::evictAndStoreIndex, evictionInterval, evictionInterval, TimeUnit.MILLISECONDS);
+        }
     }
 
     @Override
     public InputStream get(final String key) {
         final String path = getDestinationPath(key);
-        try {
-            return new FileInputStream(path);
-        } catch(FileNotFoundException e) {
-            return null;
+        final InputStream inputStream;
+        // the file is opened while holding the lock, so the eviction can't delete it in between
+        synchronized (entries) {
+            try {
+                inputStream = new FileInputStream(path);
+            } catch(FileNotFoundException e) {
+                increment(missCounter);
+                return null;
+            }
+            increment(hitCounter);
+            if (maxSize == 0) {
+                return inputStream;
+            }
+            IndexEntry entry = entries.get(key);
+            if (entry != null) {
+                entry.lastAccess = System.currentTimeMillis();
+                isIndexDirty = true;
+            }
+            readers.merge(key, 1, Integer::sum);
         }
+        // the entry can't be evicted until the stream is closed
+        return new FilterInputStream(inputStream) {
+            private boolean isClosed = false;
+
+            @Override
+            public void close() throws IOException {
+                super.close();
+                synchronized (entries) {
+                    if (!isClosed) {
+                        isClosed = true;
+                        readers.computeIfPresent(key, (k, count) -> count > 1 ? count - 1 : null);
+                    }
+                }
+            }
+        };
     }
 
     @Override
@@ -43,17 +163,222 @@ public class LocalDiskDataCache implements DataCache {
 
     @Override
     public void touch(String key) {
-        // Cache object expiry not implemented for local cache
+        if (maxSize == 0) {
+            // Cache object expiry not implemented for unbounded local cache
+            return;
+        }
+        synchronized (entries) {
+            IndexEntry entry = entries.get(key);
+            if (entry != null) {
+                entry.lastAccess = System.currentTimeMillis();
+                isIndexDirty = true;
+            }
+        }
     }
 
     @Override
     public void put(final String key, final File file) throws IOException {
+        if (maxSize == 0) {
+            final File destination = createDestinationPath(key);
+            Files.copy(
+                    file.toPath(),
+                    destination.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+            return;
+        }
+        try (InputStream inputStream = new FileInputStream(file)) {
+            put(key, inputStream);
+        }
+    }
+
+    // Writes the stream next to the destination and moves it into place, so readers never see a partial file
+    void put(final String key, final InputStream inputStream) throws IOException {
         final File destination = createDestinationPath(key);
+        final File tmpDestination = new File(destination.getParentFile(), key + ".tmp-" + UUID.randomUUID());
+        try {
+            Files.copy(inputStream, tmpDestination.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            Files.move(tmpDestination.toPath(), destination.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmpDestination.toPath());
+        }
+        if (maxSize > 0) {
+            synchronized (entries) {
+                addEntry(key, destination.length(), System.currentTimeMillis());
+            }
+        }
+    }
+
+    // Path of the cached file. It can be evicted unless a stream from get() is open
+    File getFile(final String key) {
+        return new File(getDestinationPath(key));
+    }
+
+    /**
+     * Links the cached file to a file with the given name in a new staging directory. The staged file
+     * stays readable after the entry is evicted or replaced. The caller deletes its parent directory when done.
+     * @return The staged file or null if the entry doesn't exist
+     */
+    File stage(final String key, final String fileName) throws IOException {
+        // keep the entry open, so it isn't evicted while it is linked
+        try (InputStream inputStream = get(key)) {
+            if (inputStream == null) {
+                return null;
+            }
+            File stagingDirectory = new File(baseDirectory, STAGING_DIRECTORY + "/" + UUID.randomUUID());
+            if (!stagingDirectory.mkdirs()) {
+                throw new IOException("Failed to create staging directory " + stagingDirectory);
+            }
+            File stagedFile = new File(stagingDirectory, fileName);
+            FileLinkUtil.linkFile(getFile(key), stagedFile);
+            return stagedFile;
+        }
+    }
+
+    public long getSize() {
+        synchronized (entries) {
+            return totalSize;
+        }
+    }
+
+    // Stops the background eviction and stores the index
+    @Override
+    public void close() {
+        if (evictionExecutor != null) {
+            evictionExecutor.shutdown();
+            storeIndex();
+        }
+    }
+
+    // must be called with the lock on 'entries'
+    private void addEntry(final String key, long size, long lastAccess) {
+        IndexEntry previous = entries.put(key, new IndexEntry(size, lastAccess));
+        if (previous != null) {
+            totalSize -= previous.size;
+        }
+        totalSize += size;
+        isIndexDirty = true;
+    }
+
+    void evictAndStoreIndex() {
+        try {
+            evict();
+            storeIndex();
+        } catch (Exception e) {
+            LOGGER.error(Markers.CACHE_ERROR, "Failed to evict entries from local cache", e);
+        }
+    }
+
+    void evict() {
+        List<String> evictedKeys = new ArrayList<>();
+        synchronized (entries) {
+            long targetSize = (long)(maxSize * EVICTION_TARGET);
+            if (totalSize <= maxSize) {
+                return;
+            }
+            Iterator<Map.Entry<String, IndexEntry>> it = entries.entrySet().iterator();
+            while (totalSize > targetSize && it.hasNext()) {
+                Map.Entry<String, IndexEntry> entry = it.next();
+                if (readers.containsKey(entry.getKey())) {
+                    continue;
+                }
+                // the file is deleted while holding the lock, so a new reader can't open it in between
+                new File(getDestinationPath(entry.getKey())).delete();
+                totalSize -= entry.getValue().size;
+                it.remove();
+                evictedKeys.add(entry.getKey());
+            }
+            isIndexDirty = isIndexDirty || !evictedKeys.isEmpty();
+        }
+        if (evictionCounter != null) {
+            evictionCounter.increment(evictedKeys.size());
+        }
+        LOGGER.info("Evicted {} entries from local cache", evictedKeys.size());
+    }
 
-        Files.copy(
-                file.toPath(),
-                destination.toPath(),
-                StandardCopyOption.REPLACE_EXISTING);
+    private File getIndexFile() {
+        return new File(baseDirectory, INDEX_FILENAME);
+    }
+
+    void storeIndex() {
+        List<Map.Entry<String, IndexEntry>> snapshot;
+        synchronized (entries) {
+            if (!isIndexDirty) {
+                return;
+            }
+            snapshot = new ArrayList<>();
+            for (Map.Entry<String, IndexEntry> entry : entries.entrySet()) {
+                snapshot.add(Map.entry(entry.getKey(), new IndexEntry(entry.getValue().size, entry.getValue().lastAccess)));
+            }
+            isIndexDirty = false;
+        }
+        File indexFile = getIndexFile();
+        File tmpIndexFile = new File(baseDirectory, INDEX_FILENAME + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpIndexFile)))) {
+            out.writeInt(INDEX_VERSION);
+            out.writeInt(snapshot.size());
+            for (Map.Entry<String, IndexEntry> entry : snapshot) {
+                out.writeUTF(entry.getKey());
+                out.writeLong(entry.getValue().size);
+                out.writeLong(entry.getValue().lastAccess);
+            }
+        } catch (IOException e) {
+            LOGGER.error(Markers.CACHE_ERROR, "Failed to write local cache index", e);
+            return;
+        }
+        try {
+            Files.move(tmpIndexFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.error(Markers.CACHE_ERROR, "Failed to write local cache index", e);
+        }
+    }
+
+    // Reads the index and adds the entries which exist on disk but are missing in the index (e.g. after a crash)
+    private void loadIndex() {
+        Map<String, IndexEntry> storedEntries = new HashMap<>();
+        File indexFile = getIndexFile();
+        if (indexFile.exists()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+                if (in.readInt() == INDEX_VERSION) {
+                    int count = in.readInt();
+                    for (int i = 0; i < count; i++) {
+                        String key = in.readUTF();
+                        storedEntries.put(key, new IndexEntry(in.readLong(), in.readLong()));
+                    }
+                }
+            } catch (IOException e) {
+                LOGGER.warn("Failed to read local cache index, rebuilding it", e);
+            }
+        }
+
+        List<Map.Entry<String, IndexEntry>> diskEntries = new ArrayList<>();
+        File[] subDirectories = baseDirectory.listFiles(file -> file.isDirectory() && !file.getName().equals(STAGING_DIRECTORY));
+        for (File subDirectory : subDirectories != null ? subDirectories : new File[0]) {
+            File[] files = subDirectory.listFiles(File::isFile);
+            for (File file : files != null ? files : new File[0]) {
+                String key = file.getName();
+                if (key.contains(".tmp-")) {
+                    file.delete();
+                    continue;
+                }
+                IndexEntry stored = storedEntries.get(key);
+                long lastAccess = stored != null ? stored.lastAccess : file.lastModified();
+                diskEntries.add(Map.entry(key, new IndexEntry(file.length(), lastAccess)));
+            }
+        }
+        diskEntries.sort((a, b) -> Long.compare(a.getValue().lastAccess, b.getValue().lastAccess));
+
+        synchronized (entries) {
+            for (Map.Entry<String, IndexEntry> entry : diskEntries) {
+                addEntry(entry.getKey(), entry.getValue().size, entry.getValue().lastAccess);
+            }
+        }
+        LOGGER.info("Loaded local cache index with {} entries ({} bytes)", diskEntries.size(), getSize());
+    }
+
+    private static void increment(Counter counter) {
+        if (counter != null) {
+            counter.increment();
+        }
     }
 
     private String pruneLastSlashInDirectory(final String directory) {
@@ -0,0 +1,156 @@
+package com.defold.extender.cache;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Signs requests to S3-compatible storages (AWS Signature Version 4).
+ * The signature covers the host, range and all x-amz-* headers. Bodies are sent unsigned (UNSIGNED-PAYLOAD),
+ * so files can be streamed without hashing them first.
+ */
+public class S3RequestSigner {
+
+    static final String UNSIGNED_PAYLOAD = "UNSIGNED-PAYLOAD";
+    static final String EMPTY_PAYLOAD = "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855";
+
+    private static final String ALGORITHM = "AWS4-HMAC-SHA256";
+    private static final DateTimeFormatter DATE_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'");
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private final String accessKey;
+    private final String secretKey;
+    private final String region;
+
+    public S3RequestSigner(final String accessKey, final String secretKey, final String region) {
+        this.accessKey = accessKey;
+        this.secretKey = secretKey;
+        this.region = region;
+    }
+
+    /**
+     * Adds x-amz-date and x-amz-content-sha256 to the headers and returns the value of the Authorization header
+     * @param headers request headers. Names must be lower case
+     */
+    public String sign(final String method, final URI uri, final Map<String, String> headers, final String payloadHash, final ZonedDateTime time) {
+        ZonedDateTime utcTime = time.withZoneSameInstant(ZoneOffset.UTC);
+        String dateTime = DATE_TIME_FORMAT.format(utcTime);
+        String date = DATE_FORMAT.format(utcTime);
+        headers.put("x-amz-date", dateTime);
+        headers.put("x-amz-content-sha256", payloadHash);
+
+        TreeMap<String, String> signedHeaders = new TreeMap<>();
+        signedHeaders.put("host", getHost(uri));
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            if (header.getKey().startsWith("x-amz-") || header.getKey().equals("range") || header.getKey().equals("content-md5")) {
+                signedHeaders.put(header.getKey(), header.getValue().trim());
+            }
+        }
+        StringBuilder canonicalHeaders = new StringBuilder();
+        for (Map.Entry<String, String> header : signedHeaders.entrySet()) {
+            canonicalHeaders.append(header.getKey()).append(':').append(header.getValue()).append('\n');
+        }
+        String signedHeaderNames = String.join(";", signedHeaders.keySet());
+
+        String canonicalRequest = String.join("\n",
+                method,
+                getCanonicalPath(uri),
+                getCanonicalQuery(uri),
+                canonicalHeaders.toString(),
+                signedHeaderNames,
+                payloadHash);
+
+        String scope = String.format("%s/%s/s3/aws4_request", date, region);
+        String stringToSign = String.join("\n", ALGORITHM, dateTime, scope, sha256Hex(canonicalRequest));
+
+        byte[] signingKey = hmac(("AWS4" + secretKey).getBytes(StandardCharsets.UTF_8), date);
+        signingKey = hmac(signingKey, region);
+        signingKey = hmac(signingKey, "s3");
+        signingKey = hmac(signingKey, "aws4_request");
+        String signature = HexFormat.of().formatHex(hmac(signingKey, stringToSign));
+
+        return String.format("%s Credential=%s/%s, SignedHeaders=%s, Signature=%s", ALGORITHM, accessKey, scope, signedHeaderNames, signature);
+    }
+
+    private static String getHost(final URI uri) {
+        int port = uri.getPort();
+        boolean isDefaultPort = port == -1
+                || ("http".equals(uri.getScheme()) && port == 80)
+                || ("https".equals(uri.getScheme()) && port == 443);
+        return isDefaultPort ? uri.getHost() : uri.getHost() + ":" + port;
+    }
+
+    private static String getCanonicalPath(final URI uri) {
+        String path = uri.getRawPath();
+        if (path == null || path.isEmpty()) {
+            return "/";
+        }
+        List<String> segments = new ArrayList<>();
+        for (String segment : path.split("/", -1)) {
+            segments.add(encode(URLDecoder.decode(segment, StandardCharsets.UTF_8)));
+        }
+        return String.join("/", segments);
+    }
+
+    private static String getCanonicalQuery(final URI uri) {
+        String query = uri.getRawQuery();
+        if (query == null || query.isEmpty()) {
+            return "";
+        }
+        TreeMap<String, String> parameters = new TreeMap<>();
+        for (String parameter : query.split("&")) {
+            String[] nameValue = parameter.split("=", 2);
+            String name = URLDecoder.decode(nameValue[0], StandardCharsets.UTF_8);
+            String value = nameValue.length > 1 ? URLDecoder.decode(nameValue[1], StandardCharsets.UTF_8) : "";
+            parameters.put(encode(name), encode(value));
+        }
+        StringBuilder result = new StringBuilder();
+        for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+            if (!result.isEmpty()) {
+                result.append('&');
+            }
+            result.append(parameter.getKey()).append('=').append(parameter.getValue());
+        }
+        return result.toString();
+    }
+
+    // RFC 3986 encoding as required by the signature
+    static String encode(final String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8)
+                .replace("+", "%20")
+                .replace("*", "%2A")
+                .replace("%7E", "~");
+    }
+
+    private static String sha256Hex(final String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Algorithm SHA-256 is not supported", e);
+        }
+    }
+
+    private static byte[] hmac(final byte[] key, final String value) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac.doFinal(value.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Algorithm HmacSHA256 is not supported", e);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.defold.extender.cache;
+
+import com.defold.extender.log.Markers;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local disk cache (L1) in front of a remote cache (L2).
+ * Reads are served from L1 and missing entries are fetched from L2 into L1 first (read-through).
+ * Writes go to L1 and are uploaded to L2 in the background (write-behind). If the upload queue is full,
+ * the entry stays in L1 only. The upload gets a staged link to the L1 entry with the name of the original file, so
+ * decorators of L2 can still see the file extension. The local cache should be bounded, since it keeps every entry
+ * which was read or written.
+ */
+public class TieredDataCache implements DataCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TieredDataCache.class);
+
+    private final LocalDiskDataCache localCache;
+    private final DataCache remoteCache;
+    private final ThreadPoolExecutor writeExecutor;
+    private final Counter droppedWriteCounter;
+
+    /**
+     * @param meterRegistry Registry for the dropped writes metric. Can be null
+     */
+    public TieredDataCache(final LocalDiskDataCache localCache, final DataCache remoteCache, int writeConcurrency, int writeQueueSize, MeterRegistry meterRegistry) {
+        this.localCache = localCache;
+        this.remoteCache = remoteCache;
+        this.droppedWriteCounter = meterRegistry != null ? meterRegistry.counter("extender.cache.tiered.write.dropped") : null;
+        this.writeExecutor = new ThreadPoolExecutor(writeConcurrency, writeConcurrency, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(writeQueueSize), Thread.ofVirtual().name("cache-write-behind-", 0).factory(),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.writeExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public InputStream get(final String key) {
+        InputStream inputStream = localCache.get(key);
+        if (inputStream != null) {
+            return inputStream;
+        }
+        try (InputStream remoteStream = remoteCache.get(key)) {
+            if (remoteStream == null) {
+                return null;
+            }
+            localCache.put(key, remoteStream);
+        } catch (IOException e) {
+            LOGGER.error(Markers.CACHE_ERROR, "Failed to fetch cache entry " + key + " from remote cache", e);
+            return null;
+        }
+        return localCache.get(key);
+    }
+
+    @Override
+    public boolean exists(final String key) {
+        return localCache.exists(key) || remoteCache.exists(key);
+    }
+
+    @Override
+    public Set<String> existsAll(final Collection<String> keys) {
+        Set<String> result = localCache.existsAll(keys);
+        List<String> missingKeys = new ArrayList<>();
+        for (String key : keys) {
+            if (!result.contains(key)) {
+                missingKeys.add(key);
+            }
+        }
+        if (!missingKeys.isEmpty()) {
+            result.addAll(remoteCache.existsAll(missingKeys));
+        }
+        return result;
+    }
+
+    @Override
+    public void touch(final String key) {
+        localCache.touch(key);
+        remoteCache.touch(key);
+    }
+
+    @Override
+    public void put(final String key, final File file) throws IOException {
+        localCache.put(key, file);
+        // the remote cache may pick the compression by the file extension, which the local cache file doesn't have
+        File stagedFile = localCache.stage(key, file.getName());
+        if (stagedFile == null) {
+            return;
+        }
+        try {
+            writeExecutor.execute(() -> {
+                try {
+                    remoteCache.put(key, stagedFile);
+                } catch (Exception e) {
+                    LOGGER.error(Markers.CACHE_ERROR, "Failed to write cache entry " + key + " to remote cache", e);
+                } finally {
+                    FileUtils.deleteQuietly(stagedFile.getParentFile());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            FileUtils.deleteQuietly(stagedFile.getParentFile());
+            LOGGER.warn("Remote cache write queue is full, entry is kept in local cache only");
+            if (droppedWriteCounter != null) {
+                droppedWriteCounter.increment();
+            }
+        }
+    }
+
+    // Finishes pending writes to the remote cache
+    @Override
+    public void close() throws IOException, InterruptedException {
+        writeExecutor.shutdown();
+        writeExecutor.awaitTermination(1, TimeUnit.MINUTES);
+        remoteCache.close();
+        localCache.close();
+    }
+}
@@ -55,6 +55,10 @@ public class MetricsWriter {
         metricsTimer(this.registry, "extender.job.build", timer.start(), "platform", platform);
     }
 
+    public void measurePodCommand(final String stage, long duration) {
+        metricsTimer(this.registry, "extender.job.pods.command", duration, "stage", stage);
+    }
+
     public void measureRemoteEngineBuild(final String platform) {
         metricsTimer(this.registry, "extender.job.remoteBuild", timer.start(), "platform", platform);
     }
@@ -0,0 +1,115 @@
+package com.defold.extender.process;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+import com.defold.extender.ExtenderException;
+
+// Runs a graph of build steps. Each step starts as soon as the steps it depends on are finished,
+// so independent work (e.g. different pods) is interleaved instead of being separated by barriers.
+// A failing step fails all of its dependants, and await() rethrows the first failure.
+public class ProcessPipeline implements AutoCloseable {
+
+    public interface Step {
+        void run() throws Exception;
+    }
+
+    private final ProcessExecutor processExecutor;
+    private final ExecutorService executor;
+    private final BiConsumer<String, Long> stepListener;
+    private final List<CompletableFuture<Void>> steps = new ArrayList<>();
+    private final AtomicLong totalStepTime = new AtomicLong();
+
+    public ProcessPipeline(ProcessExecutor processExecutor, int parallelism, BiConsumer<String, Long> stepListener) {
+        this.processExecutor = processExecutor;
+        this.executor = Executors.newFixedThreadPool(parallelism);
+        this.stepListener = stepListener;
+    }
+
+    public CompletableFuture<Void> addCommand(String stage, String command, Collection<CompletableFuture<Void>> dependencies) {
+        return addStep(stage, () -> processExecutor.execute(command), dependencies);
+    }
+
+    public List<CompletableFuture<Void>> addCommands(String stage, List<String> commands, Collection<CompletableFuture<Void>> dependencies) {
+        List<CompletableFuture<Void>> result = new ArrayList<>();
+        for (String command : commands) {
+            result.add(addCommand(stage, command, dependencies));
+        }
+        return result;
+    }
+
+    public CompletableFuture<Void> addStep(String stage, Step step, Collection<CompletableFuture<Void>> dependencies) {
+        CompletableFuture<Void> future = allOf(dependencies)
+            .thenRunAsync(() -> {
+                long start = System.currentTimeMillis();
+                try {
+                    step.run();
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+                long duration = System.currentTimeMillis() - start;
+                totalStepTime.addAndGet(duration);
+                if (stepListener != null) {
+                    stepListener.accept(stage, duration);
+                }
+            }, executor);
+        synchronized (steps) {
+            steps.add(future);
+        }
+        return future;
+    }
+
+    // Completes when all futures are completed
+    public static CompletableFuture<Void> allOf(Collection<CompletableFuture<Void>> futures) {
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]));
+    }
+
+    // Summed duration of all finished steps. Compared with the wall time of the pipeline
+    // it shows how much work was overlapped.
+    public long getTotalStepTime() {
+        return totalStepTime.get();
+    }
+
+    public void await() throws IOException, InterruptedException, ExtenderException {
+        CompletableFuture<Void> all;
+        synchronized (steps) {
+            all = allOf(steps);
+        }
+        try {
+            all.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof IOException) {
+                throw (IOException)cause;
+            } else if (cause instanceof InterruptedException) {
+                throw (InterruptedException)cause;
+            } else if (cause instanceof ExtenderException) {
+                throw (ExtenderException)cause;
+            } else {
+                StringWriter sw = new StringWriter();
+                PrintWriter pw = new PrintWriter(sw);
+                cause.printStackTrace(pw);
+                throw new ExtenderException(sw.toString());
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
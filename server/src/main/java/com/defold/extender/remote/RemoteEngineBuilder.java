@@ -47,6 +47,7 @@ import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.util.List;
 import java.util.Optional;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
@@ -85,6 +86,8 @@ public class RemoteEngineBuilder {
     public void buildAsync(final RemoteInstanceConfig remoteInstanceConfig,
                         final File projectDirectory,
                         final String platform,
+                        final List<String> architectures,
+                        final boolean universal,
                         final String sdkVersion,
                         File jobDirectory, File buildDirectory, MetricsWriter metricsWriter) throws FileNotFoundException, IOException {
 
@@ -111,7 +114,10 @@ public class RemoteEngineBuilder {
         }
 
         try {
-            final String serverUrl = String.format("%s/build_async/%s/%s", remoteInstanceConfig.getUrl(), platform, sdkVersion);
+            String serverUrl = String.format("%s/build_async/%s/%s", remoteInstanceConfig.getUrl(), platform, sdkVersion);
+            if (!architectures.isEmpty()) {
+                serverUrl += String.format("?architectures=%s&universal=%b", String.join(",", architectures), universal);
+            }
             final HttpPost request = new HttpPost(serverUrl);
             request.setEntity(httpEntity);
     
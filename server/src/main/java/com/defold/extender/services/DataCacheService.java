@@ -7,8 +7,12 @@ import com.defold.extender.cache.info.CacheInfoFileParser;
 import com.defold.extender.cache.info.CacheInfoFileWriter;
 import com.defold.extender.cache.info.CacheInfoWrapper;
 import com.defold.extender.log.Markers;
+import com.defold.extender.metrics.MetricsWriter;
 import com.defold.extender.cache.CacheKeyGenerator;
+import com.defold.extender.cache.CacheUploader;
 import com.defold.extender.cache.DataCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -21,7 +25,16 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -31,6 +44,8 @@ public class DataCacheService {
     private static final Logger LOGGER = LoggerFactory.getLogger(DataCacheService.class);
 
     public static final String FILE_CACHE_INFO_FILE = "ne-cache-info.json";
+    // created in the directory which contains the job directories
+    static final String UPLOAD_STAGING_DIRECTORY = ".cache-upload";
     static final String FILE_CACHE_INFO_HASH_TYPE = "sha256";
     static final int    FILE_CACHE_INFO_VERSION = 1;
 
@@ -39,8 +54,12 @@ public class DataCacheService {
     private final CacheInfoFileWriter cacheInfoFileWriter;
     private final boolean cacheIsEnabled;
     private final int fileSizeThreshold;
+    private final int downloadConcurrency;
+    private final MeterRegistry meterRegistry;
 
     private DataCache dataCache;
+    private CacheUploader cacheUploader;
+    private File uploadStagingDirectory;
 
     public class DataCacheServiceInfo {
         public AtomicInteger cachedFileCount = new AtomicInteger();
@@ -52,21 +71,46 @@ public class DataCacheService {
                      final CacheInfoFileWriter cacheInfoFileWriter,
                      final DataCacheFactory dataCacheFactory,
                      @Value("${extender.cache.enabled}") boolean cacheIsEnabled,
-                     @Value("${extender.cache.file-size-threshold}") int fileSizeThreshold) {
+                     @Value("${extender.cache.file-size-threshold}") int fileSizeThreshold,
+                     @Value("${extender.cache.upload-concurrency:4}") int uploadConcurrency,
+                     @Value("${extender.cache.upload-queue-size:1000}") int uploadQueueSize,
+                     @Value("${extender.cache.upload-staging-dir:}") String uploadStagingDir,
+                     @Value("${extender.cache.download-concurrency:8}") int downloadConcurrency,
+                     MeterRegistry meterRegistry) throws IOException {
 
         this.cacheKeyGenerator = cacheKeyGenerator;
         this.cacheInfoFileParser = cacheInfoFileParser;
         this.cacheInfoFileWriter = cacheInfoFileWriter;
         this.fileSizeThreshold = fileSizeThreshold;
         this.cacheIsEnabled = cacheIsEnabled;
+        this.downloadConcurrency = downloadConcurrency;
+        this.meterRegistry = meterRegistry;
 
         this.dataCache = dataCacheFactory.createCache();
+        if (cacheIsEnabled) {
+            // without a configured directory, the files are staged next to the job directories (see cacheFiles)
+            this.uploadStagingDirectory = StringUtils.isNotBlank(uploadStagingDir) ? new File(uploadStagingDir) : null;
+            this.cacheUploader = new CacheUploader(dataCache, cacheKeyGenerator, uploadStagingDirectory, uploadConcurrency, uploadQueueSize);
+        }
     }
 
-    private boolean isCached(final String key) {
-        return dataCache.exists(key);
+    // Pending uploads are finished before the cache is closed
+    @PreDestroy
+    public void destroy() {
+        try {
+            if (cacheUploader != null) {
+                cacheUploader.close();
+            }
+            dataCache.close();
+        } catch (IOException e) {
+            LOGGER.warn("Failed to close data cache: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
+    // Schedules upload of all files in the directory. The files are hashed and uploaded in the background,
+    // so the returned info contains the files which were accepted by the upload queue.
     public DataCacheServiceInfo cacheFiles(final File directory) throws IOException {
         DataCacheServiceInfo result = new DataCacheServiceInfo();
         if (! cacheIsEnabled) {
@@ -74,37 +118,51 @@ public class DataCacheService {
         }
 
         LOGGER.debug(String.format("Caching files in directory %s", directory.getPath()));
+        final File stagingDirectory = getUploadStagingDirectory(directory);
 
+        AtomicInteger droppedFileCount = new AtomicInteger();
         Files.walk(directory.toPath())
                 .filter(Files::isRegularFile)
                 .filter(path -> ! FILE_CACHE_INFO_FILE.equals(path.getFileName().toString()))
                 .forEach(path -> {
                     try {
-                        long fileSize = upload(path.toFile());
-                        result.cachedFileSize.addAndGet(fileSize);
-                        result.cachedFileCount.addAndGet(fileSize >= fileSizeThreshold ? 1 : 0);
+                        File file = path.toFile();
+                        // Skip small files
+                        if (file.length() < fileSizeThreshold) {
+                            LOGGER.debug(String.format("[cache] %s - SKIPPED", file.getName()));
+                            MetricsWriter.metricsSummary(meterRegistry, "extender.cache.file.size", file.length(), "result", "skipped");
+                            return;
+                        }
+                        MetricsWriter.metricsSummary(meterRegistry, "extender.cache.file.size", file.length(), "result", "upload");
+                        if (cacheUploader.submit(file, stagingDirectory)) {
+                            result.cachedFileSize.addAndGet(file.length());
+                            result.cachedFileCount.addAndGet(1);
+                        } else {
+                            droppedFileCount.addAndGet(1);
+                        }
                     } catch (IOException e) {
                         LOGGER.error(Markers.CACHE_ERROR, "Could not cache file " + path.toString(), e);
                     }
                 });
 
-        LOGGER.info(String.format("Cached %d bytes in %d files", result.cachedFileSize.longValue(), result.cachedFileCount.intValue()));
+        if (droppedFileCount.intValue() > 0) {
+            LOGGER.warn(String.format("Cache upload queue is full, dropped %d files", droppedFileCount.intValue()));
+            meterRegistry.counter("extender.service.cache.upload.dropped").increment(droppedFileCount.intValue());
+        }
+        LOGGER.info(String.format("Scheduled caching of %d bytes in %d files", result.cachedFileSize.longValue(), result.cachedFileCount.intValue()));
         return result;
     }
 
-    private long upload(File file) throws IOException {
-        // Skip small files
-        if (file.length() < fileSizeThreshold) {
-            LOGGER.debug(String.format("[cache] %s - SKIPPED", file.getName()));
-            return 0;
+    // The staged files are hardlinks, so they must be on the same filesystem as the job. They are kept outside
+    // of the job directory, since it can be removed before the upload is done
+    private File getUploadStagingDirectory(final File directory) {
+        if (uploadStagingDirectory != null) {
+            return uploadStagingDirectory;
         }
-
-        final String key = cacheKeyGenerator.generate(file);
-
-        LOGGER.debug(String.format("[cache] %s - %s", file.getName(), key));
-        dataCache.put(key, file);
-
-        return file.length();
+        // <job root>/<job>/upload
+        File jobDirectory = directory.getAbsoluteFile().getParentFile();
+        File jobRoot = jobDirectory.getParentFile() != null ? jobDirectory.getParentFile() : jobDirectory;
+        return new File(jobRoot, UPLOAD_STAGING_DIRECTORY);
     }
 
     // Step through the entries in the json and download them from the key-value server
@@ -135,6 +193,7 @@ public class DataCacheService {
             return result;
         }
 
+        List<Callable<Void>> callables = new ArrayList<>();
         for (CacheEntry entry : cacheEntries) {
             // Check if entry is cached
             if (! entry.isCached()) {
@@ -143,20 +202,39 @@ public class DataCacheService {
 
             verifyCacheEntry(entry);
 
-            File destination = new File(directory, entry.getPath());
-            makeParentDirectories(destination);
-            result.cachedFileSize.addAndGet(downloadFile(entry, destination));
+            callables.add(() -> {
+                File destination = new File(directory, entry.getPath());
+                makeParentDirectories(destination);
+                long size = downloadFile(entry, destination);
+                MetricsWriter.metricsSummary(meterRegistry, "extender.cache.file.size", size, "result", "hit");
+                result.cachedFileSize.addAndGet(size);
+                result.cachedFileCount.addAndGet(1);
+                return null;
+            });
+        }
 
-            if (! destination.exists()) {
-                throw new ExtenderException(String.format("Failed downloading '%s' (%s) from cache",
-                        entry.getPath(), entry.getKey()));
+        ExecutorService executor = Executors.newFixedThreadPool(downloadConcurrency);
+        try {
+            for (Future<Void> future : executor.invokeAll(callables)) {
+                future.get();
             }
-
-            verifyCacheKey(destination, entry.getKey());
-            result.cachedFileCount.addAndGet(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ExtenderException(e, "Downloading of cached files was interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException)e.getCause();
+            } else if (e.getCause() instanceof ExtenderException) {
+                throw (ExtenderException)e.getCause();
+            }
+            throw new ExtenderException(e, "Failed downloading cached files: " + e.getCause());
+        } finally {
+            executor.shutdown();
         }
 
         LOGGER.info(String.format("Downloaded %d bytes in %d cached files", result.cachedFileSize.longValue(), result.cachedFileCount.intValue()));
+        // the client didn't have to upload the cached files
+        meterRegistry.counter("extender.cache.upload.avoided").increment(result.cachedFileSize.longValue());
 
         return result;
     }
@@ -170,23 +248,33 @@ public class DataCacheService {
         }
     }
 
-    private void verifyCacheKey(File file, String originalKey) throws ExtenderException, IOException {
-        String newKey = cacheKeyGenerator.generate(file);
-        if (! newKey.equals(originalKey)) {
-            throw new ExtenderException(String.format("The checksum of the file '%s' differs from the one in the cache: %s != %s", file.getAbsolutePath(), originalKey, newKey));
-        }
-    }
-
     private boolean makeParentDirectories(File file) {
         return file.getParentFile().exists() || file.getParentFile().mkdirs();
     }
 
-    private long downloadFile(CacheEntry entry, File destination) throws IOException {
-        try (InputStream inputStream = dataCache.get(entry.getKey())) {
-            return Files.copy(
-                    inputStream,
-                    destination.toPath(),
-                    StandardCopyOption.REPLACE_EXISTING);
+    // The file is written to a temporary file next to the destination while its hash is calculated,
+    // and renamed into place only if the hash matches the cache key
+    private long downloadFile(CacheEntry entry, File destination) throws IOException, ExtenderException {
+        File tmpDestination = new File(destination.getParentFile(), destination.getName() + ".tmp-" + UUID.randomUUID());
+        try {
+            long size;
+            String key;
+            try (InputStream inputStream = dataCache.get(entry.getKey())) {
+                if (inputStream == null) {
+                    throw new ExtenderException(String.format("Failed downloading '%s' (%s) from cache",
+                            entry.getPath(), entry.getKey()));
+                }
+                DigestInputStream digestStream = new DigestInputStream(inputStream, cacheKeyGenerator.getDigest());
+                size = Files.copy(digestStream, tmpDestination.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                key = cacheKeyGenerator.generate(digestStream.getMessageDigest());
+            }
+            if (! key.equals(entry.getKey())) {
+                throw new ExtenderException(String.format("The checksum of the file '%s' differs from the one in the cache: %s != %s", destination.getAbsolutePath(), entry.getKey(), key));
+            }
+            Files.move(tmpDestination.toPath(), destination.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return size;
+        } finally {
+            Files.deleteIfExists(tmpDestination.toPath());
         }
     }
 
@@ -213,18 +301,27 @@ public class DataCacheService {
         Boolean versionOK = isVersionOk(wrapper.getVersion(), wrapper.getHashType());
 
         final List<CacheEntry> cacheEntries = wrapper.getEntries();
-        for (CacheEntry entry : cacheEntries) {
-            if (versionOK) {
+        Set<String> cachedKeys = Set.of();
+        if (versionOK) {
+            List<String> keys = new ArrayList<>();
+            for (CacheEntry entry : cacheEntries) {
                 verifyCacheEntry(entry);
-                entry.setCached(isCached(entry.getKey()));
-            } else {
-                entry.setCached(false);
+                keys.add(entry.getKey());
             }
+            // check all keys at once to keep the number of storage requests low
+            cachedKeys = dataCache.existsAll(keys);
+        }
+        int hitCount = 0;
+        for (CacheEntry entry : cacheEntries) {
+            entry.setCached(cachedKeys.contains(entry.getKey()));
+            hitCount += entry.isCached() ? 1 : 0;
 
             if (entry.isCached()) {
                 touchCacheEntry(entry);
             }
         }
+        meterRegistry.counter("extender.cache.query", "result", "hit").increment(hitCount);
+        meterRegistry.counter("extender.cache.query", "result", "miss").increment(cacheEntries.size() - hitCount);
 
         try {
             cacheInfoFileWriter.write(FILE_CACHE_INFO_VERSION, FILE_CACHE_INFO_HASH_TYPE, cacheEntries, output);
@@ -1,13 +1,17 @@
 package com.defold.extender.services;
 
 import com.defold.extender.ExtenderException;
-import com.defold.extender.ExtenderUtil;
 import com.defold.extender.ZipUtils;
 import com.defold.extender.log.Markers;
 import com.defold.extender.metrics.MetricsWriter;
 import com.defold.extender.services.data.DefoldSdk;
+import com.defold.extender.services.data.SdkUsage;
+import com.defold.extender.utils.RangedDownloader;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.input.CloseShieldInputStream;
+import org.apache.commons.io.input.TeeInputStream;
+import org.apache.commons.io.input.ThrottledInputStream;
 import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
@@ -20,42 +24,82 @@ import org.springframework.http.client.ClientHttpRequest;
 import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import jakarta.annotation.PreDestroy;
+import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.net.HttpURLConnection;
 import java.net.URI;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
 import java.util.Comparator;
-import java.util.LinkedHashMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
 import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.ExecutionException;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class DefoldSdkService {
     private static final Logger LOGGER = LoggerFactory.getLogger(DefoldSdkService.class);
     private static final String TEST_SDK_DIRECTORY = "a";
     private static final String LOCAL_VERSION = "local";
+    private static final String MAPPINGS_DIRECTORY = ".mappings";
+    static final String USAGE_FILE = ".sdk-usage";
+    private static final int EVICTED = -1;
+    private static final int MAX_ACQUIRE_ATTEMPTS = 10;
     private final File dynamoHome;
 
     private final DefoldSdkServiceConfiguration configuration;
     private final MeterRegistry meterRegistry;
-    private final ConcurrentHashMap<String, CompletableFuture<DefoldSdk>> operationCache = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<String, Integer> cacheReferenceCount;
+    // Downloads in progress and the resolved sdks. Resolved sdks are kept until they are evicted
+    private final ConcurrentHashMap<String, CompletableFuture<ResolvedSdk>> operationCache = new ConcurrentHashMap<>();
+    // Bandwidth limits of the prefetches in progress, a build which waits for the sdk lifts the limit
+    private final ConcurrentHashMap<String, AtomicBoolean> downloadThrottles = new ConcurrentHashMap<>();
+    // Reference counts of the sdks, EVICTED while an sdk is deleted
+    private final ConcurrentHashMap<String, AtomicInteger> cacheReferenceCount;
+    // Evictions in progress. Builds which find an sdk evicted wait for them and download the sdk again
+    private final ConcurrentHashMap<String, CompletableFuture<Void>> evictions = new ConcurrentHashMap<>();
     private final ConcurrentHashMap<String, CompletableFuture<JSONObject>> mappingsDownloadOperationCache = new ConcurrentHashMap<>();
-    protected final LinkedHashMap<String, JSONObject> mappingsCache;
+    private final ConcurrentHashMap<String, PlatformSdkExtractor> platformExtractors = new ConcurrentHashMap<>();
+    private final SdkFileStore fileStore;
+    private final RangedDownloader rangedDownloader;
+    private final ConcurrentHashMap<String, SdkUsage> sdkUsage = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Long> lastAccessTimes = new ConcurrentHashMap<>();
+    // Sizes of the sdks on disk, they change when an sdk is downloaded, extracted or deleted
+    private final ConcurrentHashMap<String, Long> sdkSizes = new ConcurrentHashMap<>();
+    private final Path usageFile;
+    private final Object evictionLock = new Object();
+    protected final SdkMappingsCache mappingsCache;
 
     DefoldSdkService(DefoldSdkServiceConfiguration configuration,
                      MeterRegistry meterRegistry) throws IOException {
@@ -71,13 +115,15 @@ public class DefoldSdkService {
         if (!Files.exists(sdkLocation)) {
             Files.createDirectories(sdkLocation);
         }
-
-        mappingsCache = new LinkedHashMap<String, JSONObject>() {
-            @Override
-            protected boolean removeEldestEntry(Map.Entry<String, JSONObject> eldest) {
-                return size() > configuration.getMappingsCacheSize();
-            }
-        };
+        this.fileStore = this.configuration.isContentStore() ? new SdkFileStore(sdkLocation) : null;
+        this.rangedDownloader = this.configuration.getDownloadConcurrency() > 1
+                ? new RangedDownloader(this.configuration.getDownloadRangeSize(), this.configuration.getDownloadConcurrency(), 3)
+                : null;
+        // mappings of the evicted sdks are kept, they are small and the sdk can be requested again
+        this.mappingsCache = new SdkMappingsCache(configuration.getMappingsCacheSize(), sdkLocation.resolve(MAPPINGS_DIRECTORY));
+        // the request statistics of the previous runs decide which sdks are evicted and prefetched
+        this.usageFile = sdkLocation.resolve(USAGE_FILE);
+        addSdkUsage(loadUsage(usageFile));
     }
 
     public String getSdkVersion(final String version) {
@@ -89,38 +135,156 @@ public class DefoldSdkService {
     }
 
     public DefoldSdk getSdk(String hash) throws ExtenderException {
+        return getSdk(hash, null);
+    }
+
+    /**
+     * @param platforms platforms which are built with the sdk. Only these platforms are extracted
+     *                  if the sdk is extracted lazily. All platforms are extracted if null
+     */
+    public DefoldSdk getSdk(String hash, Collection<String> platforms) throws ExtenderException {
         if (isLocalSdk(hash)){
             return getLocalSdk();
         }
-        // use ConcurrentHashMap with CompletableFuture here to avoid situation when
-        // several builds needs the same defoldsdk which doesn't exist locally. So one build job starts downloading,
-        // all other jobs wait for download complete and all of then continue running.
-        CompletableFuture<DefoldSdk> operation = operationCache.computeIfAbsent(hash, this::getRemoteSdk);
-        try (DefoldSdk sdk = operation.get()){
-            if (sdk == null) {
+        recordSdkRequest(hash);
+        DefoldSdk result = acquireRemoteSdk(hash);
+        LOGGER.info("Using Defold SDK version {}", hash);
+        try {
+            extractPlatforms(hash, platforms);
+        } catch (IOException|UncheckedIOException e) {
+            result.close();
+            LOGGER.error(String.format("The platforms %s of sdk %s cannot be extracted", platforms, hash), e);
+            throw new ExtenderException(e, String.format("The given sdk cannot be extracted: %s", hash));
+        }
+        return result;
+    }
+
+    // The sdk directory and whether it's verified, null if the sdk doesn't exist
+    private record ResolvedSdk(File sdkDir, boolean isVerified) {}
+
+    private DefoldSdk acquireRemoteSdk(String hash) throws ExtenderException {
+        for (int attempt = 0; attempt < MAX_ACQUIRE_ATTEMPTS; ++attempt) {
+            // use ConcurrentHashMap with CompletableFuture here to avoid situation when
+            // several builds needs the same defoldsdk which doesn't exist locally. So one build job starts downloading,
+            // all other jobs wait for download complete and all of then continue running.
+            // The completed future stays in the map, so later builds don't check the sdk again
+            CompletableFuture<ResolvedSdk> operation = operationCache.computeIfAbsent(hash, key -> getRemoteSdk(key, 0));
+            AtomicBoolean isThrottled = downloadThrottles.get(hash);
+            if (isThrottled != null && isThrottled.compareAndSet(true, false)) {
+                LOGGER.info("A build waits for the prefetch of sdk {}, the bandwidth limit is lifted", hash);
+            }
+            ResolvedSdk resolved;
+            try {
+                resolved = operation.get();
+            } catch (InterruptedException | ExecutionException e) {
+                operationCache.remove(hash, operation);
+                LOGGER.error(String.format("The given sdk cannot be downloaded: %s", hash), e);
+                throw new ExtenderException(String.format("The given sdk cannot be downloaded: %s", hash));
+            }
+            if (resolved == null) {
+                operationCache.remove(hash, operation);
                 throw new ExtenderException(String.format("The given sdk does not exist: %s", hash));
             }
-            if (!sdk.isValid()) {
+            if (!resolved.isVerified()) {
+                operationCache.remove(hash, operation);
                 throw new ExtenderException(String.format("Sdk verification failed: %s", hash));
             }
-            evictCache();
-            LOGGER.info("Using Defold SDK version {}", hash);
-            return DefoldSdk.copyOf(sdk);
+            // the sdk can't be evicted after the reference is acquired, so it's valid if it still exists
+            DefoldSdk sdk = DefoldSdk.acquire(resolved.sdkDir(), hash, true, this);
+            if (sdk != null && sdk.isValid()) {
+                return sdk;
+            }
+            // evicted after it was resolved, it's downloaded again when the eviction is finished
+            if (sdk != null) {
+                sdk.close();
+            }
+            operationCache.remove(hash, operation);
+            CompletableFuture<Void> eviction = evictions.get(hash);
+            if (eviction != null) {
+                eviction.join();
+            }
+        }
+        throw new ExtenderException(String.format("The given sdk cannot be acquired: %s", hash));
+    }
+
+    // Extracts the platform subtrees of a lazily extracted sdk. The caller must hold a reference to the sdk
+    private void extractPlatforms(String hash, Collection<String> platforms) throws IOException {
+        File sdkDirectory = new File(this.configuration.getLocation().toFile(), hash);
+        PlatformSdkExtractor extractor = platformExtractors.computeIfAbsent(hash, key -> {
+            if (!PlatformSdkExtractor.hasArchive(sdkDirectory)) {
+                return null; // fully extracted
+            }
+            try {
+                return new PlatformSdkExtractor(sdkDirectory.toPath(), fileStore);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        if (extractor == null) {
+            return;
+        }
+        Collection<String> families = extractor.getFamilies();
+        if (platforms != null) {
+            families = new HashSet<>();
+            families.add(PlatformSdkExtractor.getHostFamily());
+            for (String platform : platforms) {
+                families.add(PlatformSdkExtractor.getFamilyOfPlatform(platform));
+            }
+        }
+        if (extractor.extract(families)) {
+            invalidateSdkSize(hash);
+        }
+    }
+
+    /**
+     * Downloads the sdk if it doesn't exist yet, without extracting platforms or evicting other sdks.
+     * A build which needs the same sdk meanwhile waits for this download, the bandwidth limit is lifted then.
+     * @param maxBytesPerSecond bandwidth limit of the download, 0 - not limited
+     * @return true if the sdk is available
+     */
+    public boolean prefetchSdk(String hash, long maxBytesPerSecond) {
+        CompletableFuture<ResolvedSdk> operation = operationCache.computeIfAbsent(hash, key -> getRemoteSdk(key, maxBytesPerSecond));
+        try {
+            ResolvedSdk resolved = operation.get();
+            if (resolved != null && resolved.isVerified()) {
+                return true;
+            }
         } catch (InterruptedException | ExecutionException e) {
-            LOGGER.error(String.format("The given sdk cannot be downloaded: %s", hash), e);
-            throw new ExtenderException(String.format("The given sdk cannot be downloaded: %s", hash));
-        } finally {
-            operationCache.remove(hash);
+            LOGGER.warn(String.format("The sdk %s cannot be prefetched", hash), e);
         }
+        operationCache.remove(hash, operation);
+        return false;
     }
 
-    public CompletableFuture<DefoldSdk> getRemoteSdk(String hash) {
+    private void recordSdkRequest(String hash) {
+        long now = System.currentTimeMillis();
+        sdkUsage.merge(hash, new SdkUsage(1, now), (previous, value) -> new SdkUsage(previous.requestCount() + 1, now));
+    }
+
+    public Map<String, SdkUsage> getSdkUsage() {
+        return new HashMap<>(sdkUsage);
+    }
+
+    // Adds the usage which was collected before a restart
+    private void addSdkUsage(Map<String, SdkUsage> usage) {
+        for (Map.Entry<String, SdkUsage> entry : usage.entrySet()) {
+            sdkUsage.merge(entry.getKey(), entry.getValue(), (previous, value) -> new SdkUsage(
+                    previous.requestCount() + value.requestCount(),
+                    Math.max(previous.lastRequestTime(), value.lastRequestTime())));
+        }
+    }
+
+    private CompletableFuture<ResolvedSdk> getRemoteSdk(String hash, long maxBytesPerSecond) {
+        // registered before the operation is visible to other callers, so a build can't miss it
+        final AtomicBoolean isThrottled = new AtomicBoolean(maxBytesPerSecond > 0);
+        if (isThrottled.get()) {
+            downloadThrottles.put(hash, isThrottled);
+        }
         return CompletableFuture.supplyAsync(() -> {
             long methodStart = System.currentTimeMillis();
             // Define SDK directory for this version
             File sdkDirectory = new File(this.configuration.getLocation().toFile(), hash);
             File sdkRootDirectory = new File(sdkDirectory, "defoldsdk");
-            DefoldSdk sdk = new DefoldSdk(sdkRootDirectory, hash, this);
             boolean isVerified = false;
             // If directory does not exist, create it and download SDK
             if (Files.exists(sdkDirectory.toPath())) {
@@ -162,71 +326,70 @@ public class DefoldSdkService {
                     int attempt = 0;
                     while (attempt < configuration.getMaxVerificationRetryCount()) {
                         LOGGER.info("Downloading Defold SDK from {} attempt {} ...", url, attempt + 1);
-                        ClientHttpRequest request;
-                        try {
-                            request = clientHttpRequestFactory.createRequest(URI.create(url), HttpMethod.GET);
-                        } catch (IOException exc) {
-                            LOGGER.error("Connect can't be established", exc);
-                            break;
+
+                        // the checksum is fetched while the archive is downloading
+                        CompletableFuture<String> expectedChecksum = CompletableFuture.completedFuture(null);
+                        if (this.configuration.isEnableSdkVerification()) {
+                            final URI checksumURI = URI.create(url.replace(".zip", ".sha256"));
+                            expectedChecksum = CompletableFuture.supplyAsync(() -> downloadChecksum(clientHttpRequestFactory, checksumURI, hash));
+                        } else {
+                            LOGGER.info("Sdk checksum verification is disabled");
                         }
 
                         File tmpResponseBody = null;
-                        // Connect and copy to file
-                        try (ClientHttpResponse response = request.execute()) {
-                            InputStream body = response.getBody();
+                        File tmpSdkDirectory = null;
+                        // Connect, extract while downloading and verify
+                        try {
                             tmpResponseBody = File.createTempFile(hash, ".zip.tmp");
-                            Files.copy(body, tmpResponseBody.toPath(), StandardCopyOption.REPLACE_EXISTING);
-
-                            if (this.configuration.isEnableSdkVerification()) {
-                                LOGGER.info("Download checksum for sdk {}", hash);
-                                URI checksumURI = URI.create(url.replace(".zip", ".sha256"));
-                                ClientHttpRequest checksumRequest = clientHttpRequestFactory.createRequest(checksumURI, HttpMethod.GET);
-                                String expectedChecksum = null;
-                                try (ClientHttpResponse checksumResponse = checksumRequest.execute()) {
-                                    if (checksumResponse.getStatusCode() == HttpStatus.OK) {
-                                        expectedChecksum = new String(checksumResponse.getBody().readAllBytes(), StandardCharsets.UTF_8);
-                                    }
-                                } catch (IOException exc) {
-                                    LOGGER.warn(String.format("Can't download checksum for sdk %s", hash), exc);
-                                }
-
-                                boolean isChecksumValid = true;
-                                if (expectedChecksum != null) {
-                                    LOGGER.info("Verify checksum for downloaded sdk {}", hash);
-                                    try {
-                                        String actualChecksum = ExtenderUtil.calculateSHA256(new FileInputStream(tmpResponseBody));
-                                        isChecksumValid = expectedChecksum.equals(actualChecksum);
-                                        LOGGER.info("Checksum verification result {}", isChecksumValid);
-                                    } catch(NoSuchAlgorithmException|IOException exc) {
-                                        LOGGER.warn(String.format("Error during checksum calculation"), exc);
-                                    }
-                                }
+                            Path tempDirectoryPath = Files.createTempDirectory(configuration.getLocation(), "tmp" + hash);
+                            tmpSdkDirectory = tempDirectoryPath.toFile(); // Either moved or deleted in finally
+
+                            // platform subtrees are extracted from the kept archive when a build needs them
+                            final boolean lazyExtraction = this.configuration.isLazyExtraction();
+                            Predicate<String> filter = lazyExtraction ? PlatformSdkExtractor::isCommonEntry : name -> true;
+                            SdkArchive archive = downloadArchive(clientHttpRequestFactory, URI.create(url), tmpResponseBody, tempDirectoryPath, filter, maxBytesPerSecond, isThrottled);
+
+                            String checksum = expectedChecksum.join();
+                            if (checksum != null) {
+                                LOGGER.info("Verify checksum for downloaded sdk {}", hash);
+                                boolean isChecksumValid = checksum.trim().equals(archive.checksum());
+                                LOGGER.info("Checksum verification result {}", isChecksumValid);
                                 if (!isChecksumValid) {
                                     ++attempt;
                                     continue;
                                 }
-                            } else {
-                                LOGGER.info("Sdk checksum verification is disabled");
                             }
-                            Path tempDirectoryPath = Files.createTempDirectory(configuration.getLocation(), "tmp" + hash);
-                            File tmpSdkDirectory = tempDirectoryPath.toFile(); // Either moved or deleted later by Move()
-
-                            Files.createDirectories(tempDirectoryPath);
-                            ZipUtils.unzip(new FileInputStream(tmpResponseBody), tmpSdkDirectory.toPath());
+                            if (!archive.isExtracted()) {
+                                LOGGER.info("Extracting sdk {} after download", hash);
+                                FileUtils.cleanDirectory(tmpSdkDirectory);
+                                ZipUtils.unzip(tmpResponseBody, tempDirectoryPath, filter);
+                            }
+                            if (fileStore != null) {
+                                long sharedBytes = fileStore.store(tempDirectoryPath);
+                                LOGGER.info("Sdk {} shares {} bytes with other sdks", hash, sharedBytes);
+                                MetricsWriter.metricsSummary(meterRegistry, "extender.service.sdk.store.shared", sharedBytes);
+                            }
+                            if (lazyExtraction) {
+                                Files.move(tmpResponseBody.toPath(), tempDirectoryPath.resolve(PlatformSdkExtractor.ARCHIVE_NAME));
+                            }
 
-                            Files.move(tmpSdkDirectory.toPath(), sdkDirectory.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                            Files.move(tempDirectoryPath, sdkDirectory.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                            invalidateSdkSize(hash);
                             isVerified = true;
                             break;
                         } catch (IOException exc) {
                             LOGGER.error("Error downloading defoldsdk", exc);
+                            ++attempt;
                         } finally {
                             if (tmpResponseBody != null && tmpResponseBody.exists()) {
                                 tmpResponseBody.delete();
                             }
+                            if (tmpSdkDirectory != null && tmpSdkDirectory.exists()) {
+                                FileUtils.deleteQuietly(tmpSdkDirectory);
+                            }
                         }
                     }
                 } else {
-                    sdk.close();
                     return null;
                 }
 
@@ -236,9 +399,104 @@ public class DefoldSdkService {
             if (!isVerified) {
                 LOGGER.warn("Sdk {} verification failed", hash);
             }
-            sdk.setVerified(isVerified);
-            return sdk;
-        });
+            return new ResolvedSdk(sdkRootDirectory, isVerified);
+        }).whenComplete((resolved, exc) -> downloadThrottles.remove(hash, isThrottled));
+    }
+
+    private String downloadChecksum(ClientHttpRequestFactory clientHttpRequestFactory, URI checksumURI, String hash) {
+        LOGGER.info("Download checksum for sdk {}", hash);
+        try {
+            ClientHttpRequest checksumRequest = clientHttpRequestFactory.createRequest(checksumURI, HttpMethod.GET);
+            try (ClientHttpResponse checksumResponse = checksumRequest.execute()) {
+                if (checksumResponse.getStatusCode() == HttpStatus.OK) {
+                    return new String(checksumResponse.getBody().readAllBytes(), StandardCharsets.UTF_8);
+                }
+            }
+        } catch (IOException exc) {
+            LOGGER.warn(String.format("Can't download checksum for sdk %s", hash), exc);
+        }
+        return null;
+    }
+
+    record SdkArchive(String checksum, boolean isExtracted) {}
+
+    // Reads through the throttled stream until the throttle is lifted. The throttled stream doesn't buffer,
+    // so both streams continue at the same position of the body.
+    static final class LiftableThrottledInputStream extends FilterInputStream {
+        private final InputStream throttled;
+        private final AtomicBoolean isThrottled;
+
+        LiftableThrottledInputStream(InputStream body, InputStream throttled, AtomicBoolean isThrottled) {
+            super(body);
+            this.throttled = throttled;
+            this.isThrottled = isThrottled;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return isThrottled.get() ? throttled.read() : in.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return isThrottled.get() ? throttled.read(b, off, len) : in.read(b, off, len);
+        }
+    }
+
+    /**
+     * Downloads the archive in parallel ranges if download-concurrency is greater than 1, the archive is extracted
+     * after the download then. Otherwise the archive is extracted while it's downloading.
+     * @param isThrottled whether maxBytesPerSecond applies, it can be reset while the archive is downloading
+     */
+    private SdkArchive downloadArchive(ClientHttpRequestFactory clientHttpRequestFactory, URI uri, File zipFile, Path targetDirectory,
+                                       Predicate<String> filter, long maxBytesPerSecond, AtomicBoolean isThrottled) throws IOException {
+        // parallel ranges are not throttled, downloads with a bandwidth limit are streamed
+        if (rangedDownloader != null && !isThrottled.get()) {
+            RangedDownloader.Result result = rangedDownloader.download(uri, zipFile, null);
+            if (result == null) {
+                throw new IOException("The sdk archive doesn't exist: " + uri);
+            }
+            return new SdkArchive(result.sha256(), false);
+        }
+        ClientHttpRequest request = clientHttpRequestFactory.createRequest(uri, HttpMethod.GET);
+        try (ClientHttpResponse response = request.execute()) {
+            InputStream body = response.getBody();
+            if (isThrottled.get()) {
+                ThrottledInputStream.Builder throttledBuilder = ThrottledInputStream.builder().setInputStream(body);
+                throttledBuilder.setMaxBytesPerSecond(maxBytesPerSecond);
+                body = new LiftableThrottledInputStream(body, throttledBuilder.get(), isThrottled);
+            }
+            return downloadAndExtract(body, zipFile, targetDirectory, filter);
+        }
+    }
+
+    /**
+     * Hashes and extracts the archive in a single pass while it is downloading.
+     * The archive is written to zipFile as well: if the entries can't be read as a stream,
+     * the download continues and the result is not extracted, so it can be extracted from the file.
+     * The target directory can contain partially extracted files in that case.
+     * @param filter selects the entries which are extracted
+     */
+    static SdkArchive downloadAndExtract(InputStream body, File zipFile, Path targetDirectory, Predicate<String> filter) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Algorithm SHA-256 is not supported", e);
+        }
+        boolean isExtracted = true;
+        try (OutputStream zipOutput = new BufferedOutputStream(new FileOutputStream(zipFile));
+             InputStream input = new TeeInputStream(new DigestInputStream(body, digest), zipOutput)) {
+            try {
+                ZipUtils.unzip(CloseShieldInputStream.wrap(input), targetDirectory, filter);
+            } catch (IOException exc) {
+                LOGGER.info("Sdk archive can't be extracted while downloading: {}", exc.getMessage());
+                isExtracted = false;
+            }
+            // read the central directory after the last entry, or the rest of the archive after a failure
+            input.transferTo(OutputStream.nullOutputStream());
+        }
+        return new SdkArchive(HexFormat.of().formatHex(digest.digest()), isExtracted);
     }
 
     public DefoldSdk getLocalSdk() {
@@ -250,54 +508,213 @@ public class DefoldSdkService {
         return dynamoHome != null;
     }
 
+    @Scheduled(initialDelayString="${extender.sdk.eviction-interval:60000}", fixedDelayString="${extender.sdk.eviction-interval:60000}")
+    public void scheduledEviction() {
+        evictCache();
+        saveUsage();
+    }
+
+    private void saveUsage() {
+        try {
+            saveUsage(usageFile, getSdkUsage());
+        } catch (IOException e) {
+            LOGGER.warn("Failed to save sdk usage: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Keeps the most recently used sdks which fit into cache-size and cache-max-size and deletes the others.
+     * Sdks which are in use are never deleted, but they count towards the limits.
+     */
     protected void evictCache() {
-        synchronized (cacheReferenceCount) {
+        synchronized (evictionLock) {
             try {
                 LOGGER.info("Cache eviction called");
-                // Delete old SDK:s
-                Comparator<Path> refCountComparator = Comparator.comparing(path -> getSdkRefCount(path.getFileName().toString()));
-
-                Files
-                        .list(configuration.getLocation())
+                List<Path> sdks;
+                try (Stream<Path> paths = Files.list(configuration.getLocation())) {
+                    sdks = paths
                         .filter(path -> !path.getFileName().toString().startsWith("tmp")
+                                    && !path.getFileName().toString().startsWith(".")
                                     && !path.toString().endsWith(".delete")
-                                    && !path.getFileName().toString().equals(TEST_SDK_DIRECTORY))
-                        .sorted(refCountComparator.reversed())
-                        .skip(configuration.getCacheSize())
-                        .forEach(this::deleteCachedSdk);
+                                    && !path.getFileName().toString().equals(TEST_SDK_DIRECTORY)
+                                    && Files.isDirectory(path))
+                        .collect(Collectors.toList());
+                }
+                Map<Path, Long> accessTimes = new HashMap<>();
+                Set<Path> usedSdks = new HashSet<>();
+                for (Path path : sdks) {
+                    accessTimes.put(path, getLastAccessTime(path));
+                    if (getSdkRefCount(path.getFileName().toString()) != 0) {
+                        usedSdks.add(path);
+                    }
+                }
+                // the sdks in use take their share of the limits first, then the most recently used ones
+                sdks.sort(Comparator.comparing((Path path) -> usedSdks.contains(path))
+                        .thenComparing(path -> accessTimes.get(path))
+                        .reversed());
+
+                long maxSize = configuration.getCacheMaxSize();
+                long keptSize = 0;
+                int keptCount = 0;
+                boolean isDeleted = false;
+                for (Path path : sdks) {
+                    long size = maxSize > 0 ? getCachedSdkSize(path) : 0;
+                    boolean fits = keptCount < configuration.getCacheSize() && (maxSize <= 0 || keptSize + size <= maxSize);
+                    if (!fits && !usedSdks.contains(path) && deleteCachedSdk(path)) {
+                        isDeleted = true;
+                        MetricsWriter.metricsCounterIncrement(meterRegistry, "extender.service.sdk.evicted");
+                        continue;
+                    }
+                    ++keptCount;
+                    keptSize += size;
+                }
+                if (maxSize > 0) {
+                    LOGGER.info("Sdk cache keeps {} sdks with {} bytes", keptCount, keptSize);
+                }
+                // files of the deleted sdks can be used by other sdks
+                if (isDeleted && fileStore != null) {
+                    MetricsWriter.metricsSummary(meterRegistry, "extender.service.sdk.store.freed", fileStore.collectGarbage());
+                }
             } catch (IOException exc) {
                 LOGGER.error("Error during cache eviction", exc);
             }
         }
     }
 
-    private void deleteCachedSdk(Path path) {
+    // The last time the sdk was used since the start, the last request time from the usage statistics or the download time
+    private long getLastAccessTime(Path path) {
         String sdkHash = path.getFileName().toString();
-        if (getSdkRefCount(sdkHash) != 0) {
-            LOGGER.warn(String.format("Sdk %s remove skipped due to non-zero ref count", sdkHash));
-            return;
+        long result = lastAccessTimes.getOrDefault(sdkHash, 0L);
+        SdkUsage usage = sdkUsage.get(sdkHash);
+        if (usage != null) {
+            result = Math.max(result, usage.lastRequestTime());
+        }
+        if (result == 0) {
+            try {
+                result = Files.getLastModifiedTime(path).toMillis();
+            } catch (IOException e) {
+                LOGGER.warn("Failed to get modification time of {}: {}", path, e.getMessage());
+            }
+        }
+        return result;
+    }
+
+    private long getCachedSdkSize(Path path) throws IOException {
+        String sdkHash = path.getFileName().toString();
+        Long size = sdkSizes.get(sdkHash);
+        if (size == null) {
+            size = getSdkSize(path);
+            sdkSizes.put(sdkHash, size);
+        }
+        return size;
+    }
+
+    // Files of the file store are split between the sdks, so the sizes of the other sdks change as well then
+    private void invalidateSdkSize(String sdkHash) {
+        if (fileStore != null) {
+            sdkSizes.clear();
+        } else {
+            sdkSizes.remove(sdkHash);
+        }
+    }
+
+    // Size on disk. Files which are shared with other sdks through the file store are split between the sdks
+    private long getSdkSize(Path path) throws IOException {
+        long[] size = { 0 };
+        Files.walkFileTree(path, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                long fileSize = attributes.size();
+                if (fileStore != null && attributes.isRegularFile()) {
+                    int linkCount = SdkFileStore.getLinkCount(file);
+                    // one of the links is the pool
+                    fileSize /= Math.max(1, linkCount - 1);
+                }
+                size[0] += fileSize;
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return size[0];
+    }
+
+    private boolean deleteCachedSdk(Path path) {
+        String sdkHash = path.getFileName().toString();
+        File tmpDir = new File(path.toString() + ".delete");
+        // registered before the sdk is marked as evicted, so a build which can't acquire the sdk finds it
+        CompletableFuture<Void> eviction = new CompletableFuture<>();
+        evictions.put(sdkHash, eviction);
+        try {
+            AtomicInteger references = getReferences(sdkHash);
+            // the sdk can't be acquired once it's marked as evicted
+            if (!references.compareAndSet(0, EVICTED)) {
+                LOGGER.warn(String.format("Sdk %s remove skipped due to non-zero ref count", sdkHash));
+                return false;
+            }
+            onSdkEvicting(sdkHash);
+            try {
+                LOGGER.info(String.format("Cleanup sdk %s", path));
+                Files.move(path, tmpDir.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                references.set(0);
+                LOGGER.error(Markers.CACHE_ERROR, "Failed to delete cached SDK at " + path.toAbsolutePath().toString(), e);
+                return false;
+            }
+            // the sdk directory is gone, a new request downloads the sdk again
+            cacheReferenceCount.remove(sdkHash, references);
+            operationCache.remove(sdkHash);
+            PlatformSdkExtractor extractor = platformExtractors.remove(sdkHash);
+            if (extractor != null) {
+                try {
+                    extractor.close();
+                } catch (IOException e) {
+                    LOGGER.warn("Failed to close sdk archive {}: {}", sdkHash, e.getMessage());
+                }
+            }
+            lastAccessTimes.remove(sdkHash);
+            invalidateSdkSize(sdkHash);
+        } finally {
+            evictions.remove(sdkHash, eviction);
+            eviction.complete(null);
         }
         try {
-            LOGGER.info(String.format("Cleanup sdk %s", path));
-            File tmpDir = new File(path.toString() + ".delete");
-            Files.move(path, tmpDir.toPath(), StandardCopyOption.ATOMIC_MOVE);
             FileUtils.deleteDirectory(tmpDir);
         } catch (IOException e) {
-            LOGGER.error(Markers.CACHE_ERROR, "Failed to delete cached SDK at " + path.toAbsolutePath().toString(), e);
+            LOGGER.error(Markers.CACHE_ERROR, "Failed to delete cached SDK at " + tmpDir.getAbsolutePath(), e);
         }
+        return true;
+    }
+
+    // Called while the sdk is marked as evicted and its directory still exists
+    protected void onSdkEvicting(String hash) {
     }
 
     @PreDestroy
     public void destroy() {
+        saveUsage();
+        if (rangedDownloader != null) {
+            try {
+                rangedDownloader.close();
+            } catch (IOException | InterruptedException e) {
+                LOGGER.warn("Failed to close sdk downloader: {}", e.getMessage());
+            }
+        }
         if (!configuration.isCacheClearOnExit()) {
             LOGGER.info("Skipping cleanup of SDK cache");
             return;
         }
         LOGGER.info("Cleaning up SDK cache");
-        try {
-            Files.list(configuration.getLocation())
-                    .filter(path -> ! path.endsWith(TEST_SDK_DIRECTORY))
+        // the file store and the usage statistics are kept in the dot entries
+        try (Stream<Path> paths = Files.list(configuration.getLocation())) {
+            paths.filter(path -> ! path.endsWith(TEST_SDK_DIRECTORY) && ! path.getFileName().toString().startsWith("."))
                     .forEach(this::deleteCachedSdk);
+            if (fileStore != null) {
+                fileStore.collectGarbage();
+            }
         } catch(IOException e) {
             LOGGER.warn("Failed to list SDK cache directory: " + e.getMessage());
         }
@@ -310,12 +727,7 @@ public class DefoldSdkService {
 
     private CompletableFuture<JSONObject> downloadSdkMappings(String hash) {
         return CompletableFuture.supplyAsync(() -> {
-            JSONObject result = null;
-            synchronized(mappingsCache) {
-                if (mappingsCache.containsKey(hash)) {
-                    result = mappingsCache.get(hash);
-                }
-            }
+            JSONObject result = mappingsCache.get(hash);
             if (result == null) {
                 for (String url_pattern : configuration.getMappingsUrls()) {
                     try {
@@ -341,9 +753,7 @@ public class DefoldSdkService {
                         LOGGER.error(String.format("Error during loading sdk mappings for %s", hash), exc);
                     }
                 }
-            }
-            if (result != null) {
-                synchronized(mappingsCache) {
+                if (result != null) {
                     mappingsCache.put(hash, result);
                 }
             }
@@ -352,6 +762,10 @@ public class DefoldSdkService {
     }
 
     private JSONObject getRemotePlatformSdkMappings(String hash) throws IOException, ExtenderException {
+        JSONObject cached = mappingsCache.get(hash);
+        if (cached != null) {
+            return cached;
+        }
         CompletableFuture<JSONObject> operation = mappingsDownloadOperationCache.computeIfAbsent(hash, this::downloadSdkMappings);
         try {
             JSONObject result = operation.get();
@@ -373,17 +787,76 @@ public class DefoldSdkService {
         return isLocalSdk(hash) ? getLocalPlatformSdkMappings(hash) : getRemotePlatformSdkMappings(hash);
     }
 
-    public void acquireSdk(String hash) {
-        LOGGER.info(String.format("Acquire sdk %s", hash));
-        cacheReferenceCount.compute(hash, ( key, value) -> value == null ? 1 : value + 1);
+    private AtomicInteger getReferences(String hash) {
+        AtomicInteger references = cacheReferenceCount.get(hash);
+        return references != null ? references : cacheReferenceCount.computeIfAbsent(hash, key -> new AtomicInteger());
+    }
+
+    /**
+     * Increases the reference count of the sdk
+     * @return false if the sdk is being evicted
+     */
+    public boolean acquireSdk(String hash) {
+        AtomicInteger references = getReferences(hash);
+        int count;
+        do {
+            count = references.get();
+            if (count == EVICTED) {
+                LOGGER.debug("Sdk {} is being evicted", hash);
+                return false;
+            }
+        } while (!references.compareAndSet(count, count + 1));
+        lastAccessTimes.put(hash, System.currentTimeMillis());
+        LOGGER.debug("Acquire sdk {}", hash);
+        return true;
     }
 
     public void releaseSdk(String hash) {
-        LOGGER.info(String.format("Release sdk %s", hash));
-        cacheReferenceCount.compute(hash, (key, value) -> value - 1);
+        LOGGER.debug("Release sdk {}", hash);
+        // the counter isn't replaced while the sdk is referenced
+        AtomicInteger references = cacheReferenceCount.get(hash);
+        if (references == null || references.getAndUpdate(count -> count > 0 ? count - 1 : count) <= 0) {
+            LOGGER.error("Sdk {} is released more often than acquired", hash);
+        }
     }
 
     public Integer getSdkRefCount(String hash) {
-        return cacheReferenceCount.getOrDefault(hash, 0);
+        AtomicInteger references = cacheReferenceCount.get(hash);
+        return references != null ? Math.max(0, references.get()) : 0;
+    }
+
+    static Map<String, SdkUsage> loadUsage(Path usageFile) {
+        Map<String, SdkUsage> result = new HashMap<>();
+        if (!Files.exists(usageFile)) {
+            return result;
+        }
+        Properties properties = new Properties();
+        try (InputStream input = Files.newInputStream(usageFile)) {
+            properties.load(input);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to load sdk usage: {}", e.getMessage());
+            return result;
+        }
+        for (String hash : properties.stringPropertyNames()) {
+            String[] values = properties.getProperty(hash).split(",");
+            try {
+                result.put(hash, new SdkUsage(Long.parseLong(values[0]), Long.parseLong(values[1])));
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                LOGGER.warn("Invalid sdk usage of {}", hash);
+            }
+        }
+        return result;
+    }
+
+    static void saveUsage(Path usageFile, Map<String, SdkUsage> usage) throws IOException {
+        Properties properties = new Properties();
+        for (Map.Entry<String, SdkUsage> entry : usage.entrySet()) {
+            properties.setProperty(entry.getKey(), entry.getValue().requestCount() + "," + entry.getValue().lastRequestTime());
+        }
+        Path tmpFile = usageFile.resolveSibling(usageFile.getFileName() + ".tmp");
+        try (OutputStream output = Files.newOutputStream(tmpFile)) {
+            properties.store(output, "sdk request count and last request time");
+        }
+        Files.move(tmpFile, usageFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
     }
 }
@@ -22,9 +22,18 @@ public class DefoldSdkServiceConfiguration {
     private String[] sdkUrls;
     private String[] mappingsUrls;
     private int cacheSize;
+    // max size of the cached sdks in bytes, 0 - not limited
+    private long cacheMaxSize;
     @Builder.Default private int mappingsCacheSize = 20;
     // retry count in case of checksum validation fail
     @Builder.Default private int maxVerificationRetryCount = 3;
     private boolean cacheClearOnExit;
     private boolean enableSdkVerification;
+    // how many ranges of the sdk archive are downloaded in parallel. 1 - the archive is extracted while it's downloading
+    @Builder.Default private int downloadConcurrency = 1;
+    @Builder.Default private long downloadRangeSize = 16 * 1024 * 1024;
+    // extract the platform libraries on first use instead of extracting the whole sdk after download
+    private boolean lazyExtraction;
+    // store the sdk files in a content-addressed pool, the files which are the same in several versions are stored once
+    private boolean contentStore;
 }
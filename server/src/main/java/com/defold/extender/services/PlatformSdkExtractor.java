@@ -0,0 +1,146 @@
+package com.defold.extender.services;
+
+import com.defold.extender.ZipUtils;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Extracts the platform subtrees of a downloaded sdk on first use.
+ * Libraries of a platform are stored in lib/<arch>-<os> and ext/lib/<arch>-<os>. All architectures of an OS
+ * (the platform family, e.g. "ios" for arm64-ios and x86_64-ios) are extracted together.
+ * The other entries are common and are extracted when the sdk is downloaded.
+ * The archive index is read once, each family is extracted under its own lock and marked as extracted
+ * with a file in the sdk directory, so the state survives restarts.
+ */
+class PlatformSdkExtractor implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PlatformSdkExtractor.class);
+
+    static final String ARCHIVE_NAME = "defoldsdk.zip";
+    private static final String MARKERS_DIRECTORY = ".extracted";
+    private static final Pattern PLATFORM_SUBTREE_RE = Pattern.compile("^(?:defoldsdk/)?(?:ext/)?lib/[^/]+-([^/-]+)/.*");
+
+    private final Path sdkDirectory;
+    private final ZipFile archive;
+    private final SdkFileStore fileStore;
+    private final Map<String, List<ZipArchiveEntry>> entriesByFamily = new HashMap<>();
+    private final ConcurrentHashMap<String, Object> familyLocks = new ConcurrentHashMap<>();
+
+    /**
+     * @param sdkDirectory directory which contains the archive and the extracted common files
+     * @param fileStore pool the extracted files are moved to, or null
+     */
+    PlatformSdkExtractor(Path sdkDirectory, SdkFileStore fileStore) throws IOException {
+        this.sdkDirectory = sdkDirectory;
+        this.fileStore = fileStore;
+        this.archive = ZipFile.builder().setFile(sdkDirectory.resolve(ARCHIVE_NAME).toFile()).get();
+
+        Enumeration<ZipArchiveEntry> entries = archive.getEntriesInPhysicalOrder();
+        while (entries.hasMoreElements()) {
+            ZipArchiveEntry entry = entries.nextElement();
+            String family = getPlatformFamily(entry.getName());
+            if (family != null) {
+                entriesByFamily.computeIfAbsent(family, k -> new ArrayList<>()).add(entry);
+            }
+        }
+    }
+
+    // Returns the platform family of an archive entry or null if the entry is common
+    static String getPlatformFamily(String entryName) {
+        Matcher matcher = PLATFORM_SUBTREE_RE.matcher(entryName);
+        return matcher.matches() ? matcher.group(1) : null;
+    }
+
+    static boolean isCommonEntry(String entryName) {
+        return getPlatformFamily(entryName) == null;
+    }
+
+    // e.g. "arm64-ios" -> "ios"
+    static String getFamilyOfPlatform(String platform) {
+        return platform.substring(platform.lastIndexOf('-') + 1);
+    }
+
+    // Family of the platform the server is running on. Its libraries can be used by the build tools
+    static String getHostFamily() {
+        String os = System.getProperty("os.name");
+        if (os.contains("Mac")) {
+            return "macos";
+        } else if (os.contains("Windows")) {
+            return "win32";
+        }
+        return "linux";
+    }
+
+    Set<String> getFamilies() {
+        return entriesByFamily.keySet();
+    }
+
+    boolean isExtracted(String family) {
+        return !entriesByFamily.containsKey(family) || Files.exists(getMarker(family));
+    }
+
+    // returns true if files were extracted, false if the families were extracted already
+    boolean extract(Collection<String> families) throws IOException {
+        boolean isChanged = false;
+        for (String family : families) {
+            isChanged |= extract(family);
+        }
+        return isChanged;
+    }
+
+    boolean extract(String family) throws IOException {
+        List<ZipArchiveEntry> entries = entriesByFamily.get(family);
+        if (entries == null || isExtracted(family)) {
+            return false;
+        }
+        synchronized (familyLocks.computeIfAbsent(family, k -> new Object())) {
+            if (isExtracted(family)) {
+                return false;
+            }
+            long start = System.currentTimeMillis();
+            for (ZipArchiveEntry entry : entries) {
+                ZipUtils.extractEntry(archive, entry, sdkDirectory);
+                if (fileStore != null && !entry.isDirectory()) {
+                    fileStore.storeFile(sdkDirectory.resolve(entry.getName()));
+                }
+            }
+            // the marker is written last, partially extracted families are extracted again
+            Path marker = getMarker(family);
+            Files.createDirectories(marker.getParent());
+            Files.createFile(marker);
+            LOGGER.info("Extracted {} files of platform {} from sdk {} in {} ms", entries.size(), family,
+                    sdkDirectory.getFileName(), System.currentTimeMillis() - start);
+        }
+        return true;
+    }
+
+    private Path getMarker(String family) {
+        return sdkDirectory.resolve(MARKERS_DIRECTORY).resolve(family);
+    }
+
+    static boolean hasArchive(File sdkDirectory) {
+        return new File(sdkDirectory, ARCHIVE_NAME).exists();
+    }
+
+    @Override
+    public void close() throws IOException {
+        archive.close();
+    }
+}
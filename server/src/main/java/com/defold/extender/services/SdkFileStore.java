@@ -0,0 +1,149 @@
+package com.defold.extender.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed pool of sdk files. Files of an extracted sdk are replaced with hardlinks to a blob
+ * named by the SHA-256 of the content, so files which are the same in several sdk versions are stored once.
+ * A blob is used by nothing but the pool when its link count is 1, it's removed by collectGarbage().
+ * The pool must be on the same file system as the sdks.
+ */
+class SdkFileStore {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SdkFileStore.class);
+
+    static final String STORE_DIRECTORY = ".store";
+    // a blob can be removed by the garbage collection between the existence check and the link
+    private static final int MAX_LINK_ATTEMPTS = 3;
+
+    private final Path storeDirectory;
+    private volatile boolean isLinkSupported = true;
+
+    SdkFileStore(Path location) throws IOException {
+        this.storeDirectory = location.resolve(STORE_DIRECTORY);
+        Files.createDirectories(storeDirectory);
+    }
+
+    /**
+     * Replaces the regular files in the directory with links to the pool
+     * @return the number of bytes which are shared with other sdks
+     */
+    long store(Path directory) throws IOException {
+        List<Path> files;
+        try (Stream<Path> paths = Files.walk(directory)) {
+            files = paths.filter(path -> Files.isRegularFile(path) && !Files.isSymbolicLink(path)).collect(Collectors.toList());
+        }
+        long sharedBytes = 0;
+        for (Path file : files) {
+            if (!isLinkSupported) {
+                break;
+            }
+            sharedBytes += storeFile(file);
+        }
+        return sharedBytes;
+    }
+
+    // returns the size of the file if the content was already in the pool
+    long storeFile(Path file) throws IOException {
+        long size = Files.size(file);
+        if (size == 0) {
+            return 0;
+        }
+        // links share the permissions, so executables and other files are different blobs
+        String blobName = hash(file) + (Files.isExecutable(file) ? "-x" : "");
+        Path blob = storeDirectory.resolve(blobName.substring(0, 2)).resolve(blobName);
+        Files.createDirectories(blob.getParent());
+        for (int attempt = 0; attempt < MAX_LINK_ATTEMPTS; ++attempt) {
+            try {
+                // new content, the file becomes the blob
+                Files.createLink(blob, file);
+                return 0;
+            } catch (FileAlreadyExistsException e) {
+                // known content, replace the file with a link to the blob
+            } catch (NoSuchFileException e) {
+                throw e;
+            } catch (UnsupportedOperationException | FileSystemException e) {
+                LOGGER.warn("Hardlinks aren't supported in {}, sdk files are not deduplicated: {}", storeDirectory, e.getMessage());
+                isLinkSupported = false;
+                return 0;
+            }
+            if (Files.isSameFile(blob, file)) {
+                return 0;
+            }
+            Path link = file.resolveSibling(file.getFileName() + "." + UUID.randomUUID() + ".link");
+            try {
+                Files.createLink(link, blob);
+            } catch (NoSuchFileException e) {
+                continue;
+            }
+            Files.move(link, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return size;
+        }
+        return 0;
+    }
+
+    /**
+     * Removes blobs which are not linked by any sdk
+     * @return the number of freed bytes
+     */
+    long collectGarbage() {
+        if (!Files.exists(storeDirectory)) {
+            return 0;
+        }
+        long freedBytes = 0;
+        int removedCount = 0;
+        try (Stream<Path> paths = Files.walk(storeDirectory)) {
+            for (Path blob : (Iterable<Path>) paths.filter(Files::isRegularFile)::iterator) {
+                try {
+                    if (getLinkCount(blob) == 1) {
+                        long size = Files.size(blob);
+                        Files.delete(blob);
+                        freedBytes += size;
+                        ++removedCount;
+                    }
+                } catch (IOException e) {
+                    LOGGER.warn("Failed to remove sdk blob {}: {}", blob, e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Failed to list sdk blobs: {}", e.getMessage());
+        }
+        LOGGER.info("Removed {} unused sdk blobs, freed {} bytes", removedCount, freedBytes);
+        return freedBytes;
+    }
+
+    static int getLinkCount(Path file) throws IOException {
+        return (Integer) Files.getAttribute(file, "unix:nlink");
+    }
+
+    private static String hash(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Algorithm SHA-256 is not supported", e);
+        }
+        try (InputStream input = new DigestInputStream(Files.newInputStream(file), digest)) {
+            input.transferTo(OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
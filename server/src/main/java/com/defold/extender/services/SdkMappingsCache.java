@@ -0,0 +1,153 @@
+package com.defold.extender.services;
+
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Platform sdk mappings by sdk version. The most recently used mappings are kept in memory,
+ * all mappings are stored on disk so they are not downloaded again after a restart.
+ * Reads don't lock, the least recently used entry is removed from memory when a new entry is added.
+ */
+class SdkMappingsCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SdkMappingsCache.class);
+
+    private static final class Entry {
+        final JSONObject mappings;
+        volatile long lastAccess;
+
+        Entry(JSONObject mappings, long lastAccess) {
+            this.mappings = mappings;
+            this.lastAccess = lastAccess;
+        }
+    }
+
+    private final int maxSize;
+    private final Path directory;
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong accessCounter = new AtomicLong();
+
+    /**
+     * @param maxSize how many mappings are kept in memory
+     * @param directory where the mappings are stored, or null to keep them in memory only
+     */
+    SdkMappingsCache(int maxSize, Path directory) throws IOException {
+        this.maxSize = maxSize;
+        this.directory = directory;
+        if (directory != null) {
+            Files.createDirectories(directory);
+        }
+    }
+
+    // Returns the mappings from memory or from disk, null if the mappings are not cached
+    JSONObject get(String hash) {
+        Entry entry = entries.get(hash);
+        if (entry != null) {
+            entry.lastAccess = accessCounter.incrementAndGet();
+            return entry.mappings;
+        }
+        JSONObject mappings = load(hash);
+        if (mappings != null) {
+            addEntry(hash, mappings);
+        }
+        return mappings;
+    }
+
+    void put(String hash, JSONObject mappings) {
+        addEntry(hash, mappings);
+        if (directory != null) {
+            try {
+                store(hash, mappings);
+            } catch (IOException e) {
+                LOGGER.warn("Failed to store platform sdks mappings for {}: {}", hash, e.getMessage());
+            }
+        }
+    }
+
+    boolean containsKey(String hash) {
+        return entries.containsKey(hash);
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    // mappings which are kept in memory
+    Map<String, JSONObject> asMap() {
+        Map<String, JSONObject> result = new HashMap<>();
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().mappings);
+        }
+        return result;
+    }
+
+    private void addEntry(String hash, JSONObject mappings) {
+        entries.put(hash, new Entry(mappings, accessCounter.incrementAndGet()));
+        if (entries.size() > maxSize) {
+            synchronized (this) {
+                while (entries.size() > maxSize) {
+                    String eldest = null;
+                    long eldestAccess = Long.MAX_VALUE;
+                    for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                        if (entry.getValue().lastAccess < eldestAccess) {
+                            eldest = entry.getKey();
+                            eldestAccess = entry.getValue().lastAccess;
+                        }
+                    }
+                    if (eldest == null) {
+                        break;
+                    }
+                    entries.remove(eldest);
+                }
+            }
+        }
+    }
+
+    private Path getPath(String hash) {
+        return directory.resolve(hash + ".json");
+    }
+
+    private JSONObject load(String hash) {
+        if (directory == null) {
+            return null;
+        }
+        Path path = getPath(hash);
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            return (JSONObject) new JSONParser().parse(reader);
+        } catch (IOException | ParseException | ClassCastException e) {
+            LOGGER.warn("Failed to load platform sdks mappings for {}: {}", hash, e.getMessage());
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException ignored) {
+                // downloaded and stored again
+            }
+            return null;
+        }
+    }
+
+    private void store(String hash, JSONObject mappings) throws IOException {
+        Path tmpPath = directory.resolve(hash + "." + UUID.randomUUID() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(tmpPath, StandardCharsets.UTF_8)) {
+            mappings.writeJSONString(writer);
+        }
+        Files.move(tmpPath, getPath(hash), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,184 @@
+package com.defold.extender.services;
+
+import com.defold.extender.metrics.MetricsWriter;
+import com.defold.extender.services.data.SdkUsage;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Downloads sdk versions in the background, so builds don't wait for the download of a new release.
+ * Prefetched versions are the configured ones, the current stable versions announced by the info urls
+ * and, after a restart, the versions which were requested most often during the warm-up period.
+ * The request statistics are kept by the DefoldSdkService.
+ * Throttled downloads take long, so they run on an own thread instead of the scheduler thread.
+ */
+@Service
+@ConditionalOnProperty(prefix = "extender.sdk", name = "prefetch.enabled", havingValue = "true")
+public class SdkPrefetchService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SdkPrefetchService.class);
+
+    private final DefoldSdkService defoldSdkService;
+    private final MeterRegistry meterRegistry;
+    private final String[] infoUrls;
+    private final String[] versions;
+    private final long maxBytesPerSecond;
+    private final int warmupCount;
+    private final long warmupPeriod;
+
+    // versions which were prefetched by this instance. Evicted versions are not downloaded again
+    private final Set<String> prefetchedVersions = new HashSet<>();
+    private boolean isWarmedUp = false;
+    private final ExecutorService prefetchExecutor = Executors.newSingleThreadExecutor(Thread.ofVirtual().name("sdk-prefetch").factory());
+    private final AtomicBoolean isPrefetching = new AtomicBoolean(false);
+
+    public SdkPrefetchService(DefoldSdkService defoldSdkService,
+                              @Value("${extender.sdk.prefetch.info-urls:}") String[] infoUrls,
+                              @Value("${extender.sdk.prefetch.versions:}") String[] versions,
+                              @Value("${extender.sdk.prefetch.max-bytes-per-second:0}") long maxBytesPerSecond,
+                              @Value("${extender.sdk.prefetch.warmup-count:3}") int warmupCount,
+                              @Value("${extender.sdk.prefetch.warmup-period:604800000}") long warmupPeriod,
+                              MeterRegistry meterRegistry) {
+        this.defoldSdkService = defoldSdkService;
+        this.meterRegistry = meterRegistry;
+        this.infoUrls = infoUrls;
+        this.versions = versions;
+        this.maxBytesPerSecond = maxBytesPerSecond;
+        this.warmupCount = warmupCount;
+        this.warmupPeriod = warmupPeriod;
+    }
+
+    @Scheduled(initialDelayString="${extender.sdk.prefetch.initial-delay:10000}", fixedDelayString="${extender.sdk.prefetch.interval:600000}")
+    public void schedulePrefetch() {
+        // a poll is skipped while the previous one is still downloading
+        if (!isPrefetching.compareAndSet(false, true)) {
+            return;
+        }
+        prefetchExecutor.execute(() -> {
+            try {
+                prefetch();
+            } catch (RuntimeException e) {
+                LOGGER.warn("Sdk prefetch failed: {}", e.getMessage());
+            } finally {
+                isPrefetching.set(false);
+            }
+        });
+    }
+
+    void prefetch() {
+        Map<String, SdkUsage> usage = defoldSdkService.getSdkUsage();
+
+        Set<String> hashes = new LinkedHashSet<>();
+        for (String version : versions) {
+            if (!version.isBlank()) {
+                hashes.add(version.trim());
+            }
+        }
+        hashes.addAll(getStableVersions());
+        if (!isWarmedUp) {
+            hashes.addAll(getWarmupVersions(usage, System.currentTimeMillis() - warmupPeriod, warmupCount));
+            isWarmedUp = true;
+        }
+
+        for (String hash : hashes) {
+            if (prefetchedVersions.contains(hash)) {
+                continue;
+            }
+            LOGGER.info("Prefetch sdk {}", hash);
+            long start = System.currentTimeMillis();
+            boolean isPrefetched = defoldSdkService.prefetchSdk(hash, maxBytesPerSecond);
+            if (isPrefetched) {
+                try {
+                    defoldSdkService.getPlatformSdkMappings(hash);
+                } catch (Exception e) {
+                    LOGGER.warn("Failed to prefetch platform sdks mappings for {}: {}", hash, e.getMessage());
+                }
+                prefetchedVersions.add(hash);
+                MetricsWriter.metricsTimer(meterRegistry, "extender.service.sdk.prefetch.duration", System.currentTimeMillis() - start, "sdk", hash);
+            }
+            MetricsWriter.metricsCounterIncrement(meterRegistry, "extender.service.sdk.prefetch", "result", isPrefetched ? "success" : "failure");
+        }
+    }
+
+    @PreDestroy
+    public void destroy() throws InterruptedException {
+        prefetchExecutor.shutdownNow();
+        prefetchExecutor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    // The most requested versions which were requested after the given time
+    static List<String> getWarmupVersions(Map<String, SdkUsage> usage, long since, int count) {
+        List<String> result = new ArrayList<>();
+        usage.entrySet().stream()
+                .filter(entry -> entry.getValue().lastRequestTime() >= since)
+                .sorted(Comparator.comparingLong((Map.Entry<String, SdkUsage> entry) -> entry.getValue().requestCount()).reversed())
+                .limit(count)
+                .forEach(entry -> result.add(entry.getKey()));
+        return result;
+    }
+
+    private List<String> getStableVersions() {
+        List<String> result = new ArrayList<>();
+        ClientHttpRequestFactory clientHttpRequestFactory = new SimpleClientHttpRequestFactory();
+        for (String url : infoUrls) {
+            if (url.isBlank()) {
+                continue;
+            }
+            try {
+                ClientHttpRequest request = clientHttpRequestFactory.createRequest(URI.create(url.trim()), HttpMethod.GET);
+                try (ClientHttpResponse response = request.execute()) {
+                    if (response.getStatusCode() != HttpStatus.OK) {
+                        LOGGER.warn("Can't get sdk version from {}: {}", url, response.getStatusCode());
+                        continue;
+                    }
+                    String hash = parseVersionInfo(response.getBody());
+                    if (hash != null) {
+                        result.add(hash);
+                    }
+                }
+            } catch (IOException | ParseException e) {
+                LOGGER.warn("Can't get sdk version from {}: {}", url, e.getMessage());
+            }
+        }
+        return result;
+    }
+
+    // info.json of a release channel, e.g. {"version": "1.10.0", "sha1": "..."}
+    static String parseVersionInfo(InputStream body) throws IOException, ParseException {
+        JSONObject info = (JSONObject) new JSONParser().parse(new InputStreamReader(body, StandardCharsets.UTF_8));
+        Object hash = info.get("sha1");
+        return hash != null ? hash.toString() : null;
+    }
+}
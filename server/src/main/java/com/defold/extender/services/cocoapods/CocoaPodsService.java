@@ -20,6 +20,7 @@ import org.springframework.core.io.Resource;
 import org.springframework.scheduling.annotation.Scheduled;
 
 import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import org.springframework.stereotype.Service;
 import org.yaml.snakeyaml.Yaml;
 
@@ -40,6 +41,11 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Service
 @ConditionalOnProperty(prefix = "extender", name = "cocoapods.enabled", havingValue = "true")
@@ -56,7 +62,8 @@ public class CocoaPodsService {
     }
 
     private class InstalledPods {
-        public Map<String, PodSpec> podsMap = new HashMap<>();
+        // parsed 'pod spec cat' output per pod. PodSpec instances are created from it per selected platform
+        public Map<String, JSONObject> podSpecJsons = new HashMap<>();
         // set of pod's specs to present build order
         public Set<String> pods = new LinkedHashSet<>();
         public File podfileLock;
@@ -65,20 +72,31 @@ public class CocoaPodsService {
     private static final Logger LOGGER = LoggerFactory.getLogger(CocoaPodsService.class);
     private static final String CURRENT_CACHE_DIR_FILE = "current_pod_cache.txt";
     private static final String OLD_CACHE_DIR_FILE = "old_pod_caches.txt";
+    private static final String USAGE_FILE = ".pod-usage";
     private final TemplateExecutor templateExecutor = new TemplateExecutor();
 
     private final String podfileTemplateContents;
     private final String modulemapTemplateContents;
     private @Value("${extender.cocoapods.home-dir-prefix}") String homeDirPrefix;
     private @Value("${extender.cocoapods.cdn-concurrency:10}") int maxPodCDNConcurrency;
-    private Path currentCacheDir = Path.of("");
+    private final int prewarmSpecCount;
+    private @Value("${extender.cocoapods.prewarm-concurrency:4}") int prewarmConcurrency;
+    // the cache directory which is used by new jobs and the specs (name and version) which are known to be
+    // downloaded into it. Both are replaced together when the directory is rotated
+    private record PodCache(Path cacheDir, Set<String> specs) {}
+    private final AtomicReference<PodCache> currentCache = new AtomicReference<>(new PodCache(Path.of(""), ConcurrentHashMap.newKeySet()));
+    private final PodUsageTracker podUsageTracker;
 
     private final MeterRegistry meterRegistry;
 
     CocoaPodsService(@Value("classpath:template.podfile") Resource podfileTemplate,
             @Value("classpath:template.modulemap") Resource modulemapTemplate,
+            @Value("${extender.cocoapods.prewarm-spec-count:200}") int prewarmSpecCount,
             MeterRegistry meterRegistry) throws IOException {
         this.meterRegistry = meterRegistry;
+        this.prewarmSpecCount = prewarmSpecCount;
+        // keep statistics for more specs than we prewarm, so that new specs have time to get popular
+        this.podUsageTracker = new PodUsageTracker(prewarmSpecCount * 10);
         this.podfileTemplateContents = ExtenderUtil.readContentFromResource(podfileTemplate);
         this.modulemapTemplateContents = ExtenderUtil.readContentFromResource(modulemapTemplate);
     }
@@ -88,19 +106,21 @@ public class CocoaPodsService {
         // initialize cache directory
         Path currentCacheDir = readCurrentCacheDir();
         if (currentCacheDir != null && currentCacheDir.startsWith(this.homeDirPrefix)) {
-            synchronized(this.currentCacheDir) {
-                this.currentCacheDir = currentCacheDir;
-            }
+            // the specs which were downloaded before the restart don't make an install cold
+            Set<String> specs = ConcurrentHashMap.newKeySet();
+            specs.addAll(PodUsageTracker.listCachedSpecs(currentCacheDir));
+            LOGGER.info("Pod cache directory contains {} specs", specs.size());
+            this.currentCache.set(new PodCache(currentCacheDir, specs));
             updateSpecRepo();
         } else {
             LOGGER.info("Cocoapods has no current cache dir or prefix is changed. Created...");
-            synchronized(this.currentCacheDir) {
-                this.currentCacheDir = generateCacheDirPath();
-                storeCurrentCacheDir(this.currentCacheDir);
-            }
-            initializeTrunkRepo();
+            Path cacheDir = generateCacheDirPath();
+            this.currentCache.set(new PodCache(cacheDir, ConcurrentHashMap.newKeySet()));
+            storeCurrentCacheDir(cacheDir);
+            initializeTrunkRepo(cacheDir);
         }
         cleanupOldCacheDirectories();
+        podUsageTracker.load(getUsageFile());
         LOGGER.info("Cocoapods startup task completed");
     }
 
@@ -215,11 +235,10 @@ public class CocoaPodsService {
     private InstalledPods installPods(ExtenderBuildState buildState, CocoaPodsServiceBuildState cocoapodsBuildState,
         Map<String, Object> jobEnvContext) throws IOException, ExtenderException {
         LOGGER.info("Installing pods");
-        Path cacheDir;
         // store current cache dir into local variable to use the same value for all 'pod' runs
-        synchronized(currentCacheDir) {
-            cacheDir = currentCacheDir;
-        }
+        PodCache podCache = currentCache.get();
+        Path cacheDir = podCache.cacheDir();
+        Set<String> cacheDirSpecs = podCache.specs();
         InstalledPods installedPods = new InstalledPods();
 
         File workingDir = cocoapodsBuildState.getWorkingDir();
@@ -228,6 +247,7 @@ public class CocoaPodsService {
             throw new ExtenderException("Unable to find Podfile " + podFile);
         }
         File dir = podFile.getParentFile();
+        long installStart = System.currentTimeMillis();
         String log = ProcessUtils.execCommand(List.of(
                 "pod",
                 "install",
@@ -235,6 +255,7 @@ public class CocoaPodsService {
             ), workingDir, Map.of("CP_HOME_DIR", cacheDir.toString(),
             "COCOAPODS_CDN_MAX_CONCURRENCY", String.valueOf(maxPodCDNConcurrency)));
         LOGGER.debug("\n" + log);
+        long installDuration = System.currentTimeMillis() - installStart;
 
         installedPods.podfileLock = new File(workingDir, "Podfile.lock");
         if (!installedPods.podfileLock.exists()) {
@@ -309,6 +330,24 @@ public class CocoaPodsService {
             }
         }
 
+        // the install is 'cold' if some of the specs had to be downloaded from the CDN into the cache dir.
+        // Comparing cold and warm install times shows the penalty of a cold cache.
+        // Pods from ':path' or ':git' are listed in 'EXTERNAL SOURCES', their specs don't come from the CDN.
+        Set<String> externalPods = new HashSet<>();
+        if (parsedLockfile.get("EXTERNAL SOURCES") instanceof Map<?, ?> externalSources) {
+            for (Object podName : externalSources.keySet()) {
+                externalPods.add(podName.toString());
+            }
+        }
+        boolean isColdCache = false;
+        for (Map.Entry<String, String> entry : podVersions.entrySet()) {
+            if (!externalPods.contains(entry.getKey())) {
+                isColdCache |= cacheDirSpecs.add(PodUsageTracker.getSpecKey(entry.getKey(), entry.getValue()));
+            }
+        }
+        podUsageTracker.record(podVersions, externalPods);
+        MetricsWriter.metricsTimer(meterRegistry, "extender.service.cocoapods.install", installDuration, "cache", isColdCache ? "cold" : "warm");
+
         for (Map.Entry<String, List<String>> entry : podsDependencies.entrySet()) {
             installedPods.pods.addAll(getPodDeps(podsDependencies, entry.getValue()));
             installedPods.pods.add(entry.getKey());
@@ -329,8 +368,7 @@ public class CocoaPodsService {
                 //     "dependencies": {
                 //     "GoogleAppMeasurement": [
                 specJson = specJson.substring(specJson.indexOf("{", 0), specJson.length());
-                JSONObject spec = PodSpecParser.parseJson(specJson);
-                installedPods.podsMap.put(podName, PodSpecParser.createPodSpec(spec, cocoapodsBuildState.getSelectedPlatform(), null));
+                installedPods.podSpecJsons.put(podName, PodSpecParser.parseJson(specJson));
             } else {
                 LOGGER.warn("No version information for pod {}", podName);
             }
@@ -354,19 +392,41 @@ public class CocoaPodsService {
     /**
      * Entry point for Cocoapod dependency resolution.
      * @param config Platform config 
-     * @param jobDir Root directory of the job to resolve
-     * @param platform Which platform to resolve pods for
-     * @param configuration Build configuration ("debug", "release", "headless")
+     * @param buildState Extender's build state with job directory and platform to resolve pods for
      * @return ResolvedPods instance with list of pods, install directory etc
      */
     public ResolvedPods resolveDependencies(PlatformConfig config, ExtenderBuildState buildState) throws IOException, ExtenderException {
-        String platform = buildState.getBuildPlatform();
-        if (!ExtenderUtil.isAppleTarget(platform)) {
-            throw new ExtenderException("Unsupported platform " + platform);
+        return resolveDependencies(List.of(config), List.of(buildState)).get(0);
+    }
+
+    /**
+     * Resolve Cocoapod dependencies once for several architectures of the same Apple platform
+     * (e.g. arm64-ios and x86_64-ios) which share the job directory. Podfiles are merged, 'pod install'
+     * runs and podspecs are fetched only once. Build specs, xcframework slices and xcconfig values are
+     * created per architecture.
+     * @param configs Platform config per architecture
+     * @param buildStates Extender's build states per architecture. All of them must share the job directory
+     * @return ResolvedPods instance per build state (in the same order) or null if the project has no Cocoapod dependencies
+     */
+    public List<ResolvedPods> resolveDependencies(List<PlatformConfig> configs, List<ExtenderBuildState> buildStates) throws IOException, ExtenderException {
+        if (configs.size() != buildStates.size() || buildStates.isEmpty()) {
+            throw new ExtenderException("Each build state should have a platform config");
+        }
+        ExtenderBuildState mainBuildState = buildStates.get(0);
+        String platform = mainBuildState.getBuildPlatform();
+        for (ExtenderBuildState buildState : buildStates) {
+            String archPlatform = buildState.getBuildPlatform();
+            if (!ExtenderUtil.isAppleTarget(archPlatform)) {
+                throw new ExtenderException("Unsupported platform " + archPlatform);
+            }
+            if (ExtenderUtil.isIOSTarget(archPlatform) != ExtenderUtil.isIOSTarget(platform)
+                || !buildState.getJobDir().equals(mainBuildState.getJobDir())) {
+                throw new ExtenderException(String.format("Cannot resolve pods for %s and %s together", platform, archPlatform));
+            }
         }
 
-        Map<String, Object> jobEnvContext = createJobEnvContext(config.context);
-        File jobDir = buildState.getJobDir();
+        Map<String, Object> jobEnvContext = createJobEnvContext(configs.get(0).context);
+        File jobDir = mainBuildState.getJobDir();
 
         // find all podfiles and filter down to a list of podfiles specifically
         // for the platform we are resolving pods for
@@ -384,16 +444,41 @@ public class CocoaPodsService {
         }
         if (platformPodfiles.isEmpty()) {
             LOGGER.info("Project has no Cocoapod dependencies");
-            return null;
+            List<ResolvedPods> result = new ArrayList<>();
+            for (int i = 0; i < buildStates.size(); ++i) {
+                result.add(null);
+            }
+            return result;
         }
 
         long methodStart = System.currentTimeMillis();
         LOGGER.info("Resolving Cocoapod dependencies");
 
-        CocoaPodsServiceBuildState cocoapodsBuildState = new CocoaPodsServiceBuildState(buildState);
-        MainPodfile mainPodfile = createMainPodfile(buildState, cocoapodsBuildState, platformPodfiles, jobEnvContext);
-        InstalledPods installedPods = installPods(buildState, cocoapodsBuildState, jobEnvContext);
+        CocoaPodsServiceBuildState mainCocoapodsBuildState = new CocoaPodsServiceBuildState(mainBuildState);
+        MainPodfile mainPodfile = createMainPodfile(mainBuildState, mainCocoapodsBuildState, platformPodfiles, jobEnvContext);
+        InstalledPods installedPods = installPods(mainBuildState, mainCocoapodsBuildState, jobEnvContext);
+
+        List<ResolvedPods> result = new ArrayList<>();
+        for (int i = 0; i < buildStates.size(); ++i) {
+            ExtenderBuildState buildState = buildStates.get(i);
+            CocoaPodsServiceBuildState cocoapodsBuildState = i == 0 ? mainCocoapodsBuildState : new CocoaPodsServiceBuildState(buildState);
+            Map<String, Object> archJobEnvContext = i == 0 ? jobEnvContext : createJobEnvContext(configs.get(i).context);
+            result.add(createResolvedPods(buildState, cocoapodsBuildState, installedPods, mainPodfile, archJobEnvContext));
+        }
+
+        dumpDir(jobDir, 0);
 
+        MetricsWriter.metricsTimer(meterRegistry, "extender.service.cocoapods.get", System.currentTimeMillis() - methodStart);
+
+        return result;
+    }
+
+    private ResolvedPods createResolvedPods(ExtenderBuildState buildState, CocoaPodsServiceBuildState cocoapodsBuildState,
+        InstalledPods installedPods, MainPodfile mainPodfile, Map<String, Object> jobEnvContext) throws IOException, ExtenderException {
+        Map<String, PodSpec> podsMap = new HashMap<>();
+        for (Map.Entry<String, JSONObject> entry : installedPods.podSpecJsons.entrySet()) {
+            podsMap.put(entry.getKey(), PodSpecParser.createPodSpec(entry.getValue(), cocoapodsBuildState.getSelectedPlatform(), null));
+        }
 
         XCConfigParser parser = new XCConfigParser(buildState, cocoapodsBuildState);
         CreateBuildSpecArgs args = new CreateBuildSpecArgs.Builder()
@@ -406,7 +491,7 @@ public class CocoaPodsService {
         List<PodBuildSpec> pods = new ArrayList<>();
         for (String specName : installedPods.pods) {
             String podName = PodUtils.getPodName(specName);
-            PodSpec podSpec = installedPods.podsMap.get(podName);
+            PodSpec podSpec = podsMap.get(podName);
             String podnameparts[] = PodUtils.splitPodname(specName);
             if (podnameparts.length > 1) {
                 for (int i = 1; i < podnameparts.length; i++) {
@@ -445,12 +530,8 @@ public class CocoaPodsService {
         unpackXCFrameworks(cocoapodsBuildState, pods);
         generateSwiftCompatabilityModule(pods);
 
-        dumpDir(jobDir, 0);
-
-        MetricsWriter.metricsTimer(meterRegistry, "extender.service.cocoapods.get", System.currentTimeMillis() - methodStart);
-
         ResolvedPods resolvedPods = new ResolvedPods(cocoapodsBuildState, pods, installedPods.podfileLock, mainPodfile);
-        LOGGER.info("Resolved Cocoapod dependencies");
+        LOGGER.info("Resolved Cocoapod dependencies for {}", buildState.getBuildPlatform());
         LOGGER.info(resolvedPods.toString());
 
         return resolvedPods;
@@ -501,12 +582,8 @@ public class CocoaPodsService {
         }
     }
 
-    private void initializeTrunkRepo() {
+    private void initializeTrunkRepo(Path cacheDir) {
         try {
-            Path cacheDir;
-            synchronized(currentCacheDir) {
-                cacheDir = currentCacheDir;
-            }
             String log = ProcessUtils.execCommand(List.of(
                     "pod",
                     "repo",
@@ -522,21 +599,85 @@ public class CocoaPodsService {
         }        
     }
 
+    /**
+     * Fetch the most used specs into a new cache directory, so that jobs don't have to download them
+     * from the CDN right after the cache directory is rotated.
+     * @param cacheDir The new cache directory
+     * @return Set of specs which were fetched
+     */
+    private Set<String> prewarmCacheDirectory(Path cacheDir) {
+        Set<String> warmedSpecs = ConcurrentHashMap.newKeySet();
+        List<String> specs = podUsageTracker.getMostUsed(prewarmSpecCount);
+        if (specs.isEmpty()) {
+            return warmedSpecs;
+        }
+        LOGGER.info("Prewarm pod cache directory with {} specs", specs.size());
+        long methodStart = System.currentTimeMillis();
+        List<Callable<Void>> callables = new ArrayList<>();
+        for (String spec : specs) {
+            callables.add(() -> {
+                String[] nameAndVersion = PodUsageTracker.splitSpecKey(spec);
+                try {
+                    ProcessUtils.execCommand(List.of(
+                            "pod",
+                            "spec",
+                            "cat",
+                            "--regex",
+                            String.format("^%s$", nameAndVersion[0]),
+                            String.format("--version=%s", nameAndVersion[1])
+                        ), null,
+                        Map.of("CP_HOME_DIR", cacheDir.toString()));
+                    warmedSpecs.add(spec);
+                } catch (ExtenderException exc) {
+                    LOGGER.warn("Failed to prewarm spec {}", spec);
+                }
+                return null;
+            });
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(prewarmConcurrency);
+        try {
+            executor.invokeAll(callables);
+        } catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+            LOGGER.warn("Prewarm of pod cache directory was interrupted");
+        } finally {
+            executor.shutdown();
+        }
+        MetricsWriter.metricsTimer(meterRegistry, "extender.service.cocoapods.prewarm", System.currentTimeMillis() - methodStart);
+        LOGGER.info("Prewarmed {} of {} specs", warmedSpecs.size(), specs.size());
+        return warmedSpecs;
+    }
+
+    private Path getUsageFile() {
+        return Path.of(this.homeDirPrefix, CocoaPodsService.USAGE_FILE);
+    }
+
+    @PreDestroy
+    public void saveUsage() {
+        try {
+            podUsageTracker.save(getUsageFile());
+        } catch (IOException exc) {
+            LOGGER.warn("Failed to save pod usage: {}", exc.getMessage());
+        }
+    }
+
     @Scheduled(cron="${extender.cocoapods.cache-dir-rotate-cron}")
     public void rotatePodCacheDirectory() {
         LOGGER.info("Rotate pod cache directory");
         Path newCacheDir = generateCacheDirPath();
-        Path cacheDir;
-        synchronized(this.currentCacheDir) {
-            cacheDir = this.currentCacheDir;
-        }
+        Path cacheDir = currentCache.get().cacheDir();
         try {
             Files.createDirectories(newCacheDir);
         } catch(IOException|UnsupportedOperationException|SecurityException exc) {
             LOGGER.warn("Cannot create new pod cache directory", exc);
             return;
         }
-            
+
+        saveUsage();
+        // prepare the new directory while jobs still use the current one
+        initializeTrunkRepo(newCacheDir);
+        Set<String> warmedSpecs = prewarmCacheDirectory(newCacheDir);
+
         try (FileWriter writer = new FileWriter(new File(this.homeDirPrefix, CocoaPodsService.OLD_CACHE_DIR_FILE), true)) {
             writer.append(cacheDir.toAbsolutePath().toString());
             writer.append("\n");
@@ -544,11 +685,8 @@ public class CocoaPodsService {
         } catch(IOException exc) {
             LOGGER.warn("Error while writing to old cache paths file", exc);
         }
-        synchronized(this.currentCacheDir) {
-            this.currentCacheDir = newCacheDir;
-            storeCurrentCacheDir(currentCacheDir);
-        }
-        initializeTrunkRepo();
+        currentCache.set(new PodCache(newCacheDir, warmedSpecs));
+        storeCurrentCacheDir(newCacheDir);
     }
 
     @Scheduled(cron="${extender.cocoapods.old-cache-clean-cron}")
@@ -580,10 +718,7 @@ public class CocoaPodsService {
     public void updateSpecRepo() {
         try {
             LOGGER.info("Run pod spec update");
-            Path cacheDir;
-            synchronized(currentCacheDir) {
-                cacheDir = currentCacheDir;
-            }
+            Path cacheDir = currentCache.get().cacheDir();
             String log = ProcessUtils.execCommand(List.of(
                     "pod",
                     "repo",
@@ -0,0 +1,71 @@
+package com.defold.extender.services.cocoapods;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.configuration2.ex.ConfigurationException;
+import org.apache.commons.configuration2.io.FileHandler;
+import org.apache.commons.configuration2.plist.XMLPropertyListConfiguration;
+
+import com.defold.extender.ExtenderException;
+
+// Builds the whole plist in memory and writes it in one go
+public class InfoPlistWriter {
+
+    public static class PlistKeys {
+        static public String BUNDLE_NAME = "CFBundleName";
+        static public String BUNDLE_IDENTIFIER = "CFBundleIdentifier";
+        static public String BUNDLE_PACKAGE_TYPE = "CFBundlePackageType";
+        static public String BUNDLE_VERSION = "CFBundleVersion";
+        static public String BUNDLE_SHORT_VERSION = "CFBundleShortVersionString";
+        static public String SUPPORTED_PLATFORMS = "CFBundleSupportedPlatforms";
+        static public String BUNDLE_INFO_DICTIONARY_VERSION = "CFBundleInfoDictionaryVersion";
+        static public String MINIMUM_OS_VERSION = "MinimumOSVersion";
+        static public String DEVICE_FAMILY = "UIDeviceFamily";
+    }
+
+    public static class PlistValueConstants {
+        static public String TYPE_BUNDLE = "BNDL";
+        static public String PLIST_VERSION = "6.0";
+    }
+
+    public static class CreateBundlePlistArgs {
+        public String bundleId;
+        public String bundleName;
+        public String version;
+        public String shortVersion;
+        public String minVersion;
+        public String[] supportedPlatforms;
+    }
+
+    static public void createBundleInfoPlist(File targetFile, CreateBundlePlistArgs args) throws ExtenderException {
+        XMLPropertyListConfiguration plist = new XMLPropertyListConfiguration();
+        // keys are added in alphabetical order
+        plist.setProperty(PlistKeys.BUNDLE_IDENTIFIER, args.bundleId);
+        plist.setProperty(PlistKeys.BUNDLE_INFO_DICTIONARY_VERSION, PlistValueConstants.PLIST_VERSION);
+        plist.setProperty(PlistKeys.BUNDLE_NAME, args.bundleName);
+        plist.setProperty(PlistKeys.BUNDLE_PACKAGE_TYPE, PlistValueConstants.TYPE_BUNDLE);
+        plist.setProperty(PlistKeys.BUNDLE_SHORT_VERSION, args.shortVersion);
+        plist.setProperty(PlistKeys.SUPPORTED_PLATFORMS, Arrays.asList(args.supportedPlatforms));
+        plist.setProperty(PlistKeys.BUNDLE_VERSION, args.version);
+        plist.setProperty(PlistKeys.MINIMUM_OS_VERSION, args.minVersion);
+        plist.setProperty(PlistKeys.DEVICE_FAMILY, List.of(1, 2));  // by default add both device type: tablet and phone
+        write(plist, targetFile);
+    }
+
+    static void write(XMLPropertyListConfiguration plist, File targetFile) throws ExtenderException {
+        FileHandler handler = new FileHandler(plist);
+        handler.setEncoding(StandardCharsets.UTF_8.name());
+        try {
+            // the target can be a hardlink to a file of the pod, writing to it would change the pod
+            Files.deleteIfExists(targetFile.toPath());
+            handler.save(targetFile);
+        } catch (IOException | ConfigurationException exc) {
+            throw new ExtenderException(exc, String.format("Failed to write plist %s", targetFile));
+        }
+    }
+}
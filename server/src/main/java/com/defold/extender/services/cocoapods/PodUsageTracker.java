@@ -0,0 +1,133 @@
+package com.defold.extender.services.cocoapods;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// Counts how often pod specs (name and version) appear in the Podfile.lock files of recent jobs.
+// Used to choose which specs should be fetched into a new pod cache directory before it is used.
+// The counters are stored next to the pod cache directories, so that they survive restarts.
+class PodUsageTracker {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PodUsageTracker.class);
+
+    private static final String PODSPEC_SUFFIX = ".podspec.json";
+
+    private final Map<String, Integer> usage = new HashMap<>();
+    private final int capacity;
+
+    PodUsageTracker(int capacity) {
+        this.capacity = capacity;
+    }
+
+    static String getSpecKey(String podName, String version) {
+        return String.format("%s %s", podName, version);
+    }
+
+    // split spec key into pod name and version
+    static String[] splitSpecKey(String specKey) {
+        return specKey.split(" ", 2);
+    }
+
+    // Specs which were downloaded into the cache directory, the spec repos keep them as
+    // 'repos/trunk/Specs/1/2/3/<name>/<version>/<name>.podspec.json'
+    static Set<String> listCachedSpecs(Path cacheDir) {
+        Set<String> result = new HashSet<>();
+        Path reposDir = cacheDir.resolve("repos");
+        if (!Files.isDirectory(reposDir)) {
+            return result;
+        }
+        try (Stream<Path> files = Files.walk(reposDir)) {
+            files.filter(file -> file.getFileName().toString().endsWith(PODSPEC_SUFFIX))
+                .forEach(file -> {
+                    String fileName = file.getFileName().toString();
+                    String podName = fileName.substring(0, fileName.length() - PODSPEC_SUFFIX.length());
+                    result.add(getSpecKey(podName, file.getParent().getFileName().toString()));
+                });
+        } catch (IOException | UncheckedIOException e) {
+            LOGGER.warn("Failed to list the specs in {}: {}", cacheDir, e.getMessage());
+        }
+        return result;
+    }
+
+    // pods from ':path' or ':git' sources have no specs in the trunk repo, they are neither counted nor prewarmed
+    synchronized void record(Map<String, String> podVersions, Collection<String> externalPods) {
+        if (usage.size() >= capacity) {
+            // halve all counters so that recently used specs can outrank old ones
+            Iterator<Map.Entry<String, Integer>> it = usage.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, Integer> entry = it.next();
+                entry.setValue(entry.getValue() / 2);
+                if (entry.getValue() == 0) {
+                    it.remove();
+                }
+            }
+        }
+        for (Map.Entry<String, String> entry : podVersions.entrySet()) {
+            if (externalPods.contains(entry.getKey())) {
+                continue;
+            }
+            usage.merge(getSpecKey(entry.getKey(), entry.getValue()), 1, Integer::sum);
+        }
+    }
+
+    synchronized List<String> getMostUsed(int count) {
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>(usage.entrySet());
+        entries.sort(Map.Entry.<String, Integer>comparingByValue().reversed());
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i < Math.min(count, entries.size()); ++i) {
+            result.add(entries.get(i).getKey());
+        }
+        return result;
+    }
+
+    synchronized void load(Path usageFile) {
+        if (!Files.exists(usageFile)) {
+            return;
+        }
+        Properties properties = new Properties();
+        try (InputStream input = Files.newInputStream(usageFile)) {
+            properties.load(input);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to load pod usage: {}", e.getMessage());
+            return;
+        }
+        for (String spec : properties.stringPropertyNames()) {
+            try {
+                usage.merge(spec, Integer.parseInt(properties.getProperty(spec)), Integer::sum);
+            } catch (NumberFormatException e) {
+                LOGGER.warn("Invalid pod usage of {}", spec);
+            }
+        }
+    }
+
+    void save(Path usageFile) throws IOException {
+        Properties properties = new Properties();
+        synchronized (this) {
+            for (Map.Entry<String, Integer> entry : usage.entrySet()) {
+                properties.setProperty(entry.getKey(), entry.getValue().toString());
+            }
+        }
+        Path tmpFile = usageFile.resolveSibling(usageFile.getFileName() + ".tmp");
+        try (OutputStream output = Files.newOutputStream(tmpFile)) {
+            properties.store(output, "pod spec usage count");
+        }
+        Files.move(tmpFile, usageFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
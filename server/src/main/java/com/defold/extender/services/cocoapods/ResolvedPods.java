@@ -9,17 +9,22 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.defold.extender.ExtenderConst;
 import com.defold.extender.ExtenderException;
 import com.defold.extender.ExtenderUtil;
-import com.defold.extender.services.cocoapods.PlistBuddyWrapper.CreateBundlePlistArgs;
+import com.defold.extender.services.cocoapods.InfoPlistWriter.CreateBundlePlistArgs;
+import com.defold.extender.utils.FileLinkUtil;
 import com.defold.extender.utils.FrameworkUtil;
 
 public class ResolvedPods {
@@ -197,10 +202,30 @@ public class ResolvedPods {
         return result;
     }
 
+    // bundles of different pods don't depend on each other so they are created in parallel
     public List<File> createResourceBundles(File targetDir, String platform) throws IOException, ExtenderException {
-        List<File> result = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        List<Callable<List<File>>> callables = new ArrayList<>();
         for (PodBuildSpec spec : pods) {
-            result.addAll(createPodResourceBundles(spec, targetDir, platform));
+            callables.add(() -> createPodResourceBundles(spec, targetDir, platform));
+        }
+        List<File> result = new ArrayList<>();
+        try {
+            for (Future<List<File>> future : executor.invokeAll(callables)) {
+                result.addAll(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ExtenderException(e, "Resource bundle creation was interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException)e.getCause();
+            } else if (e.getCause() instanceof ExtenderException) {
+                throw (ExtenderException)e.getCause();
+            }
+            throw new ExtenderException(e, "Failed to create resource bundles: " + e.getCause());
+        } finally {
+            executor.shutdown();
         }
         return result;
     }
@@ -211,11 +236,11 @@ public class ResolvedPods {
         for (String contentElement : content) {
             // contentElement can be regex so expand it
             for (File f : PodUtils.listFilesGlob(pod.dir, contentElement)) {
-                FileUtils.copyFileToDirectory(f, resultFolder);
+                FileLinkUtil.linkFileToDirectory(f, resultFolder);
             }
         }
         File infoPlist = new File(resultFolder, "Info.plist");
-        PlistBuddyWrapper.CreateBundlePlistArgs args = new CreateBundlePlistArgs();
+        CreateBundlePlistArgs args = new CreateBundlePlistArgs();
         args.bundleId = "com.defold.extender." + bundleName;
         args.bundleName = bundleName;
         args.version = "1";
@@ -223,7 +248,7 @@ public class ResolvedPods {
         args.minVersion = pod.platformVersion;
         // TODO: if build several archs we need to merge supported platforms
         args.supportedPlatforms = PodUtils.toPlistPlatforms(new String[] { platform });
-        PlistBuddyWrapper.createBundleInfoPlist(infoPlist, args);
+        InfoPlistWriter.createBundleInfoPlist(infoPlist, args);
         return resultFolder;
     }
 
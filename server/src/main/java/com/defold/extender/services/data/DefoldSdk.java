@@ -5,25 +5,41 @@ import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.defold.extender.services.DefoldSdkService;
 
+/**
+ * A reference to an sdk directory. The sdk isn't evicted while the reference is held, close() releases it.
+ * The handle is immutable, each user of an sdk gets its own handle.
+ */
 public class DefoldSdk implements AutoCloseable {
-    private File sdkDir;
-    private String sdkHash;
-    private DefoldSdkService sdkService;
-    private boolean isVerified = false;
-    private AtomicBoolean isUsed = new AtomicBoolean(true);
+    private final File sdkDir;
+    private final String sdkHash;
+    private final DefoldSdkService sdkService;
+    private final boolean isVerified;
+    private final AtomicBoolean isUsed = new AtomicBoolean(true);
 
     public DefoldSdk(File sdkDir, String sdkHash, DefoldSdkService sdkService) {
+        this(sdkDir, sdkHash, false, sdkService);
+        if (!sdkService.acquireSdk(sdkHash)) {
+            throw new IllegalStateException(String.format("Sdk %s is being evicted", sdkHash));
+        }
+    }
+
+    // the reference is acquired by the caller
+    private DefoldSdk(File sdkDir, String sdkHash, boolean isVerified, DefoldSdkService sdkService) {
         this.sdkDir = sdkDir;
         this.sdkHash = sdkHash;
+        this.isVerified = isVerified;
         this.sdkService = sdkService;
-
-        this.sdkService.acquireSdk(sdkHash);
     }
 
-    public static DefoldSdk copyOf(DefoldSdk sdk) {
-        DefoldSdk copy = new DefoldSdk(sdk.sdkDir, sdk.sdkHash, sdk.sdkService);
-        copy.setVerified(sdk.isVerified);
-        return copy;
+    /**
+     * Acquires a reference to the sdk
+     * @return the handle or null if the sdk is being evicted
+     */
+    public static DefoldSdk acquire(File sdkDir, String sdkHash, boolean isVerified, DefoldSdkService sdkService) {
+        if (!sdkService.acquireSdk(sdkHash)) {
+            return null;
+        }
+        return new DefoldSdk(sdkDir, sdkHash, isVerified, sdkService);
     }
 
     public boolean isValid() {
@@ -38,10 +54,6 @@ public class DefoldSdk implements AutoCloseable {
         return this.sdkHash;
     }
 
-    public void setVerified(boolean isValid) {
-        this.isVerified = isValid;
-    }
-
     public boolean isVerified() {
         return this.isVerified;
     }
@@ -53,11 +65,8 @@ public class DefoldSdk implements AutoCloseable {
 
     @Override
     public void close() {
-        synchronized (this.isUsed) {
-            if (this.isUsed.get()) {
-                this.sdkService.releaseSdk(this.sdkHash);
-                this.isUsed.set(false);
-            }
+        if (this.isUsed.compareAndSet(true, false)) {
+            this.sdkService.releaseSdk(this.sdkHash);
         }
     }
 }
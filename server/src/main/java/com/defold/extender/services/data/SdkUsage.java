@@ -0,0 +1,7 @@
+package com.defold.extender.services.data;
+
+/**
+ * How many times an sdk version was requested by builds and when it was requested last time
+ */
+public record SdkUsage(long requestCount, long lastRequestTime) {
+}
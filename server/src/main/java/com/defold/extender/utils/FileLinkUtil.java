@@ -0,0 +1,62 @@
+package com.defold.extender.utils;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+public class FileLinkUtil {
+    /**
+     * Put a file at the target location without copying its content.
+     * The file is hardlinked, so the target shares the data with the source. If a link can't be created
+     * (e.g. the source is on another filesystem) the file is copied instead.
+     * Symbolic links are resolved, so the result is the same as for a regular copy.
+     * Targets must be treated as read-only, since writing to them also changes the source.
+     * @param source The file to link
+     * @param target The path of the new file. An existing file is replaced.
+     */
+    public static void linkFile(File source, File target) throws IOException {
+        Path sourcePath = source.toPath().toRealPath();
+        Path targetPath = target.toPath();
+        Files.createDirectories(targetPath.getParent());
+        Files.deleteIfExists(targetPath);
+        try {
+            Files.createLink(targetPath, sourcePath);
+        } catch (IOException | UnsupportedOperationException exc) {
+            Files.copy(sourcePath, targetPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+        }
+    }
+
+    public static void linkFileToDirectory(File source, File targetDir) throws IOException {
+        linkFile(source, new File(targetDir, source.getName()));
+    }
+
+    /**
+     * Link the content of a directory into the target directory. Works as FileUtils.copyDirectory():
+     * the target directory is merged with the source and existing files are replaced.
+     * @param sourceDir The directory to link
+     * @param targetDir The target directory. Created if missing
+     * @param filter Filter applied to files and subdirectories on each level. Can be null
+     */
+    public static void linkDirectory(File sourceDir, File targetDir, FileFilter filter) throws IOException {
+        File[] files = filter != null ? sourceDir.listFiles(filter) : sourceDir.listFiles();
+        if (files == null) {
+            throw new IOException(String.format("Failed to list contents of %s", sourceDir));
+        }
+        Files.createDirectories(targetDir.toPath());
+        for (File file : files) {
+            File target = new File(targetDir, file.getName());
+            if (file.isDirectory()) {
+                linkDirectory(file, target, filter);
+            } else {
+                linkFile(file, target);
+            }
+        }
+    }
+
+    public static void linkDirectory(File sourceDir, File targetDir) throws IOException {
+        linkDirectory(sourceDir, targetDir, null);
+    }
+}
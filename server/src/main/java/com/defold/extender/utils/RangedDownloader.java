@@ -0,0 +1,309 @@
+package com.defold.extender.utils;
+
+import org.apache.http.Header;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.nio.file.Files;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Downloads large files as several byte ranges in parallel.
+ * The first range is requested with the first request: if the server answers with a partial response,
+ * ranges are supported and the total size is taken from Content-Range. The remaining ranges are written
+ * in parallel into a preallocated (sparse) file and each range is retried on its own if it fails.
+ * Servers which don't support ranges send the whole file in the first response.
+ */
+public class RangedDownloader implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RangedDownloader.class);
+
+    private static final Pattern CONTENT_RANGE_PATTERN = Pattern.compile("bytes \\d+-\\d+/(\\d+)");
+    private static final long RETRY_DELAY = 200;
+
+    // Adds authorization headers etc. to each request
+    @FunctionalInterface
+    public interface RequestDecorator {
+        void decorate(HttpRequestBase request) throws IOException;
+    }
+
+    public record Result(long size, String sha256) {}
+
+    private final CloseableHttpClient httpClient;
+    private final ExecutorService executor;
+    private final boolean isOwner;
+    private final long rangeSize;
+    private final int maxAttempts;
+    private final RequestDecorator decorator;
+
+    /**
+     * Uses the http client and the executor of the caller, they are not closed by close()
+     * @param rangeSize size of the ranges which are requested in parallel
+     * @param maxAttempts how many times a range is requested before the download fails
+     */
+    public RangedDownloader(CloseableHttpClient httpClient, ExecutorService executor, long rangeSize, int maxAttempts, RequestDecorator decorator) {
+        this.httpClient = httpClient;
+        this.executor = executor;
+        this.isOwner = false;
+        this.rangeSize = rangeSize;
+        this.maxAttempts = maxAttempts;
+        this.decorator = decorator;
+    }
+
+    /**
+     * @param concurrency how many ranges are downloaded in parallel
+     */
+    public RangedDownloader(long rangeSize, int concurrency, int maxAttempts) {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(concurrency);
+        connectionManager.setDefaultMaxPerRoute(concurrency);
+        this.httpClient = HttpClients.custom().setConnectionManager(connectionManager).build();
+        this.executor = Executors.newFixedThreadPool(concurrency, Thread.ofVirtual().name("ranged-download-", 0).factory());
+        this.isOwner = true;
+        this.rangeSize = rangeSize;
+        this.maxAttempts = maxAttempts;
+        this.decorator = request -> {};
+    }
+
+    /**
+     * Downloads the file into target and checks its SHA-256
+     * @param expectedSha256 expected hex encoded checksum, or null to skip the verification
+     * @return the size and the checksum of the file, or null if the file doesn't exist
+     */
+    public Result download(URI uri, File target, String expectedSha256) throws IOException {
+        CloseableHttpResponse response = executeFirstRange(uri);
+        if (response == null) {
+            return null;
+        }
+        try {
+            if (response.getStatusLine().getStatusCode() == HttpStatus.SC_OK) {
+                // no ranges, the whole file is in the response
+                try (RandomAccessFile output = new RandomAccessFile(target, "rw")) {
+                    output.setLength(0);
+                }
+                writeRange(response, target, 0);
+            } else {
+                long totalSize = getTotalSize(response);
+                try (RandomAccessFile output = new RandomAccessFile(target, "rw")) {
+                    output.setLength(totalSize);
+                }
+                writeFirstRange(response, target, totalSize);
+                response.close();
+                downloadRanges(uri, target, totalSize);
+            }
+        } finally {
+            response.close();
+        }
+
+        String sha256 = sha256(target);
+        if (expectedSha256 != null && !expectedSha256.trim().equalsIgnoreCase(sha256)) {
+            throw new IOException(String.format("Checksum mismatch for %s: expected %s, got %s", uri, expectedSha256.trim(), sha256));
+        }
+        return new Result(target.length(), sha256);
+    }
+
+    /**
+     * Opens the file for reading. Files which fit into one range are streamed from the response,
+     * larger files are downloaded into a temporary file which is removed when the stream is closed.
+     * @return the content or null if the file doesn't exist
+     */
+    public InputStream open(URI uri) throws IOException {
+        CloseableHttpResponse response = executeFirstRange(uri);
+        if (response == null) {
+            return null;
+        }
+        try {
+            if (response.getStatusLine().getStatusCode() == HttpStatus.SC_OK) {
+                return response.getEntity().getContent();
+            }
+            long totalSize = getTotalSize(response);
+            if (totalSize <= rangeSize) {
+                return response.getEntity().getContent();
+            }
+            File tmpFile = Files.createTempFile("ranged-download-", ".tmp").toFile();
+            try {
+                try (RandomAccessFile output = new RandomAccessFile(tmpFile, "rw")) {
+                    output.setLength(totalSize);
+                }
+                writeFirstRange(response, tmpFile, totalSize);
+                response.close();
+                downloadRanges(uri, tmpFile, totalSize);
+                return new TemporaryFileInputStream(tmpFile);
+            } catch (IOException e) {
+                tmpFile.delete();
+                throw e;
+            }
+        } catch (IOException | RuntimeException e) {
+            response.close();
+            throw e;
+        }
+    }
+
+    // Returns the response with status 200 or 206, null for 404
+    private CloseableHttpResponse executeFirstRange(URI uri) throws IOException {
+        HttpGet request = new HttpGet(uri);
+        request.setHeader("Range", String.format("bytes=0-%d", rangeSize - 1));
+        decorator.decorate(request);
+        CloseableHttpResponse response = httpClient.execute(request);
+        int status = response.getStatusLine().getStatusCode();
+        if (status == HttpStatus.SC_NOT_FOUND) {
+            EntityUtils.consumeQuietly(response.getEntity());
+            response.close();
+            return null;
+        }
+        if (status != HttpStatus.SC_OK && status != HttpStatus.SC_PARTIAL_CONTENT) {
+            response.close();
+            throw new IOException(String.format("Unexpected status %d for GET %s", status, uri));
+        }
+        return response;
+    }
+
+    private void downloadRanges(URI uri, File target, long totalSize) throws IOException {
+        List<Callable<Void>> callables = new ArrayList<>();
+        for (long offset = rangeSize; offset < totalSize; offset += rangeSize) {
+            final long rangeStart = offset;
+            final long rangeEnd = Math.min(offset + rangeSize, totalSize) - 1;
+            callables.add(() -> {
+                downloadRange(uri, target, rangeStart, rangeEnd);
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> future : executor.invokeAll(callables)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Download of " + uri + " was interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IOException("Failed to download " + uri, e.getCause());
+        }
+    }
+
+    private void downloadRange(URI uri, File target, long rangeStart, long rangeEnd) throws IOException, InterruptedException {
+        for (int attempt = 1; ; ++attempt) {
+            HttpGet request = new HttpGet(uri);
+            request.setHeader("Range", String.format("bytes=%d-%d", rangeStart, rangeEnd));
+            decorator.decorate(request);
+            try (CloseableHttpResponse response = httpClient.execute(request)) {
+                if (response.getStatusLine().getStatusCode() != HttpStatus.SC_PARTIAL_CONTENT) {
+                    throw new IOException(String.format("Unexpected status %d for range %d-%d of %s",
+                            response.getStatusLine().getStatusCode(), rangeStart, rangeEnd, uri));
+                }
+                long written = writeRange(response, target, rangeStart);
+                if (written != rangeEnd - rangeStart + 1) {
+                    throw new IOException(String.format("Range %d-%d of %s is incomplete: %d bytes", rangeStart, rangeEnd, uri, written));
+                }
+                return;
+            } catch (IOException e) {
+                if (attempt >= maxAttempts) {
+                    throw e;
+                }
+                LOGGER.warn("Range {}-{} of {} failed, attempt {} of {}: {}", rangeStart, rangeEnd, uri, attempt, maxAttempts, e.getMessage());
+                Thread.sleep(RETRY_DELAY * attempt);
+            }
+        }
+    }
+
+    private void writeFirstRange(CloseableHttpResponse response, File file, long totalSize) throws IOException {
+        long written = writeRange(response, file, 0);
+        if (written != Math.min(rangeSize, totalSize)) {
+            throw new IOException(String.format("The first range is incomplete: %d bytes", written));
+        }
+    }
+
+    private static long writeRange(CloseableHttpResponse response, File file, long offset) throws IOException {
+        long written = 0;
+        try (InputStream inputStream = response.getEntity().getContent();
+             RandomAccessFile output = new RandomAccessFile(file, "rw")) {
+            output.seek(offset);
+            byte[] buffer = new byte[65536];
+            int count;
+            while ((count = inputStream.read(buffer)) != -1) {
+                output.write(buffer, 0, count);
+                written += count;
+            }
+        }
+        return written;
+    }
+
+    private static long getTotalSize(CloseableHttpResponse response) throws IOException {
+        Header contentRange = response.getFirstHeader("Content-Range");
+        Matcher matcher = contentRange != null ? CONTENT_RANGE_PATTERN.matcher(contentRange.getValue()) : null;
+        if (matcher == null || !matcher.matches()) {
+            throw new IOException("Missing total size in Content-Range header");
+        }
+        return Long.parseLong(matcher.group(1));
+    }
+
+    public static String sha256(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Algorithm SHA-256 is not supported", e);
+        }
+        try (InputStream input = new DigestInputStream(new FileInputStream(file), digest)) {
+            input.transferTo(OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    @Override
+    public void close() throws IOException, InterruptedException {
+        if (isOwner) {
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+            httpClient.close();
+        }
+    }
+
+    // File assembled from ranges, the file is removed when the stream is closed
+    private static class TemporaryFileInputStream extends FileInputStream {
+        private final File file;
+
+        TemporaryFileInputStream(final File file) throws IOException {
+            super(file);
+            this.file = file;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                file.delete();
+            }
+        }
+    }
+}
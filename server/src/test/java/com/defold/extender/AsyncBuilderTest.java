@@ -0,0 +1,116 @@
+package com.defold.extender;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.defold.extender.metrics.MetricsWriter;
+import com.defold.extender.services.cocoapods.CocoaPodsServiceStub;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class AsyncBuilderTest {
+
+    private static final File SDK = new File("test-data/sdk/a/defoldsdk");
+
+    // Builds every architecture by writing a fake engine executable, the builds wait for each other
+    // so they only pass if they run in parallel
+    private static class FakeAsyncBuilder extends AsyncBuilder {
+        private final CyclicBarrier barrier;
+        private final List<List<String>> lipoCommands = new ArrayList<>();
+
+        FakeAsyncBuilder(CocoaPodsServiceStub cocoaPodsService, File jobResultLocation, int architectureCount) {
+            super(null, null, Optional.of(cocoaPodsService), jobResultLocation.getAbsolutePath(), 1000);
+            this.barrier = new CyclicBarrier(architectureCount);
+        }
+
+        @Override
+        protected Map<String, String> getBuildEnv() {
+            return ExtenderTest.createEnv();
+        }
+
+        @Override
+        protected void build(Extender extender) throws ExtenderException {
+            try {
+                barrier.await(10, TimeUnit.SECONDS);
+                File exe = extender.getEngineExecutable();
+                Files.writeString(exe.toPath(), exe.getParentFile().getName());
+                extender.getOutputFiles().add(exe);
+            } catch (Exception e) {
+                throw new ExtenderException(e, "Failed to build " + extender.getEngineExecutable());
+            }
+        }
+
+        @Override
+        protected void createUniversalBinary(List<String> lipoCommand) throws ExtenderException {
+            lipoCommands.add(lipoCommand);
+            try {
+                Files.writeString(new File(lipoCommand.get(3)).toPath(), "universal");
+            } catch (Exception e) {
+                throw new ExtenderException(e, "Failed to write universal binary");
+            }
+        }
+    }
+
+    private static Set<String> listZipEntries(File zipFile) throws Exception {
+        Set<String> result = new TreeSet<>();
+        try (ZipInputStream zipInputStream = new ZipInputStream(new FileInputStream(zipFile))) {
+            ZipEntry entry;
+            while ((entry = zipInputStream.getNextEntry()) != null) {
+                result.add(entry.getName());
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void testBuildAppleArchitectures(@TempDir File tmpDir) throws Exception {
+        File jobDirectory = new File(tmpDir, "job");
+        File uploadDirectory = new File(jobDirectory, "upload");
+        File buildDirectory = new File(jobDirectory, "build");
+        uploadDirectory.mkdirs();
+        buildDirectory.mkdirs();
+
+        CocoaPodsServiceStub cocoaPodsService = new CocoaPodsServiceStub();
+        FakeAsyncBuilder asyncBuilder = new FakeAsyncBuilder(cocoaPodsService, tmpDir, 2);
+        List<Extender> extenders = new ArrayList<>();
+        List<File> outputFiles = asyncBuilder.buildAppleArchitectures(new MetricsWriter(new SimpleMeterRegistry()), SDK,
+                "arm64-ios", List.of("x86_64-ios"), true, jobDirectory, uploadDirectory, buildDirectory, extenders);
+
+        // the pods are resolved once for both architectures, which share the job and upload folders
+        assertEquals(1, cocoaPodsService.getResolveCalls().size());
+        List<ExtenderBuildState> buildStates = cocoaPodsService.getResolveCalls().get(0);
+        assertEquals(List.of("arm64-ios", "x86_64-ios"), buildStates.stream().map(ExtenderBuildState::getBuildPlatform).toList());
+        for (ExtenderBuildState buildState : buildStates) {
+            assertEquals(jobDirectory, buildState.getJobDir());
+            assertEquals(uploadDirectory, buildState.getUploadDir());
+            assertEquals(new File(buildDirectory, buildState.getBuildPlatform()), buildState.getBuildDir());
+        }
+
+        // lipo merges the executables of both architectures
+        assertEquals(1, asyncBuilder.lipoCommands.size());
+        assertEquals(List.of("lipo", "-create", "-output", new File(buildDirectory, "universal/dmengine").getAbsolutePath(),
+                        new File(buildDirectory, "arm64-ios/dmengine").getAbsolutePath(),
+                        new File(buildDirectory, "x86_64-ios/dmengine").getAbsolutePath()),
+                asyncBuilder.lipoCommands.get(0));
+
+        // the result zip has the outputs of each architecture in its own folder
+        File zipFile = ZipUtils.zip(outputFiles, buildDirectory, new File(tmpDir, BuilderConstants.BUILD_RESULT_FILENAME).getAbsolutePath());
+        assertEquals(Set.of("arm64-ios/dmengine", "x86_64-ios/dmengine", "universal/dmengine"), listZipEntries(zipFile));
+    }
+}
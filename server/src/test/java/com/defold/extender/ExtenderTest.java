@@ -161,6 +161,17 @@ public class ExtenderTest {
         assertThrows(ExtenderException.class, () -> { ExtenderController.validateFilename("../../etc/passwd"); });
     }
 
+    @Test
+    public void testParseArchitectures() throws ExtenderException {
+        assertEquals(List.of(), ExtenderController.parseArchitectures("arm64-ios", null));
+        assertEquals(List.of("x86_64-ios"), ExtenderController.parseArchitectures("arm64-ios", "arm64-ios, x86_64-ios,x86_64-ios"));
+        assertEquals(List.of("arm64-osx"), ExtenderController.parseArchitectures("x86_64-osx", "arm64-osx"));
+
+        // Should throw error
+        assertThrows(ExtenderException.class, () -> { ExtenderController.parseArchitectures("arm64-ios", "arm64-osx"); });
+        assertThrows(ExtenderException.class, () -> { ExtenderController.parseArchitectures("arm64-android", "armv7-android"); });
+    }
+
     @Test
     public void testFilterFiles() {
 
@@ -237,6 +237,35 @@ public class ExtenderUtilTest {
         assertEquals(Arrays.asList("{{env.SOME_LIB_PATH}}/debug"), context.getOrDefault("libs", null));
     }
 
+    @Test
+    public void testMergeContextsKeepsInputs() throws ExtenderException {
+        Map<String, Object> a = new HashMap<>();
+        a.put("libs", Arrays.asList("engine", "profile"));
+        a.put("defines", Arrays.asList("A"));
+        a.put("flags_replace", Arrays.asList("-O2"));
+
+        Map<String, Object> b = new HashMap<>();
+        b.put("excludeLibs", Arrays.asList("profile"));
+        b.put("defines", Arrays.asList("B"));
+
+        Map<String, Object> context = ExtenderUtil.mergeContexts(a, b);
+
+        assertEquals(Arrays.asList("engine"), context.get("libs"));
+        assertEquals(Arrays.asList("A", "B"), context.get("defines"));
+        assertEquals(Arrays.asList("-O2"), context.get("flags"));
+        assertFalse(context.containsKey("flags_replace"));
+
+        // the inputs aren't modified
+        assertEquals(Arrays.asList("engine", "profile"), a.get("libs"));
+        assertEquals(Arrays.asList("A"), a.get("defines"));
+        assertTrue(a.containsKey("flags_replace"));
+        assertEquals(2, b.size());
+
+        // lists without include or exclude patterns are kept as they are
+        Map<String, Object> unchanged = ExtenderUtil.mergeContexts(context, new HashMap<>());
+        assertEquals(context, unchanged);
+    }
+
     @Test
     public void testPruneList() throws IOException, InterruptedException, ExtenderException {
         List<String> main = Arrays.asList("profile", "profile_null", "a");
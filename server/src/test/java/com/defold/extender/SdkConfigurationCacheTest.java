@@ -0,0 +1,103 @@
+package com.defold.extender;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class SdkConfigurationCacheTest {
+
+    private static File copySdk(Path tempDir) throws IOException {
+        File sdk = tempDir.resolve("defoldsdk").toFile();
+        FileUtils.copyDirectory(new File("test-data/sdk/a/defoldsdk/extender"), new File(sdk, "extender"));
+        return sdk;
+    }
+
+    @Test
+    public void testEntryIsShared(@TempDir Path tempDir) throws Exception {
+        File sdk = copySdk(tempDir);
+        SdkConfigurationCache cache = new SdkConfigurationCache(4);
+
+        SdkConfigurationCache.Entry entry = cache.get(tempDir.toFile(), sdk, "x86_64-osx");
+        assertSame(entry, cache.get(tempDir.toFile(), sdk, "x86_64-osx"));
+        assertSame(entry.getValidator(), cache.get(tempDir.toFile(), sdk, "x86_64-osx").getValidator());
+        assertNotSame(entry, cache.get(tempDir.toFile(), sdk, "arm64-ios"));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testJobsGetCopies(@TempDir Path tempDir) throws Exception {
+        File sdk = copySdk(tempDir);
+        SdkConfigurationCache cache = new SdkConfigurationCache(4);
+        SdkConfigurationCache.Entry entry = cache.get(tempDir.toFile(), sdk, "x86_64-osx");
+
+        PlatformConfig config1 = entry.getPlatformConfig();
+        config1.context.put("env.TEST", "value");
+        ((List<String>) config1.context.get("defines")).add("TEST_DEFINE");
+        config1.env.put("TEST", "value");
+
+        PlatformConfig config2 = entry.getPlatformConfig();
+        assertFalse(config2.context.containsKey("env.TEST"));
+        assertFalse(((List<String>) config2.context.get("defines")).contains("TEST_DEFINE"));
+        assertFalse(config2.env.containsKey("TEST"));
+
+        PlatformConfig variant1 = entry.getVariantConfig(tempDir.toFile(), "release");
+        assertTrue(((List<String>) variant1.context.get("defines")).contains("DM_RELEASE"));
+        ((List<String>) variant1.context.get("defines")).clear();
+        assertTrue(((List<String>) entry.getVariantConfig(tempDir.toFile(), "release").context.get("defines")).contains("DM_RELEASE"));
+
+        assertThrows(ExtenderException.class, () -> entry.getVariantConfig(tempDir.toFile(), "missing"));
+    }
+
+    @Test
+    public void testChangedBuildYmlIsParsedAgain(@TempDir Path tempDir) throws Exception {
+        File sdk = copySdk(tempDir);
+        SdkConfigurationCache cache = new SdkConfigurationCache(4);
+        SdkConfigurationCache.Entry entry = cache.get(tempDir.toFile(), sdk, "x86_64-osx");
+
+        Path buildYml = sdk.toPath().resolve("extender/build.yml");
+        Files.writeString(buildYml, Files.readString(buildYml) + "\n# changed\n");
+        Files.setLastModifiedTime(buildYml, FileTime.fromMillis(Files.getLastModifiedTime(buildYml).toMillis() + 1000));
+
+        assertNotSame(entry, cache.get(tempDir.toFile(), sdk, "x86_64-osx"));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testUnsupportedPlatform(@TempDir Path tempDir) throws Exception {
+        File sdk = copySdk(tempDir);
+        SdkConfigurationCache cache = new SdkConfigurationCache(4);
+        assertThrows(ExtenderException.class, () -> cache.get(tempDir.toFile(), sdk, "x86_64-unknown"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testCopyHasAllFields() throws Exception {
+        PlatformConfig config = new PlatformConfig();
+        for (Field field : PlatformConfig.class.getFields()) {
+            if (field.getType() == String.class) {
+                field.set(config, field.getName());
+            } else if (field.getType() == List.class) {
+                field.set(config, List.of(field.getName()));
+            }
+        }
+        PlatformConfig copy = config.copy();
+        for (Field field : PlatformConfig.class.getFields()) {
+            assertEquals(field.get(config), field.get(copy), field.getName());
+        }
+    }
+}
@@ -55,4 +55,17 @@ public class ZipUtilsTest {
         assertEquals(zipFile.length(), filesInTarget[0].length());
         assertTrue(filesInTarget[0].length() > 0);
     }
+
+    @Test
+    public void unzipFromFile() throws IOException {
+        Path sourceFile = Files.createTempFile("zipTest", "tmp");
+        Files.writeString(sourceFile, "content");
+        Path destinationFile = Files.createTempFile("archive", "zip");
+        Path targetDirectory = Files.createTempDirectory("target");
+
+        ZipUtils.zip(new FileOutputStream(destinationFile.toFile()), null, List.of(sourceFile.toFile()));
+        ZipUtils.unzip(destinationFile.toFile(), targetDirectory);
+
+        assertEquals("content", Files.readString(targetDirectory.resolve(sourceFile.getFileName())));
+    }
 }
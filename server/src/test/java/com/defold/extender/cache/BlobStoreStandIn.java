@@ -0,0 +1,191 @@
+package com.defold.extender.cache;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-process blob store for tests. Supports GET (with ranges), HEAD and PUT, and the S3 multipart upload
+ * and copy requests used by HttpDataCache.
+ */
+public class BlobStoreStandIn implements AutoCloseable {
+
+    private static final Pattern RANGE_PATTERN = Pattern.compile("bytes=(\\d+)-(\\d+)");
+
+    private final HttpServer server;
+    private final Map<String, byte[]> blobs = new ConcurrentHashMap<>();
+    private final Map<String, Map<Integer, byte[]>> uploads = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> requestCounts = new ConcurrentHashMap<>();
+    private final List<String> authorizations = new ArrayList<>();
+    private final AtomicInteger copyCount = new AtomicInteger();
+    private volatile boolean supportsRanges = true;
+
+    public BlobStoreStandIn() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    public String getUrl() {
+        return String.format("http://127.0.0.1:%d/bucket", server.getAddress().getPort());
+    }
+
+    public void setSupportsRanges(boolean supportsRanges) {
+        this.supportsRanges = supportsRanges;
+    }
+
+    public byte[] getBlob(String path) {
+        return blobs.get(path);
+    }
+
+    public void putBlob(String path, byte[] content) {
+        blobs.put(path, content);
+    }
+
+    public void removeBlob(String path) {
+        blobs.remove(path);
+    }
+
+    public int getRequestCount(String method) {
+        AtomicInteger count = requestCounts.get(method);
+        return count != null ? count.get() : 0;
+    }
+
+    // successful copies of blobs onto themselves
+    public int getCopyCount() {
+        return copyCount.get();
+    }
+
+    public synchronized List<String> getAuthorizations() {
+        return new ArrayList<>(authorizations);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String method = exchange.getRequestMethod();
+            String path = exchange.getRequestURI().getPath();
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            requestCounts.computeIfAbsent(method, m -> new AtomicInteger()).incrementAndGet();
+            String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+            if (authorization != null) {
+                synchronized (this) {
+                    authorizations.add(authorization);
+                }
+            }
+
+            switch (method) {
+                case "GET" -> handleGet(exchange, path);
+                case "HEAD" -> {
+                    if (blobs.containsKey(path)) {
+                        exchange.getResponseHeaders().set("Last-Modified", "Thu, 01 Jan 2015 00:00:00 GMT");
+                        exchange.sendResponseHeaders(200, -1);
+                    } else {
+                        exchange.sendResponseHeaders(404, -1);
+                    }
+                }
+                case "PUT" -> {
+                    byte[] body = exchange.getRequestBody().readAllBytes();
+                    String copySource = exchange.getRequestHeaders().getFirst("x-amz-copy-source");
+                    if (copySource != null) {
+                        // the copy source is "bucket/key"
+                        if (!path.equals("/" + copySource)) {
+                            exchange.sendResponseHeaders(400, -1);
+                        } else if (blobs.containsKey(path)) {
+                            copyCount.incrementAndGet();
+                            exchange.sendResponseHeaders(200, -1);
+                        } else {
+                            exchange.sendResponseHeaders(404, -1);
+                        }
+                    } else if (query.containsKey("uploadId")) {
+                        uploads.get(query.get("uploadId")).put(Integer.parseInt(query.get("partNumber")), body);
+                        exchange.getResponseHeaders().set("ETag", "\"" + UUID.randomUUID() + "\"");
+                        exchange.sendResponseHeaders(200, -1);
+                    } else {
+                        blobs.put(path, body);
+                        exchange.sendResponseHeaders(200, -1);
+                    }
+                }
+                case "POST" -> {
+                    exchange.getRequestBody().readAllBytes();
+                    if (query.containsKey("uploads")) {
+                        String uploadId = UUID.randomUUID().toString();
+                        uploads.put(uploadId, new TreeMap<>());
+                        sendBody(exchange, 200, ("<InitiateMultipartUploadResult><UploadId>" + uploadId + "</UploadId></InitiateMultipartUploadResult>").getBytes(StandardCharsets.UTF_8));
+                    } else {
+                        ByteArrayOutputStream content = new ByteArrayOutputStream();
+                        for (byte[] part : uploads.remove(query.get("uploadId")).values()) {
+                            content.write(part);
+                        }
+                        blobs.put(path, content.toByteArray());
+                        exchange.sendResponseHeaders(200, -1);
+                    }
+                }
+                case "DELETE" -> {
+                    uploads.remove(query.get("uploadId"));
+                    exchange.sendResponseHeaders(204, -1);
+                }
+                default -> exchange.sendResponseHeaders(405, -1);
+            }
+        }
+    }
+
+    private void handleGet(HttpExchange exchange, String path) throws IOException {
+        byte[] blob = blobs.get(path);
+        if (blob == null) {
+            exchange.sendResponseHeaders(404, -1);
+            return;
+        }
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        Matcher matcher = range != null ? RANGE_PATTERN.matcher(range) : null;
+        if (!supportsRanges || matcher == null || !matcher.matches()) {
+            sendBody(exchange, 200, blob);
+            return;
+        }
+        int start = Integer.parseInt(matcher.group(1));
+        int end = Math.min(Integer.parseInt(matcher.group(2)), blob.length - 1);
+        exchange.getResponseHeaders().set("Content-Range", String.format("bytes %d-%d/%d", start, end, blob.length));
+        byte[] body = new byte[end - start + 1];
+        System.arraycopy(blob, start, body, 0, body.length);
+        sendBody(exchange, 206, body);
+    }
+
+    private static void sendBody(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(body);
+        }
+    }
+
+    private static Map<String, String> parseQuery(String query) {
+        Map<String, String> result = new HashMap<>();
+        if (query != null) {
+            for (String parameter : query.split("&")) {
+                String[] nameValue = parameter.split("=", 2);
+                result.put(nameValue[0], nameValue.length > 1 ? nameValue[1] : "");
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
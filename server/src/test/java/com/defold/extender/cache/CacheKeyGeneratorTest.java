@@ -5,8 +5,11 @@ import com.defold.extender.TestUtils;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URISyntaxException;
+import java.security.DigestInputStream;
 
 import org.junit.jupiter.api.Test;
 
@@ -27,4 +30,14 @@ public class CacheKeyGeneratorTest {
     public void generateKeyForAnotherFile() throws IOException, URISyntaxException {
         assertEquals(TestUtils.CACHE_ENTRIES[1].getKey(), generate("upload/" + TestUtils.CACHE_ENTRIES[1].getPath()));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void generateKeyForStream() throws IOException, URISyntaxException {
+        CacheKeyGenerator cacheKeyGenerator = new CacheKeyGenerator();
+        File file = new File(ClassLoader.getSystemResource("upload/" + TestUtils.CACHE_ENTRIES[0].getPath()).toURI());
+        try (DigestInputStream stream = new DigestInputStream(new FileInputStream(file), cacheKeyGenerator.getDigest())) {
+            stream.transferTo(OutputStream.nullOutputStream());
+            assertEquals(TestUtils.CACHE_ENTRIES[0].getKey(), cacheKeyGenerator.generate(stream.getMessageDigest()));
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.defold.extender.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class CachePresenceIndexTest {
+
+    @Test
+    public void shouldForgetLeastRecentlyUsedKeys() {
+        CachePresenceIndex index = new CachePresenceIndex(2, 60000);
+        index.add("a");
+        index.add("b");
+        assertTrue(index.contains("a"));
+        index.add("c");
+
+        assertEquals(2, index.size());
+        assertTrue(index.contains("a"));
+        assertFalse(index.contains("b"));
+        assertTrue(index.contains("c"));
+    }
+
+    @Test
+    public void shouldExpireKeys() throws InterruptedException {
+        CachePresenceIndex index = new CachePresenceIndex(10, 10);
+        index.add("a");
+        Thread.sleep(50);
+
+        assertFalse(index.contains("a"));
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    public void shouldRemoveKeys() {
+        CachePresenceIndex index = new CachePresenceIndex(10, 60000);
+        index.add("a");
+        index.remove("a");
+        index.remove("b");
+
+        assertFalse(index.contains("a"));
+        assertEquals(0, index.size());
+    }
+}
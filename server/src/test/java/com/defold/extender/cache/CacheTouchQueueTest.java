@@ -0,0 +1,77 @@
+package com.defold.extender.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class CacheTouchQueueTest {
+
+    @Test
+    public void shouldSkipRepeatedTouchesWithinWindow() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        List<String> touched = new CopyOnWriteArrayList<>();
+        CacheTouchQueue queue = new CacheTouchQueue(2, 10, 60000, 0, registry);
+        queue.start(touched::add);
+
+        assertTrue(queue.enqueue("aa01"));
+        assertTrue(queue.enqueue("bb02"));
+        assertFalse(queue.enqueue("aa01"));
+        queue.close();
+
+        assertEquals(2, touched.size());
+        assertTrue(touched.containsAll(List.of("aa01", "bb02")));
+        assertEquals(2.0, registry.counter("extender.cache.touch", "result", "flushed").count());
+        assertEquals(1.0, registry.counter("extender.cache.touch", "result", "skipped").count());
+        assertEquals(2, registry.timer("extender.cache.touch.lag").count());
+    }
+
+    @Test
+    public void shouldTouchAgainAfterWindow() throws Exception {
+        List<String> touched = new CopyOnWriteArrayList<>();
+        CacheTouchQueue queue = new CacheTouchQueue(1, 10, 50, 0, null);
+        queue.start(touched::add);
+
+        assertTrue(queue.enqueue("aa01"));
+        Thread.sleep(100);
+        assertTrue(queue.enqueue("aa01"));
+        queue.close();
+
+        assertEquals(List.of("aa01", "aa01"), touched);
+    }
+
+    @Test
+    public void shouldDropTouchesWhenQueueIsFull() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        // workers are not started, so nothing leaves the queue
+        CacheTouchQueue queue = new CacheTouchQueue(1, 2, 60000, 0, registry);
+
+        assertTrue(queue.enqueue("aa01"));
+        assertTrue(queue.enqueue("bb02"));
+        assertFalse(queue.enqueue("cc03"));
+        assertEquals(2, queue.getQueueSize());
+        assertEquals(1.0, registry.counter("extender.cache.touch", "result", "dropped").count());
+    }
+
+    @Test
+    public void shouldLimitTouchRate() throws Exception {
+        List<String> touched = new CopyOnWriteArrayList<>();
+        // one touch per 20 ms
+        CacheTouchQueue queue = new CacheTouchQueue(4, 10, 60000, 50, null);
+        queue.start(touched::add);
+
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 6; ++i) {
+            queue.enqueue("key" + i);
+        }
+        queue.close();
+
+        assertEquals(6, touched.size());
+        assertTrue(System.currentTimeMillis() - start >= 100);
+    }
+}
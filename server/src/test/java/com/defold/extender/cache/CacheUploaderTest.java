@@ -0,0 +1,99 @@
+package com.defold.extender.cache;
+
+import com.defold.extender.TestUtils;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CacheUploaderTest {
+
+    @Test
+    public void shouldUploadFilesInBackground() throws Exception {
+        Path baseDirectory = Files.createTempDirectory("diskCacheTest");
+        File stagingDirectory = Files.createTempDirectory("cacheStaging").toFile();
+        DataCache cache = new LocalDiskDataCache(baseDirectory);
+
+        CacheUploader uploader = new CacheUploader(cache, new CacheKeyGenerator(), stagingDirectory, 2, 10);
+        for (CacheEntry entry : TestUtils.CACHE_ENTRIES) {
+            assertTrue(uploader.submit(getSourceFile(entry.getPath())));
+            // the same file from another job is uploaded only once
+            assertTrue(uploader.submit(getSourceFile(entry.getPath())));
+        }
+        uploader.close();
+
+        for (CacheEntry entry : TestUtils.CACHE_ENTRIES) {
+            try (InputStream in = cache.get(entry.getKey())) {
+                assertTrue(in != null);
+            }
+        }
+        // staged files are removed after upload
+        assertEquals(0, stagingDirectory.listFiles().length);
+    }
+
+    @Test
+    public void shouldDropFilesWhenQueueIsFull() throws Exception {
+        File stagingDirectory = Files.createTempDirectory("cacheStaging").toFile();
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicInteger putCount = new AtomicInteger();
+        DataCache blockingCache = new DummyDataCache() {
+            @Override
+            public void put(final String key, final File file) {
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                putCount.incrementAndGet();
+            }
+        };
+
+        File sourceDirectory = Files.createTempDirectory("cacheSource").toFile();
+        CacheUploader uploader = new CacheUploader(blockingCache, new CacheKeyGenerator(), stagingDirectory, 1, 1);
+        int accepted = 0;
+        for (int i = 0; i < 5; i++) {
+            File file = new File(sourceDirectory, "file" + i);
+            FileUtils.writeStringToFile(file, "content" + i, "UTF-8");
+            if (uploader.submit(file)) {
+                accepted++;
+            }
+        }
+        // one upload is running and one is queued
+        assertTrue(accepted <= 2);
+        assertFalse(uploader.submit(new File(sourceDirectory, "file0")));
+
+        latch.countDown();
+        uploader.close();
+        assertEquals(accepted, putCount.get());
+    }
+
+    @Test
+    public void shouldStageFilesInGivenDirectory() throws Exception {
+        Path baseDirectory = Files.createTempDirectory("diskCacheTest");
+        File jobRoot = Files.createTempDirectory("jobRoot").toFile();
+        File stagingDirectory = new File(jobRoot, ".cache-upload");
+        DataCache cache = new LocalDiskDataCache(baseDirectory);
+
+        CacheUploader uploader = new CacheUploader(cache, new CacheKeyGenerator(), null, 1, 10);
+        CacheEntry entry = TestUtils.CACHE_ENTRIES[0];
+        assertTrue(uploader.submit(getSourceFile(entry.getPath()), stagingDirectory));
+        uploader.close();
+
+        assertTrue(cache.exists(entry.getKey()));
+        assertEquals(0, stagingDirectory.listFiles().length);
+    }
+
+    private File getSourceFile(final String path) throws URISyntaxException {
+        return new File(ClassLoader.getSystemResource("upload/"+path).toURI());
+    }
+}
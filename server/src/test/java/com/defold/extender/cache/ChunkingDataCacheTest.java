@@ -0,0 +1,213 @@
+package com.defold.extender.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+public class ChunkingDataCacheTest {
+
+    private Path baseDirectory;
+    private SimpleMeterRegistry registry;
+    private ChunkingDataCache cache;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        baseDirectory = Files.createTempDirectory("chunkingCacheTest");
+        registry = new SimpleMeterRegistry();
+        cache = new ChunkingDataCache(new LocalDiskDataCache(baseDirectory), 64 * 1024, 4096, registry);
+    }
+
+    private File createFile(byte[] content) throws Exception {
+        Path file = Files.createTempDirectory("source").resolve("libvendor.a");
+        Files.write(file, content);
+        return file.toFile();
+    }
+
+    private byte[] read(InputStream inputStream) throws Exception {
+        try (inputStream) {
+            return IOUtils.toByteArray(inputStream);
+        }
+    }
+
+    private static byte[] randomBytes(int size, long seed) {
+        byte[] bytes = new byte[size];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+
+    private long countFilesInCache() throws Exception {
+        try (var files = Files.walk(baseDirectory)) {
+            return files.filter(Files::isRegularFile).count();
+        }
+    }
+
+    @Test
+    public void shouldSplitAtSamePositionsAfterInsertion() throws Exception {
+        ContentDefinedChunker chunker = new ContentDefinedChunker(4096, new CacheKeyGenerator());
+        byte[] original = randomBytes(256 * 1024, 1);
+        byte[] modified = new byte[original.length + 100];
+        System.arraycopy(original, 0, modified, 0, 1000);
+        System.arraycopy(randomBytes(100, 2), 0, modified, 1000, 100);
+        System.arraycopy(original, 1000, modified, 1100, original.length - 1000);
+
+        List<ContentDefinedChunker.Chunk> originalChunks = chunker.split(new ByteArrayInputStream(original));
+        List<ContentDefinedChunker.Chunk> modifiedChunks = chunker.split(new ByteArrayInputStream(modified));
+
+        Set<String> originalKeys = new HashSet<>();
+        long size = 0;
+        for (ContentDefinedChunker.Chunk chunk : originalChunks) {
+            assertTrue(chunk.length() <= chunker.getMaxSize());
+            assertEquals(size, chunk.offset());
+            size += chunk.length();
+            originalKeys.add(chunk.key());
+        }
+        assertEquals(original.length, size);
+        long sharedCount = modifiedChunks.stream().filter(chunk -> originalKeys.contains(chunk.key())).count();
+        // only the chunks around the insertion differ
+        assertTrue(sharedCount >= originalChunks.size() - 2);
+    }
+
+    @Test
+    public void shouldDeduplicateChunksOfSimilarFiles() throws Exception {
+        byte[] original = randomBytes(256 * 1024, 1);
+        byte[] modified = original.clone();
+        System.arraycopy(randomBytes(100, 2), 0, modified, 128 * 1024, 100);
+
+        cache.put("aa01", createFile(original));
+        long filesAfterFirstPut = countFilesInCache();
+        cache.put("bb02", createFile(modified));
+
+        assertArrayEquals(original, read(cache.get("aa01")));
+        assertArrayEquals(modified, read(cache.get("bb02")));
+        // a manifest, its copy and a few changed chunks
+        assertTrue(countFilesInCache() - filesAfterFirstPut <= 5);
+        assertTrue(registry.counter("extender.cache.chunks", "result", "deduplicated").count() > 200 * 1024);
+    }
+
+    @Test
+    public void shouldPassSmallFilesThrough() throws Exception {
+        byte[] content = randomBytes(1024, 3);
+        cache.put("cc03", createFile(content));
+
+        assertEquals(1, countFilesInCache());
+        assertArrayEquals(content, read(cache.get("cc03")));
+    }
+
+    private Set<String> listKeysInCache() throws Exception {
+        try (var files = Files.walk(baseDirectory)) {
+            return files.filter(Files::isRegularFile).map(file -> file.getFileName().toString()).collect(Collectors.toSet());
+        }
+    }
+
+    @Test
+    public void shouldReportEntriesWithMissingChunksAsMissing() throws Exception {
+        byte[] content = randomBytes(256 * 1024, 4);
+        cache.put("aa01", createFile(content));
+        assertTrue(cache.exists("aa01"));
+
+        // e.g. removed by the lifecycle rules of the storage
+        String chunkKey = listKeysInCache().stream().filter(key -> !key.startsWith("aa01")).findFirst().get();
+        Files.delete(baseDirectory.resolve(chunkKey.substring(0, 2)).resolve(chunkKey));
+
+        // a node which didn't write the entry reads the manifest
+        ChunkingDataCache otherCache = new ChunkingDataCache(new LocalDiskDataCache(baseDirectory), 64 * 1024, 4096, null);
+        assertFalse(otherCache.exists("aa01"));
+        assertEquals(Set.of(), otherCache.existsAll(List.of("aa01", "bb02")));
+        assertNull(otherCache.get("aa01"));
+        assertFalse(cache.exists("aa01"));
+    }
+
+    @Test
+    public void shouldTouchChunksOfManifests() throws Exception {
+        cache.put("aa01", createFile(randomBytes(256 * 1024, 5)));
+        Set<String> chunkKeys = new HashSet<>(listKeysInCache());
+        chunkKeys.remove("aa01");
+        chunkKeys.remove(ChunkingDataCache.getManifestKey("aa01"));
+
+        LocalDiskDataCache storeCache = new LocalDiskDataCache(baseDirectory);
+        Set<String> touchedKeys = ConcurrentHashMap.newKeySet();
+        DataCache recordingCache = new DataCache() {
+            @Override
+            public InputStream get(String key) {
+                return storeCache.get(key);
+            }
+
+            @Override
+            public boolean exists(String key) {
+                return storeCache.exists(key);
+            }
+
+            @Override
+            public void touch(String key) {
+                touchedKeys.add(key);
+            }
+
+            @Override
+            public void put(String key, File file) throws IOException {
+                storeCache.put(key, file);
+            }
+        };
+        // a node which didn't write the entry reads the manifest in the background
+        ChunkingDataCache otherCache = new ChunkingDataCache(recordingCache, 64 * 1024, 4096, null);
+        otherCache.touch("aa01");
+        otherCache.close();
+
+        assertTrue(touchedKeys.contains("aa01"));
+        assertTrue(touchedKeys.contains(ChunkingDataCache.getManifestKey("aa01")));
+        assertTrue(touchedKeys.containsAll(chunkKeys));
+    }
+
+    @Test
+    public void shouldCheckEntriesWithoutReadingThem() throws Exception {
+        cache.put("aa01", createFile(randomBytes(256 * 1024, 6)));
+        cache.put("bb02", createFile(randomBytes(1024, 7)));
+
+        LocalDiskDataCache storeCache = new LocalDiskDataCache(baseDirectory);
+        Set<String> readKeys = ConcurrentHashMap.newKeySet();
+        DataCache recordingCache = new DataCache() {
+            @Override
+            public InputStream get(String key) {
+                readKeys.add(key);
+                return storeCache.get(key);
+            }
+
+            @Override
+            public boolean exists(String key) {
+                return storeCache.exists(key);
+            }
+
+            @Override
+            public void touch(String key) {
+            }
+
+            @Override
+            public void put(String key, File file) throws IOException {
+                storeCache.put(key, file);
+            }
+        };
+        // a node which didn't write the entries reads only the manifest copy of the chunked entry
+        ChunkingDataCache otherCache = new ChunkingDataCache(recordingCache, 64 * 1024, 4096, null);
+        assertEquals(Set.of("aa01", "bb02"), otherCache.existsAll(List.of("aa01", "bb02", "cc03")));
+        assertEquals(Set.of(ChunkingDataCache.getManifestKey("aa01")), readKeys);
+    }
+}
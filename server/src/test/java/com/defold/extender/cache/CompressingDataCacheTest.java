@@ -0,0 +1,111 @@
+package com.defold.extender.cache;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class CompressingDataCacheTest {
+
+    private Path baseDirectory;
+    private LocalDiskDataCache storeCache;
+    private CompressingDataCache cache;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        baseDirectory = Files.createTempDirectory("compressingCacheTest");
+        storeCache = new LocalDiskDataCache(baseDirectory);
+        cache = new CompressingDataCache(storeCache, true, List.of("zip", "PNG"));
+    }
+
+    private File createFile(String name, byte[] content) throws Exception {
+        Path file = Files.createTempDirectory("source").resolve(name);
+        Files.write(file, content);
+        return file.toFile();
+    }
+
+    private byte[] read(InputStream inputStream) throws Exception {
+        try (inputStream) {
+            return IOUtils.toByteArray(inputStream);
+        }
+    }
+
+    private byte readCodec(String key) throws Exception {
+        byte[] header = read(storeCache.get(key));
+        return header[CompressingDataCache.MAGIC.length];
+    }
+
+    @Test
+    public void shouldCompressText() throws Exception {
+        byte[] content = "#include <dmsdk/sdk.h>\n".repeat(1000).getBytes(StandardCharsets.UTF_8);
+        File file = createFile("extension.h", content);
+        cache.put("aa01", file);
+
+        assertEquals(CompressingDataCache.CODEC_LZ4, readCodec("aa01"));
+        assertTrue(storeCache.getFile("aa01").length() < content.length / 3);
+        assertArrayEquals(content, read(cache.get("aa01")));
+    }
+
+    @Test
+    public void shouldStoreCompressedFormatsAsIs() throws Exception {
+        byte[] content = "already compressed".repeat(100).getBytes(StandardCharsets.UTF_8);
+        cache.put("bb02", createFile("image.png", content));
+
+        assertEquals(CompressingDataCache.CODEC_NONE, readCodec("bb02"));
+        assertArrayEquals(content, read(cache.get("bb02")));
+    }
+
+    @Test
+    public void shouldStoreIncompressibleData() throws Exception {
+        byte[] content = new byte[64 * 1024];
+        new Random(1).nextBytes(content);
+        cache.put("cc03", createFile("libfoo.a", content));
+
+        assertEquals(CompressingDataCache.CODEC_NONE, readCodec("cc03"));
+        assertArrayEquals(content, read(cache.get("cc03")));
+    }
+
+    @Test
+    public void shouldReadEntriesWithoutHeader() throws Exception {
+        byte[] content = "written before compression was enabled".getBytes(StandardCharsets.UTF_8);
+        storeCache.put("dd04", createFile("old.h", content));
+
+        assertArrayEquals(content, read(cache.get("dd04")));
+
+        byte[] shortContent = { 1, 2 };
+        storeCache.put("ee05", createFile("short.h", shortContent));
+        assertArrayEquals(shortContent, read(cache.get("ee05")));
+    }
+
+    @Test
+    public void shouldDecodeEntriesWhenCompressionIsDisabled() throws Exception {
+        byte[] content = "#include <dmsdk/sdk.h>\n".repeat(1000).getBytes(StandardCharsets.UTF_8);
+        cache.put("aa01", createFile("extension.h", content));
+
+        CompressingDataCache uncompressedCache = new CompressingDataCache(storeCache, false, List.of());
+        assertArrayEquals(content, read(uncompressedCache.get("aa01")));
+
+        // new entries are written as they are
+        uncompressedCache.put("bb02", createFile("extension.h", content));
+        assertArrayEquals(content, read(storeCache.get("bb02")));
+        assertArrayEquals(content, read(cache.get("bb02")));
+
+        // unless they look like an encoded entry
+        byte[] framed = Arrays.copyOf(CompressingDataCache.MAGIC, CompressingDataCache.MAGIC.length + 1);
+        uncompressedCache.put("cc03", createFile("framed.bin", framed));
+        assertEquals(CompressingDataCache.CODEC_NONE, readCodec("cc03"));
+        assertArrayEquals(framed, read(uncompressedCache.get("cc03")));
+    }
+}
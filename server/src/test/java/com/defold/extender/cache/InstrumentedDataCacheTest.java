@@ -0,0 +1,54 @@
+package com.defold.extender.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+public class InstrumentedDataCacheTest {
+
+    private SimpleMeterRegistry registry;
+    private DataCache cache;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        registry = new SimpleMeterRegistry();
+        cache = new InstrumentedDataCache(new LocalDiskDataCache(Files.createTempDirectory("instrumentedCacheTest")), "local", registry);
+    }
+
+    @Test
+    public void shouldRecordOperations() throws Exception {
+        Path file = Files.createTempFile("entry", ".bin");
+        Files.writeString(file, "content");
+        cache.put("aa01", file.toFile());
+        try (InputStream inputStream = cache.get("aa01")) {
+            assertEquals("content", new String(inputStream.readAllBytes()));
+        }
+        assertNull(cache.get("bb02"));
+        cache.existsAll(List.of("aa01", "bb02"));
+
+        assertEquals(1, registry.timer("extender.cache.operation", "operation", "put", "backend", "local").count());
+        assertEquals(2, registry.timer("extender.cache.operation", "operation", "get", "backend", "local").count());
+        assertEquals(1, registry.timer("extender.cache.operation", "operation", "existsAll", "backend", "local").count());
+        assertEquals(1.0, registry.counter("extender.cache.requests", "result", "hit", "backend", "local").count());
+        assertEquals(1.0, registry.counter("extender.cache.requests", "result", "miss", "backend", "local").count());
+    }
+
+    @Test
+    public void shouldCountErrors() {
+        assertThrows(IOException.class, () -> cache.put("aa01", new File("missing-file")));
+
+        assertEquals(1.0, registry.counter("extender.cache.errors", "operation", "put", "backend", "local").count());
+        assertEquals(1, registry.timer("extender.cache.operation", "operation", "put", "backend", "local").count());
+    }
+}
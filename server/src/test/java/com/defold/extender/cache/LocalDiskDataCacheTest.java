@@ -3,6 +3,7 @@ package com.defold.extender.cache;
 import com.defold.extender.TestUtils;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -18,6 +19,8 @@ import java.io.InputStream;
 import java.net.URISyntaxException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
 
 public class LocalDiskDataCacheTest {
 
@@ -95,6 +98,52 @@ public class LocalDiskDataCacheTest {
         }
     }
 
+    @Test
+    public void shouldCheckExistenceOfManyKeys() throws IOException, URISyntaxException {
+        CacheEntry entry = TestUtils.CACHE_ENTRIES[0];
+        cache.put(entry.getKey(), getSourceFile(entry.getPath()));
+
+        Set<String> existing = cache.existsAll(List.of(entry.getKey(), TestUtils.CACHE_ENTRIES[1].getKey()));
+        assertEquals(Set.of(entry.getKey()), existing);
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedEntries() throws Exception {
+        Path directory = Files.createTempDirectory("boundedCacheTest");
+        File sourceDirectory = Files.createTempDirectory("boundedCacheSource").toFile();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        // large eviction interval, the test runs the eviction itself
+        LocalDiskDataCache boundedCache = new LocalDiskDataCache(directory.toString(), 250, 3600000, registry);
+
+        for (String key : List.of("aa01", "bb02", "cc03")) {
+            File source = new File(sourceDirectory, key);
+            FileUtils.writeByteArrayToFile(source, new byte[100]);
+            boundedCache.put(key, source);
+        }
+        assertEquals(300, boundedCache.getSize());
+
+        // "aa01" is the least recently used one, but it is being read
+        InputStream reader = boundedCache.get("aa01");
+        boundedCache.touch("bb02");
+        boundedCache.touch("cc03");
+        boundedCache.evict();
+        reader.close();
+
+        assertTrue(boundedCache.exists("aa01"));
+        assertFalse(boundedCache.exists("bb02"));
+        assertTrue(boundedCache.exists("cc03"));
+        assertEquals(200, boundedCache.getSize());
+        assertEquals(1.0, registry.counter("extender.cache.local.evictions").count());
+        assertNull(boundedCache.get("bb02"));
+        assertEquals(1.0, registry.counter("extender.cache.local.requests", "result", "miss").count());
+
+        // the index is restored by a new instance
+        boundedCache.close();
+        LocalDiskDataCache restoredCache = new LocalDiskDataCache(directory.toString(), 250, 3600000, null);
+        assertEquals(200, restoredCache.getSize());
+        restoredCache.close();
+    }
+
     private File getSourceFile(final String path) throws URISyntaxException {
         return new File(ClassLoader.getSystemResource("upload/"+path).toURI());
     }
@@ -0,0 +1,142 @@
+package com.defold.extender.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Stream;
+
+public class TieredDataCacheTest {
+
+    private Path localDirectory;
+    private LocalDiskDataCache localCache;
+    // stands in for the GCP cache
+    private LocalDiskDataCache remoteCache;
+    private TieredDataCache cache;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        localDirectory = Files.createTempDirectory("tieredLocal");
+        localCache = new LocalDiskDataCache(localDirectory.toString(), 1024 * 1024, 60000, new SimpleMeterRegistry());
+        remoteCache = new LocalDiskDataCache(Files.createTempDirectory("tieredRemote"));
+        cache = new TieredDataCache(localCache, remoteCache, 2, 10, null);
+    }
+
+    private File createFile(String content) throws Exception {
+        Path file = Files.createTempFile("entry", ".bin");
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+        return file.toFile();
+    }
+
+    private String read(InputStream inputStream) throws Exception {
+        try (inputStream) {
+            return IOUtils.toString(inputStream, StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    public void shouldWriteBehindToRemoteCache() throws Exception {
+        cache.put("aa01", createFile("first"));
+        assertTrue(localCache.exists("aa01"));
+
+        cache.close();
+        assertEquals("first", read(remoteCache.get("aa01")));
+    }
+
+    @Test
+    public void shouldWriteBehindWithOriginalFileName() throws Exception {
+        List<String> fileNames = new CopyOnWriteArrayList<>();
+        DataCache recordingCache = new DummyDataCache() {
+            @Override
+            public void put(final String key, final File file) {
+                fileNames.add(file.getName());
+            }
+        };
+        TieredDataCache recordedCache = new TieredDataCache(localCache, recordingCache, 1, 10, null);
+        Path file = Files.createTempFile("entry", ".zip");
+        recordedCache.put("aa01", file.toFile());
+
+        recordedCache.close();
+        assertEquals(List.of(file.getFileName().toString()), fileNames);
+        // staged files are deleted after the upload
+        try (Stream<Path> stagedFiles = Files.list(localDirectory.resolve(LocalDiskDataCache.STAGING_DIRECTORY))) {
+            assertEquals(0, stagedFiles.count());
+        }
+    }
+
+    @Test
+    public void shouldFetchMissingEntriesFromRemoteCache() throws Exception {
+        remoteCache.put("bb02", createFile("second"));
+        assertFalse(localCache.exists("bb02"));
+
+        assertEquals("second", read(cache.get("bb02")));
+        assertTrue(localCache.exists("bb02"));
+        assertEquals("second", read(localCache.get("bb02")));
+
+        assertNull(cache.get("cc03"));
+    }
+
+    @Test
+    public void shouldCheckBothTiers() throws Exception {
+        localCache.put("aa01", createFile("first"));
+        remoteCache.put("bb02", createFile("second"));
+
+        assertTrue(cache.exists("aa01"));
+        assertTrue(cache.exists("bb02"));
+        assertFalse(cache.exists("cc03"));
+        assertEquals(Set.of("aa01", "bb02"), cache.existsAll(List.of("aa01", "bb02", "cc03")));
+    }
+
+    @Test
+    public void shouldCloseThroughDecorators() throws Exception {
+        DataCache decorated = new CompressingDataCache(new InstrumentedDataCache(cache, "tiered", new SimpleMeterRegistry()), true, List.of());
+        decorated.put("aa01", createFile("first"));
+
+        decorated.close();
+        // the pending write is finished and the local index is stored
+        assertTrue(remoteCache.exists("aa01"));
+        assertTrue(localDirectory.resolve(LocalDiskDataCache.INDEX_FILENAME).toFile().exists());
+    }
+
+    @Test
+    public void shouldCountDroppedWrites() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        DataCache blockingCache = new DummyDataCache() {
+            @Override
+            public void put(final String key, final File file) {
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        TieredDataCache blockedCache = new TieredDataCache(localCache, blockingCache, 1, 1, meterRegistry);
+        for (int i = 0; i < 4; i++) {
+            blockedCache.put(String.format("aa%02d", i), createFile("entry" + i));
+        }
+        // one write is running and one is queued
+        assertTrue(meterRegistry.counter("extender.cache.tiered.write.dropped").count() >= 2);
+        // dropped entries are kept in the local cache
+        assertTrue(localCache.exists("aa03"));
+
+        latch.countDown();
+        blockedCache.close();
+    }
+}
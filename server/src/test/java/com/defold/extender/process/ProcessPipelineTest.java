@@ -0,0 +1,76 @@
+package com.defold.extender.process;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+
+import com.defold.extender.ExtenderException;
+
+public class ProcessPipelineTest {
+
+    @Test
+    public void testDependencyOrder() throws Exception {
+        List<String> order = new CopyOnWriteArrayList<>();
+        try (ProcessPipeline pipeline = new ProcessPipeline(new ProcessExecutor(), 4, null)) {
+            CompletableFuture<Void> module = pipeline.addStep("module", () -> {
+                Thread.sleep(50);
+                order.add("module");
+            }, List.of());
+            CompletableFuture<Void> independent = pipeline.addStep("independent", () -> order.add("independent"), List.of());
+            pipeline.addStep("compile", () -> order.add("compile"), List.of(module, independent));
+            pipeline.await();
+        }
+        assertEquals(3, order.size());
+        assertEquals("independent", order.get(0));
+        assertEquals("compile", order.get(2));
+    }
+
+    @Test
+    public void testFailurePropagation() {
+        AtomicBoolean dependantRun = new AtomicBoolean(false);
+        try (ProcessPipeline pipeline = new ProcessPipeline(new ProcessExecutor(), 2, null)) {
+            CompletableFuture<Void> failing = pipeline.addStep("failing", () -> { throw new IOException("failed step"); }, List.of());
+            pipeline.addStep("dependant", () -> dependantRun.set(true), List.of(failing));
+            IOException exc = assertThrows(IOException.class, pipeline::await);
+            assertEquals("failed step", exc.getMessage());
+        }
+        assertFalse(dependantRun.get());
+    }
+
+    @Test
+    public void testStepListener() throws IOException, InterruptedException, ExtenderException {
+        List<String> stages = new CopyOnWriteArrayList<>();
+        try (ProcessPipeline pipeline = new ProcessPipeline(new ProcessExecutor(), 2, (stage, duration) -> stages.add(stage))) {
+            pipeline.addStep("a", () -> {}, List.of());
+            pipeline.addStep("b", () -> {}, List.of());
+            pipeline.await();
+        }
+        assertEquals(2, stages.size());
+        assertTrue(stages.containsAll(List.of("a", "b")));
+    }
+
+    @Test
+    public void testJoinedDependencies() throws Exception {
+        List<String> order = new CopyOnWriteArrayList<>();
+        try (ProcessPipeline pipeline = new ProcessPipeline(new ProcessExecutor(), 4, null)) {
+            CompletableFuture<Void> first = pipeline.addStep("first", () -> {
+                Thread.sleep(50);
+                order.add("first");
+            }, List.of());
+            // a step without work of its own passes the dependency on
+            CompletableFuture<Void> joined = ProcessPipeline.allOf(List.of(first, CompletableFuture.completedFuture(null)));
+            pipeline.addStep("last", () -> order.add("last"), List.of(joined));
+            pipeline.await();
+        }
+        assertEquals(List.of("first", "last"), order);
+    }
+}
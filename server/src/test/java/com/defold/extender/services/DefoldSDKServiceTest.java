@@ -1,24 +1,37 @@
 package com.defold.extender.services;
 
 import com.defold.extender.ExtenderException;
+import com.defold.extender.cache.BlobStoreStandIn;
 import com.defold.extender.services.data.DefoldSdk;
+import com.defold.extender.services.data.SdkUsage;
 import com.github.tomakehurst.wiremock.WireMockServer;
 import com.github.tomakehurst.wiremock.client.WireMock;
 import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
 
 import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.MessageDigest;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import org.apache.commons.io.FileUtils;
 import org.json.simple.parser.ParseException;
@@ -158,8 +171,9 @@ public class DefoldSDKServiceTest {
 
         // Download all SDK:s
         for (String sdkHash : sdksToDownload) {
-            defoldSdkService.getSdk(sdkHash);
+            defoldSdkService.getSdk(sdkHash).close();
         }
+        defoldSdkService.evictCache();
 
         List<String> collect = Files.list(DefoldSDKServiceTest.configuration.getLocation()).map(path -> path.toFile().getName()).collect(Collectors.toList());
 
@@ -310,7 +324,7 @@ public class DefoldSDKServiceTest {
         }
         latch.await();
         assertEquals(DefoldSDKServiceTest.zeroCacheConfiguration.getMappingsCacheSize(), defoldSdkService.mappingsCache.size());
-        for (Map.Entry<String, JSONObject> entry : defoldSdkService.mappingsCache.entrySet()) {
+        for (Map.Entry<String, JSONObject> entry : defoldSdkService.mappingsCache.asMap().entrySet()) {
             assertNotNull(entry.getValue());
         }
     }
@@ -371,4 +385,378 @@ public class DefoldSDKServiceTest {
 
         assertDoesNotThrow(() -> sdkService.getPlatformSdkMappings("unstable_sdk_mapping"));
     }
+
+    private static byte[] createArchive(Map<String, byte[]> entries) throws IOException {
+        return createArchive(entries, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    // An sdk archive with the given entry names and contents
+    private static byte[] createArchive(Map<String, byte[]> entries, int level) throws IOException {
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        try (ZipOutputStream zipOutput = new ZipOutputStream(archive)) {
+            zipOutput.setLevel(level);
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                zipOutput.putNextEntry(new ZipEntry(entry.getKey()));
+                zipOutput.write(entry.getValue());
+                zipOutput.closeEntry();
+            }
+        }
+        return archive.toByteArray();
+    }
+
+    @Test
+    public void testDownloadAndExtract() throws Exception {
+        byte[] bytes = createArchive(Map.of(
+                "defoldsdk/sdk/bin/tool", "tool".getBytes(),
+                "defoldsdk/include/sdk.h", "header".repeat(1000).getBytes()));
+        File zipFile = Files.createTempFile("sdk", ".zip").toFile();
+        Path targetDirectory = Files.createTempDirectory("sdk");
+
+        DefoldSdkService.SdkArchive result = DefoldSdkService.downloadAndExtract(new ByteArrayInputStream(bytes), zipFile, targetDirectory, name -> true);
+
+        assertTrue(result.isExtracted());
+        assertEquals(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes)), result.checksum());
+        assertEquals("header".repeat(1000), Files.readString(targetDirectory.resolve("defoldsdk/include/sdk.h")));
+        assertTrue(Files.isExecutable(targetDirectory.resolve("defoldsdk/sdk/bin/tool")));
+        // the whole archive is kept for extraction from the file
+        assertEquals(bytes.length, zipFile.length());
+    }
+
+    @Test
+    public void testLazyExtraction() throws Exception {
+        assertEquals("ios", PlatformSdkExtractor.getPlatformFamily("defoldsdk/lib/arm64-ios/libengine.a"));
+        assertEquals("android", PlatformSdkExtractor.getPlatformFamily("defoldsdk/ext/lib/armv7-android/libc++.a"));
+        assertTrue(PlatformSdkExtractor.isCommonEntry("defoldsdk/extender/build.yml"));
+        assertTrue(PlatformSdkExtractor.isCommonEntry("defoldsdk/lib/ios/frameworks.txt"));
+        assertEquals("web", PlatformSdkExtractor.getFamilyOfPlatform("wasm-web"));
+
+        Map<String, byte[]> entries = new HashMap<>();
+        for (String name : List.of("defoldsdk/extender/build.yml", "defoldsdk/lib/arm64-ios/libengine.a",
+                "defoldsdk/lib/arm64-android/libengine.a", "defoldsdk/ext/lib/armv7-android/libext.a")) {
+            entries.put(name, name.getBytes());
+        }
+        mockServer.stubFor(head(urlEqualTo("/lazy_sdk.zip")).willReturn(aResponse().withStatus(200)));
+        mockServer.stubFor(get(urlEqualTo("/lazy_sdk.zip")).willReturn(aResponse().withStatus(200).withBody(createArchive(entries))));
+
+        DefoldSdkServiceConfiguration conf = DefoldSdkServiceConfiguration.builder()
+            .location(Files.createTempDirectory("defoldsdk_lazy"))
+            .cacheSize(1)
+            .sdkUrls(new String[] {"http://localhost:" + String.valueOf(serverPort) + "/%s.zip"})
+            .enableSdkVerification(false)
+            .lazyExtraction(true)
+            .contentStore(true)
+            .build();
+        DefoldSdkService sdkService = new DefoldSdkService(conf, new SimpleMeterRegistry());
+        try {
+            try (DefoldSdk sdk = sdkService.getSdk("lazy_sdk", List.of("arm64-android"))) {
+                File root = sdk.toFile();
+                assertTrue(new File(root, "extender/build.yml").exists());
+                assertTrue(new File(root, "lib/arm64-android/libengine.a").exists());
+                assertTrue(new File(root, "ext/lib/armv7-android/libext.a").exists());
+                assertFalse(new File(root, "lib/arm64-ios/libengine.a").exists());
+            }
+            // all platforms are extracted if the platforms aren't known
+            try (DefoldSdk sdk = sdkService.getSdk("lazy_sdk")) {
+                assertEquals("defoldsdk/lib/arm64-ios/libengine.a", Files.readString(sdk.toFile().toPath().resolve("lib/arm64-ios/libengine.a")));
+            }
+        } finally {
+            sdkService.evictCache();
+            FileUtils.deleteDirectory(conf.getLocation().toFile());
+        }
+    }
+
+    @Test
+    public void testRangedDownload() throws Exception {
+        byte[] archive = createArchive(Map.of(
+                "defoldsdk/extender/build.yml", "build".getBytes(),
+                "defoldsdk/lib/arm64-android/libengine.a", new byte[10000]), Deflater.NO_COMPRESSION);
+        Path location = Files.createTempDirectory("defoldsdk_ranged");
+        try (BlobStoreStandIn server = new BlobStoreStandIn()) {
+            server.putBlob("/bucket/ranged_sdk/defoldsdk.zip", archive);
+            DefoldSdkServiceConfiguration conf = DefoldSdkServiceConfiguration.builder()
+                .location(location)
+                .cacheSize(1)
+                .sdkUrls(new String[] {server.getUrl() + "/%s/defoldsdk.zip"})
+                .enableSdkVerification(false)
+                .downloadConcurrency(4)
+                .downloadRangeSize(1024)
+                .build();
+            DefoldSdkService sdkService = new DefoldSdkService(conf, new SimpleMeterRegistry());
+            try (DefoldSdk sdk = sdkService.getSdk("ranged_sdk")) {
+                assertEquals("build", Files.readString(sdk.toFile().toPath().resolve("extender/build.yml")));
+                assertEquals(10000, Files.size(sdk.toFile().toPath().resolve("lib/arm64-android/libengine.a")));
+            }
+            assertTrue(server.getRequestCount("GET") > 1);
+            sdkService.destroy();
+        } finally {
+            FileUtils.deleteDirectory(location.toFile());
+        }
+    }
+
+    @Test
+    public void testConcurrentGetSdk() throws Exception {
+        byte[] archive = createArchive(Map.of("defoldsdk/extender/build.yml", "build".getBytes()));
+        Path location = Files.createTempDirectory("defoldsdk_concurrent");
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        try (BlobStoreStandIn server = new BlobStoreStandIn()) {
+            List<String> hashes = List.of("sdk1", "sdk2");
+            for (String hash : hashes) {
+                server.putBlob("/bucket/" + hash + "/defoldsdk.zip", archive);
+            }
+            DefoldSdkServiceConfiguration conf = DefoldSdkServiceConfiguration.builder()
+                .location(location)
+                .cacheSize(1)
+                .sdkUrls(new String[] {server.getUrl() + "/%s/defoldsdk.zip"})
+                .enableSdkVerification(false)
+                .build();
+            // the window between marking an sdk as evicted and moving it away is widened, builds which resolved
+            // the sdk before must wait for the eviction instead of giving up
+            DefoldSdkService sdkService = new DefoldSdkService(conf, new SimpleMeterRegistry()) {
+                @Override
+                protected void onSdkEvicting(String hash) {
+                    try {
+                        Thread.sleep(1);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            };
+
+            // the eviction runs all the time, sdks which aren't used are deleted and downloaded again
+            AtomicBoolean isRunning = new AtomicBoolean(true);
+            Thread evictor = new Thread(() -> {
+                while (isRunning.get()) {
+                    sdkService.evictCache();
+                    try {
+                        Thread.sleep(2);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            });
+            evictor.start();
+
+            List<Callable<Void>> callables = new ArrayList<>();
+            for (int i = 0; i < 400; ++i) {
+                final String hash = hashes.get(i % hashes.size());
+                callables.add(() -> {
+                    try (DefoldSdk sdk = sdkService.getSdk(hash)) {
+                        assertTrue(sdkService.getSdkRefCount(hash) > 0);
+                        assertEquals("build", Files.readString(sdk.toFile().toPath().resolve("extender/build.yml")));
+                    }
+                    return null;
+                });
+            }
+            try {
+                for (Future<Void> future : executor.invokeAll(callables)) {
+                    future.get();
+                }
+            } finally {
+                isRunning.set(false);
+                evictor.join();
+            }
+            for (String hash : hashes) {
+                assertEquals(0, sdkService.getSdkRefCount(hash));
+            }
+
+            // resolved sdks aren't checked again
+            sdkService.getSdk("sdk1").close();
+            int headCount = server.getRequestCount("HEAD");
+            callables.clear();
+            for (int i = 0; i < 100; ++i) {
+                callables.add(() -> {
+                    sdkService.getSdk("sdk1").close();
+                    return null;
+                });
+            }
+            for (Future<Void> future : executor.invokeAll(callables)) {
+                future.get();
+            }
+            assertEquals(headCount, server.getRequestCount("HEAD"));
+            assertEquals(0, sdkService.getSdkRefCount("sdk1"));
+        } finally {
+            executor.shutdown();
+            FileUtils.deleteDirectory(location.toFile());
+        }
+    }
+
+    @Test
+    public void testGetSdkWaitsForEviction() throws Exception {
+        byte[] archive = createArchive(Map.of("defoldsdk/extender/build.yml", "build".getBytes()));
+        Path location = Files.createTempDirectory("defoldsdk_evicting");
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (BlobStoreStandIn server = new BlobStoreStandIn()) {
+            server.putBlob("/bucket/sdk1/defoldsdk.zip", archive);
+            DefoldSdkServiceConfiguration conf = DefoldSdkServiceConfiguration.builder()
+                .location(location)
+                .cacheSize(0)
+                .sdkUrls(new String[] {server.getUrl() + "/%s/defoldsdk.zip"})
+                .enableSdkVerification(false)
+                .build();
+            CountDownLatch isEvicting = new CountDownLatch(1);
+            DefoldSdkService sdkService = new DefoldSdkService(conf, new SimpleMeterRegistry()) {
+                @Override
+                protected void onSdkEvicting(String hash) {
+                    isEvicting.countDown();
+                    // longer than the build would retry without waiting for the eviction
+                    try {
+                        Thread.sleep(500);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            };
+            sdkService.getSdk("sdk1").close();
+
+            // the build resolves the sdk while it's marked as evicted but still exists
+            Future<Void> eviction = executor.submit(() -> {
+                sdkService.evictCache();
+                return null;
+            });
+            isEvicting.await();
+            try (DefoldSdk sdk = sdkService.getSdk("sdk1")) {
+                assertEquals("build", Files.readString(sdk.toFile().toPath().resolve("extender/build.yml")));
+            }
+            eviction.get();
+            assertEquals(2, server.getRequestCount("GET"));
+        } finally {
+            executor.shutdown();
+            FileUtils.deleteDirectory(location.toFile());
+        }
+    }
+
+    private static void createCachedSdk(Path location, String hash, int size) throws IOException {
+        Path root = location.resolve(hash).resolve("defoldsdk");
+        Files.createDirectories(root);
+        Files.write(root.resolve("libengine.a"), new byte[size]);
+    }
+
+    private static void useSdk(DefoldSdkService sdkService, Path location, String hash) throws InterruptedException {
+        new DefoldSdk(location.resolve(hash).toFile(), hash, sdkService).close();
+        // access times must differ
+        Thread.sleep(5);
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEviction() throws Exception {
+        Path location = Files.createTempDirectory("defoldsdk_lru");
+        try {
+            DefoldSdkServiceConfiguration conf = DefoldSdkServiceConfiguration.builder()
+                .location(location)
+                .cacheSize(2)
+                .build();
+            DefoldSdkService sdkService = new DefoldSdkService(conf, new SimpleMeterRegistry());
+            for (String hash : List.of("sdk1", "sdk2", "sdk3")) {
+                createCachedSdk(location, hash, 100);
+            }
+            useSdk(sdkService, location, "sdk1");
+            useSdk(sdkService, location, "sdk2");
+            useSdk(sdkService, location, "sdk3");
+            useSdk(sdkService, location, "sdk1");
+
+            sdkService.evictCache();
+            assertTrue(Files.exists(location.resolve("sdk1")));
+            assertFalse(Files.exists(location.resolve("sdk2")));
+            assertTrue(Files.exists(location.resolve("sdk3")));
+
+            // sdks in use are kept
+            try (DefoldSdk sdk = new DefoldSdk(location.resolve("sdk3").toFile(), "sdk3", sdkService)) {
+                assertEquals(1, sdkService.getSdkRefCount(sdk.getHash()));
+                Thread.sleep(5);
+                useSdk(sdkService, location, "sdk1");
+                createCachedSdk(location, "sdk4", 100);
+                useSdk(sdkService, location, "sdk4");
+                sdkService.evictCache();
+                assertTrue(Files.exists(location.resolve("sdk3")));
+                assertTrue(Files.exists(location.resolve("sdk4")));
+                assertFalse(Files.exists(location.resolve("sdk1")));
+            }
+        } finally {
+            FileUtils.deleteDirectory(location.toFile());
+        }
+    }
+
+    @Test
+    public void testSizeLimitedEviction() throws Exception {
+        Path location = Files.createTempDirectory("defoldsdk_size");
+        try {
+            DefoldSdkServiceConfiguration conf = DefoldSdkServiceConfiguration.builder()
+                .location(location)
+                .cacheSize(10)
+                .cacheMaxSize(2500)
+                .build();
+            DefoldSdkService sdkService = new DefoldSdkService(conf, new SimpleMeterRegistry());
+            for (String hash : List.of("sdk1", "sdk2", "sdk3")) {
+                createCachedSdk(location, hash, 1000);
+                useSdk(sdkService, location, hash);
+            }
+
+            sdkService.evictCache();
+            assertFalse(Files.exists(location.resolve("sdk1")));
+            assertTrue(Files.exists(location.resolve("sdk2")));
+            assertTrue(Files.exists(location.resolve("sdk3")));
+        } finally {
+            FileUtils.deleteDirectory(location.toFile());
+        }
+    }
+
+    @Test
+    public void testUsageIsPersisted() throws Exception {
+        Path location = Files.createTempDirectory("defoldsdk_usage");
+        try {
+            Path usageFile = location.resolve(DefoldSdkService.USAGE_FILE);
+            Map<String, SdkUsage> usage = Map.of("sdk1", new SdkUsage(3, 1000), "sdk2", new SdkUsage(1, 2000));
+            DefoldSdkService.saveUsage(usageFile, usage);
+            assertEquals(usage, DefoldSdkService.loadUsage(usageFile));
+
+            DefoldSdkServiceConfiguration conf = DefoldSdkServiceConfiguration.builder()
+                .location(location)
+                .cacheSize(10)
+                .build();
+            DefoldSdkService sdkService = new DefoldSdkService(conf, new SimpleMeterRegistry());
+            assertEquals(usage, sdkService.getSdkUsage());
+
+            Files.delete(usageFile);
+            sdkService.scheduledEviction();
+            assertEquals(usage, DefoldSdkService.loadUsage(usageFile));
+        } finally {
+            FileUtils.deleteDirectory(location.toFile());
+        }
+    }
+
+    @Test
+    public void testSdkSizeIsUpdatedByExtraction() throws Exception {
+        byte[] archive = createArchive(Map.of(
+                "defoldsdk/extender/build.yml", "build".getBytes(),
+                "defoldsdk/lib/arm64-ios/libengine.a", new byte[20000]), Deflater.NO_COMPRESSION);
+        Path location = Files.createTempDirectory("defoldsdk_extracted_size");
+        try (BlobStoreStandIn server = new BlobStoreStandIn()) {
+            server.putBlob("/bucket/lazy_sdk/defoldsdk.zip", archive);
+            DefoldSdkServiceConfiguration conf = DefoldSdkServiceConfiguration.builder()
+                .location(location)
+                .cacheSize(10)
+                .cacheMaxSize(50000)
+                .sdkUrls(new String[] {server.getUrl() + "/%s/defoldsdk.zip"})
+                .enableSdkVerification(false)
+                .lazyExtraction(true)
+                .build();
+            DefoldSdkService sdkService = new DefoldSdkService(conf, new SimpleMeterRegistry());
+            createCachedSdk(location, "sdk1", 25000);
+            useSdk(sdkService, location, "sdk1");
+
+            // the kept archive and the common files fit next to sdk1
+            sdkService.getSdk("lazy_sdk", List.of("arm64-android")).close();
+            sdkService.evictCache();
+            assertTrue(Files.exists(location.resolve("sdk1")));
+
+            // the extracted platform doesn't fit anymore
+            sdkService.getSdk("lazy_sdk", List.of("arm64-ios")).close();
+            sdkService.evictCache();
+            assertFalse(Files.exists(location.resolve("sdk1")));
+            assertTrue(Files.exists(location.resolve("lazy_sdk")));
+            sdkService.destroy();
+        } finally {
+            FileUtils.deleteDirectory(location.toFile());
+        }
+    }
 }
@@ -0,0 +1,86 @@
+package com.defold.extender.services;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SdkFileStoreTest {
+    private Path location;
+
+    @BeforeEach
+    public void beforeEach() throws IOException {
+        location = Files.createTempDirectory("sdk-store");
+    }
+
+    @AfterEach
+    public void afterEach() throws IOException {
+        FileUtils.deleteDirectory(location.toFile());
+    }
+
+    private Path createSdk(String name, String libraryContent) throws IOException {
+        Path sdk = location.resolve(name);
+        Files.createDirectories(sdk.resolve("include"));
+        Files.createDirectories(sdk.resolve("lib"));
+        Files.writeString(sdk.resolve("include/dmsdk.h"), "shared header");
+        Files.writeString(sdk.resolve("lib/libengine.a"), libraryContent);
+        return sdk;
+    }
+
+    @Test
+    public void testSharedFilesAreStoredOnce() throws IOException {
+        SdkFileStore store = new SdkFileStore(location);
+        Path sdk1 = createSdk("sdk1", "engine 1");
+        Path sdk2 = createSdk("sdk2", "engine 2");
+
+        assertEquals(0, store.store(sdk1));
+        assertEquals("shared header".length(), store.store(sdk2));
+
+        assertTrue(Files.isSameFile(sdk1.resolve("include/dmsdk.h"), sdk2.resolve("include/dmsdk.h")));
+        assertFalse(Files.isSameFile(sdk1.resolve("lib/libengine.a"), sdk2.resolve("lib/libengine.a")));
+        // both sdks and the pool
+        assertEquals(3, SdkFileStore.getLinkCount(sdk1.resolve("include/dmsdk.h")));
+        assertEquals("engine 2", Files.readString(sdk2.resolve("lib/libengine.a")));
+    }
+
+    @Test
+    public void testExecutablesAreNotShared() throws IOException {
+        SdkFileStore store = new SdkFileStore(location);
+        Path sdk1 = createSdk("sdk1", "engine");
+        Path sdk2 = createSdk("sdk2", "engine");
+        sdk2.resolve("lib/libengine.a").toFile().setExecutable(true);
+
+        store.store(sdk1);
+        store.store(sdk2);
+
+        assertFalse(Files.isSameFile(sdk1.resolve("lib/libengine.a"), sdk2.resolve("lib/libengine.a")));
+        assertFalse(Files.isExecutable(sdk1.resolve("lib/libengine.a")));
+    }
+
+    @Test
+    public void testCollectGarbage() throws IOException {
+        SdkFileStore store = new SdkFileStore(location);
+        Path sdk1 = createSdk("sdk1", "engine 1");
+        Path sdk2 = createSdk("sdk2", "engine 2");
+        store.store(sdk1);
+        store.store(sdk2);
+
+        assertEquals(0, store.collectGarbage());
+
+        FileUtils.deleteDirectory(sdk1.toFile());
+        // the shared header is still used by sdk2
+        assertEquals("engine 1".length(), store.collectGarbage());
+        assertEquals(2, SdkFileStore.getLinkCount(sdk2.resolve("include/dmsdk.h")));
+
+        FileUtils.deleteDirectory(sdk2.toFile());
+        assertEquals("shared header".length() + "engine 2".length(), store.collectGarbage());
+    }
+}
@@ -0,0 +1,71 @@
+package com.defold.extender.services;
+
+import org.apache.commons.io.FileUtils;
+import org.json.simple.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SdkMappingsCacheTest {
+    private Path directory;
+
+    @BeforeEach
+    public void beforeEach() throws IOException {
+        directory = Files.createTempDirectory("sdk-mappings");
+    }
+
+    @AfterEach
+    public void afterEach() throws IOException {
+        FileUtils.deleteDirectory(directory.toFile());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static JSONObject createMappings(String version) {
+        JSONObject mappings = new JSONObject();
+        mappings.put("version", version);
+        return mappings;
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsRemoved() throws IOException {
+        SdkMappingsCache cache = new SdkMappingsCache(2, null);
+        cache.put("a", createMappings("a"));
+        cache.put("b", createMappings("b"));
+        cache.get("a");
+        cache.put("c", createMappings("c"));
+
+        assertEquals(2, cache.size());
+        assertTrue(cache.containsKey("a"));
+        assertFalse(cache.containsKey("b"));
+        assertTrue(cache.containsKey("c"));
+        assertNull(cache.get("b"));
+    }
+
+    @Test
+    public void testMappingsAreLoadedAfterRestart() throws IOException {
+        SdkMappingsCache cache = new SdkMappingsCache(2, directory);
+        cache.put("a", createMappings("a"));
+
+        SdkMappingsCache restartedCache = new SdkMappingsCache(2, directory);
+        assertFalse(restartedCache.containsKey("a"));
+        assertEquals("a", restartedCache.get("a").get("version"));
+        assertTrue(restartedCache.containsKey("a"));
+    }
+
+    @Test
+    public void testInvalidFileIsIgnored() throws IOException {
+        Files.writeString(directory.resolve("a.json"), "{ not json");
+        SdkMappingsCache cache = new SdkMappingsCache(2, directory);
+        assertNull(cache.get("a"));
+        assertFalse(Files.exists(directory.resolve("a.json")));
+    }
+}
@@ -0,0 +1,143 @@
+package com.defold.extender.services;
+
+import com.defold.extender.cache.BlobStoreStandIn;
+import com.defold.extender.services.data.DefoldSdk;
+import com.defold.extender.services.data.SdkUsage;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SdkPrefetchServiceTest {
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    private Path location;
+    private BlobStoreStandIn server;
+
+    @BeforeEach
+    public void beforeEach() throws IOException {
+        location = Files.createTempDirectory("sdk-prefetch");
+        server = new BlobStoreStandIn();
+    }
+
+    @AfterEach
+    public void afterEach() throws IOException {
+        server.close();
+        FileUtils.deleteDirectory(location.toFile());
+    }
+
+    private static byte[] createSdkArchive(String content) throws IOException {
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        try (ZipOutputStream zipOutput = new ZipOutputStream(archive)) {
+            zipOutput.putNextEntry(new ZipEntry("defoldsdk/extender/build.yml"));
+            zipOutput.write(content.getBytes(StandardCharsets.UTF_8));
+            zipOutput.closeEntry();
+        }
+        return archive.toByteArray();
+    }
+
+    @Test
+    public void testWarmupVersions() {
+        long now = System.currentTimeMillis();
+        Map<String, SdkUsage> usage = Map.of(
+                "often", new SdkUsage(10, now),
+                "seldom", new SdkUsage(1, now),
+                "old", new SdkUsage(100, now - 30 * DAY),
+                "sometimes", new SdkUsage(5, now - DAY));
+        assertEquals(List.of("often", "sometimes"), SdkPrefetchService.getWarmupVersions(usage, now - 7 * DAY, 2));
+    }
+
+    @Test
+    public void testParseVersionInfo() throws Exception {
+        String info = "{\"version\": \"1.10.0\", \"sha1\": \"1234abcd\"}";
+        assertEquals("1234abcd", SdkPrefetchService.parseVersionInfo(new ByteArrayInputStream(info.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    @Test
+    public void testPrefetch() throws IOException {
+        server.putBlob("/bucket/archive/stablehash/engine/defoldsdk.zip", createSdkArchive("stable"));
+        server.putBlob("/bucket/archive/warmhash/engine/defoldsdk.zip", createSdkArchive("warm"));
+        server.putBlob("/bucket/stable/info.json", "{\"version\": \"1.10.0\", \"sha1\": \"stablehash\"}".getBytes(StandardCharsets.UTF_8));
+
+        long now = System.currentTimeMillis();
+        DefoldSdkService.saveUsage(location.resolve(DefoldSdkService.USAGE_FILE), Map.of(
+                "warmhash", new SdkUsage(5, now - DAY),
+                "oldhash", new SdkUsage(50, now - 30 * DAY)));
+
+        DefoldSdkServiceConfiguration configuration = DefoldSdkServiceConfiguration.builder()
+            .location(location)
+            .cacheSize(3)
+            .sdkUrls(new String[] {server.getUrl() + "/archive/%s/engine/defoldsdk.zip"})
+            .mappingsUrls(new String[] {server.getUrl() + "/archive/%s/engine/platform.sdks.json"})
+            .enableSdkVerification(false)
+            .maxVerificationRetryCount(1)
+            .build();
+        DefoldSdkService sdkService = new DefoldSdkService(configuration, new SimpleMeterRegistry());
+        SdkPrefetchService prefetchService = new SdkPrefetchService(sdkService,
+                new String[] { server.getUrl() + "/stable/info.json" }, new String[0], 1024 * 1024, 3, 7 * DAY, new SimpleMeterRegistry());
+        assertEquals(5, sdkService.getSdkUsage().get("warmhash").requestCount());
+
+        prefetchService.prefetch();
+
+        assertEquals("stable", Files.readString(location.resolve("stablehash/defoldsdk/extender/build.yml")));
+        assertEquals("warm", Files.readString(location.resolve("warmhash/defoldsdk/extender/build.yml")));
+        assertFalse(Files.exists(location.resolve("oldhash")));
+        assertEquals(0, sdkService.getSdkRefCount("stablehash"));
+
+        // prefetched versions are not requested again
+        int requestCount = server.getRequestCount("HEAD");
+        prefetchService.prefetch();
+        assertEquals(requestCount, server.getRequestCount("HEAD"));
+    }
+
+    @Test
+    public void testBuildLiftsPrefetchThrottle() throws Exception {
+        // ~200kB of archive, the throttled prefetch would take 20 seconds
+        byte[] random = new byte[200 * 1024];
+        new Random(1).nextBytes(random);
+        server.putBlob("/bucket/archive/largehash/engine/defoldsdk.zip", createSdkArchive(HexFormat.of().formatHex(random)));
+
+        DefoldSdkServiceConfiguration configuration = DefoldSdkServiceConfiguration.builder()
+            .location(location)
+            .cacheSize(3)
+            .sdkUrls(new String[] {server.getUrl() + "/archive/%s/engine/defoldsdk.zip"})
+            .mappingsUrls(new String[] {server.getUrl() + "/archive/%s/engine/platform.sdks.json"})
+            .enableSdkVerification(false)
+            .maxVerificationRetryCount(1)
+            .build();
+        DefoldSdkService sdkService = new DefoldSdkService(configuration, new SimpleMeterRegistry());
+        CompletableFuture<Boolean> prefetch = CompletableFuture.supplyAsync(() -> sdkService.prefetchSdk("largehash", 10 * 1024));
+        while (server.getRequestCount("GET") == 0) {
+            Thread.sleep(10);
+        }
+
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            try (DefoldSdk sdk = sdkService.getSdk("largehash")) {
+                assertTrue(sdk.isValid());
+            }
+        });
+        assertTrue(prefetch.join());
+    }
+}
@@ -0,0 +1,33 @@
+package com.defold.extender.services.cocoapods;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.core.io.ClassPathResource;
+
+import com.defold.extender.ExtenderBuildState;
+import com.defold.extender.PlatformConfig;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// Records the resolve calls instead of running 'pod install'. Every build state gets no pods
+public class CocoaPodsServiceStub extends CocoaPodsService {
+
+    private final List<List<ExtenderBuildState>> resolveCalls = Collections.synchronizedList(new ArrayList<>());
+
+    public CocoaPodsServiceStub() throws IOException {
+        super(new ClassPathResource("template.podfile"), new ClassPathResource("template.modulemap"), 0, new SimpleMeterRegistry());
+    }
+
+    @Override
+    public List<ResolvedPods> resolveDependencies(List<PlatformConfig> configs, List<ExtenderBuildState> buildStates) {
+        resolveCalls.add(List.copyOf(buildStates));
+        return new ArrayList<>(Collections.nCopies(buildStates.size(), null));
+    }
+
+    public List<List<ExtenderBuildState>> getResolveCalls() {
+        return resolveCalls;
+    }
+}
@@ -0,0 +1,94 @@
+package com.defold.extender.services.cocoapods;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.apache.commons.configuration2.ex.ConfigurationException;
+import org.apache.commons.configuration2.io.FileHandler;
+import org.apache.commons.configuration2.plist.XMLPropertyListConfiguration;
+import org.junit.jupiter.api.Test;
+
+import com.defold.extender.ExtenderException;
+import com.defold.extender.utils.FileLinkUtil;
+
+public class InfoPlistWriterTest {
+
+    @Test
+    public void testBundleInfoPlist() throws IOException, ExtenderException, ConfigurationException {
+        File tmpDir = Files.createTempDirectory("bundle-info").toFile();
+        tmpDir.deleteOnExit();
+        File targetPlist = new File(tmpDir, "Info.plist");
+        InfoPlistWriter.CreateBundlePlistArgs args = new InfoPlistWriter.CreateBundlePlistArgs();
+        args.bundleId = "com.defold.extender.TestResourceBundle";
+        args.bundleName = "TestResourceBundle";
+        args.version = "1";
+        args.shortVersion = "4.3.1";
+        args.minVersion = "13.0";
+        args.supportedPlatforms = new String[] { "iPhoneOS", "iPhoneSimulator" };
+        InfoPlistWriter.createBundleInfoPlist(targetPlist, args);
+
+        assertTrue(targetPlist.exists());
+        String content = Files.readString(targetPlist.toPath());
+        assertTrue(content.contains("<plist version=\"1.0\">"));
+        assertTrue(content.contains("<integer>1</integer>"));
+        assertTrue(content.contains("<integer>2</integer>"));
+
+        XMLPropertyListConfiguration plist = new XMLPropertyListConfiguration();
+        new FileHandler(plist).load(targetPlist);
+        assertEquals("com.defold.extender.TestResourceBundle", plist.getString("CFBundleIdentifier"));
+        assertEquals("6.0", plist.getString("CFBundleInfoDictionaryVersion"));
+        assertEquals("TestResourceBundle", plist.getString("CFBundleName"));
+        assertEquals("BNDL", plist.getString("CFBundlePackageType"));
+        assertEquals("4.3.1", plist.getString("CFBundleShortVersionString"));
+        assertEquals("1", plist.getString("CFBundleVersion"));
+        assertEquals("13.0", plist.getString("MinimumOSVersion"));
+        assertEquals(List.of("iPhoneOS", "iPhoneSimulator"), plist.getList(String.class, "CFBundleSupportedPlatforms"));
+    }
+
+    @Test
+    public void testEscaping() throws IOException, ExtenderException, ConfigurationException {
+        File tmpDir = Files.createTempDirectory("bundle-info-escape").toFile();
+        tmpDir.deleteOnExit();
+        File targetPlist = new File(tmpDir, "Info.plist");
+        InfoPlistWriter.CreateBundlePlistArgs args = new InfoPlistWriter.CreateBundlePlistArgs();
+        args.bundleId = "com.defold.extender.Bundle";
+        args.bundleName = "Bundle <with> & 'special' \\ chars";
+        args.version = "1";
+        args.shortVersion = "1.0";
+        args.minVersion = "11.0";
+        args.supportedPlatforms = new String[] { "MacOSX" };
+        InfoPlistWriter.createBundleInfoPlist(targetPlist, args);
+
+        XMLPropertyListConfiguration plist = new XMLPropertyListConfiguration();
+        new FileHandler(plist).load(targetPlist);
+        assertEquals("Bundle <with> & 'special' \\ chars", plist.getString("CFBundleName"));
+    }
+
+    @Test
+    public void testLinkedTargetIsReplaced() throws IOException, ExtenderException {
+        File tmpDir = Files.createTempDirectory("bundle-info-link").toFile();
+        tmpDir.deleteOnExit();
+        // an Info.plist shipped with the pod resources is linked into the bundle
+        File podPlist = new File(tmpDir, "PodInfo.plist");
+        Files.writeString(podPlist.toPath(), "pod content");
+        File targetPlist = new File(tmpDir, "Info.plist");
+        FileLinkUtil.linkFile(podPlist, targetPlist);
+
+        InfoPlistWriter.CreateBundlePlistArgs args = new InfoPlistWriter.CreateBundlePlistArgs();
+        args.bundleId = "com.defold.extender.Bundle";
+        args.bundleName = "Bundle";
+        args.version = "1";
+        args.shortVersion = "1.0";
+        args.minVersion = "11.0";
+        args.supportedPlatforms = new String[] { "iPhoneOS" };
+        InfoPlistWriter.createBundleInfoPlist(targetPlist, args);
+
+        assertEquals("pod content", Files.readString(podPlist.toPath()));
+        assertTrue(Files.readString(targetPlist.toPath()).contains("com.defold.extender.Bundle"));
+    }
+}
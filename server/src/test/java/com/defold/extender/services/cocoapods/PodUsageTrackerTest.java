@@ -0,0 +1,81 @@
+package com.defold.extender.services.cocoapods;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class PodUsageTrackerTest {
+
+    @Test
+    public void testMostUsed() {
+        PodUsageTracker tracker = new PodUsageTracker(100);
+        tracker.record(Map.of("FirebaseCore", "10.1.0", "GoogleUtilities", "7.10.0"), Set.of());
+        tracker.record(Map.of("FirebaseCore", "10.1.0"), Set.of());
+        tracker.record(Map.of("FirebaseCore", "10.2.0", "GoogleUtilities", "7.10.0"), Set.of());
+        tracker.record(Map.of("FirebaseCore", "10.1.0"), Set.of());
+
+        assertEquals(List.of("FirebaseCore 10.1.0", "GoogleUtilities 7.10.0"), tracker.getMostUsed(2));
+        assertEquals(3, tracker.getMostUsed(10).size());
+        assertArrayEquals(new String[] { "FirebaseCore", "10.1.0" }, PodUsageTracker.splitSpecKey(tracker.getMostUsed(1).get(0)));
+    }
+
+    @Test
+    public void testCapacity() {
+        PodUsageTracker tracker = new PodUsageTracker(2);
+        for (int i = 0; i < 4; ++i) {
+            tracker.record(Map.of("A", "1.0"), Set.of());
+        }
+        tracker.record(Map.of("B", "1.0"), Set.of());
+        // over capacity: counters are halved and B is dropped
+        tracker.record(Map.of("C", "1.0"), Set.of());
+
+        assertEquals(List.of("A 1.0", "C 1.0"), tracker.getMostUsed(10));
+    }
+
+    @Test
+    public void testExternalPodsAreSkipped() {
+        PodUsageTracker tracker = new PodUsageTracker(100);
+        tracker.record(Map.of("FirebaseCore", "10.1.0", "LocalPod", "1.0"), Set.of("LocalPod"));
+
+        assertEquals(List.of("FirebaseCore 10.1.0"), tracker.getMostUsed(10));
+    }
+
+    @Test
+    public void testSaveAndLoad(@TempDir Path tempDir) throws Exception {
+        Path usageFile = tempDir.resolve(".pod-usage");
+        PodUsageTracker tracker = new PodUsageTracker(100);
+        tracker.record(Map.of("FirebaseCore", "10.1.0", "GoogleUtilities", "7.10.0"), Set.of());
+        tracker.record(Map.of("FirebaseCore", "10.1.0"), Set.of());
+        tracker.save(usageFile);
+
+        PodUsageTracker loaded = new PodUsageTracker(100);
+        loaded.load(usageFile);
+        assertEquals(List.of("FirebaseCore 10.1.0", "GoogleUtilities 7.10.0"), loaded.getMostUsed(10));
+
+        // a missing file is no error
+        new PodUsageTracker(100).load(tempDir.resolve("missing"));
+    }
+
+    @Test
+    public void testListCachedSpecs(@TempDir Path tempDir) throws Exception {
+        for (String path : List.of("repos/trunk/Specs/0/8/4/FirebaseCore/10.1.0/FirebaseCore.podspec.json",
+                "repos/trunk/Specs/0/8/4/FirebaseCore/10.2.0/FirebaseCore.podspec.json",
+                "repos/trunk/Specs/a/b/c/GoogleUtilities/7.10.0/GoogleUtilities.podspec.json",
+                "repos/trunk/CocoaPods-version.yml")) {
+            Path file = tempDir.resolve(path);
+            Files.createDirectories(file.getParent());
+            Files.writeString(file, "{}");
+        }
+
+        assertEquals(Set.of("FirebaseCore 10.1.0", "FirebaseCore 10.2.0", "GoogleUtilities 7.10.0"), PodUsageTracker.listCachedSpecs(tempDir));
+        assertEquals(Set.of(), PodUsageTracker.listCachedSpecs(tempDir.resolve("missing")));
+    }
+}
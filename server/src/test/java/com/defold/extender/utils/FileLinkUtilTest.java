@@ -0,0 +1,48 @@
+package com.defold.extender.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+
+public class FileLinkUtilTest {
+
+    @Test
+    public void linkFileReplacesTarget() throws IOException {
+        Path sourceDir = Files.createTempDirectory("source");
+        Path targetDir = Files.createTempDirectory("target");
+        Path source = Files.writeString(sourceDir.resolve("libfoo.so"), "new", StandardCharsets.UTF_8);
+        Files.writeString(targetDir.resolve("libfoo.so"), "old", StandardCharsets.UTF_8);
+
+        FileLinkUtil.linkFileToDirectory(source.toFile(), targetDir.toFile());
+
+        Path target = targetDir.resolve("libfoo.so");
+        assertEquals("new", Files.readString(target, StandardCharsets.UTF_8));
+        // same filesystem, so the target is a hardlink to the source
+        assertTrue(Files.isSameFile(source, target));
+    }
+
+    @Test
+    public void linkDirectoryWithFilter() throws IOException {
+        Path sourceDir = Files.createTempDirectory("Foo.framework");
+        Files.createDirectories(sourceDir.resolve("Headers"));
+        Files.writeString(sourceDir.resolve("Headers/Foo.h"), "header", StandardCharsets.UTF_8);
+        Files.createDirectories(sourceDir.resolve("Resources/en.lproj"));
+        Files.writeString(sourceDir.resolve("Resources/en.lproj/Foo.strings"), "strings", StandardCharsets.UTF_8);
+        Files.writeString(sourceDir.resolve("Foo"), "binary", StandardCharsets.UTF_8);
+
+        File targetDir = new File(Files.createTempDirectory("target").toFile(), "Foo.framework");
+        FileLinkUtil.linkDirectory(sourceDir.toFile(), targetDir, pathname -> !pathname.getName().equals("Headers"));
+
+        assertFalse(new File(targetDir, "Headers").exists());
+        assertEquals("binary", Files.readString(new File(targetDir, "Foo").toPath(), StandardCharsets.UTF_8));
+        assertEquals("strings", Files.readString(new File(targetDir, "Resources/en.lproj/Foo.strings").toPath(), StandardCharsets.UTF_8));
+    }
+}
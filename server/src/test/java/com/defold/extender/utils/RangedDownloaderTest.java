@@ -0,0 +1,127 @@
+package com.defold.extender.utils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.defold.extender.cache.BlobStoreStandIn;
+
+public class RangedDownloaderTest {
+    private static final int RANGE_SIZE = 1000;
+
+    private BlobStoreStandIn server;
+    private RangedDownloader downloader;
+    private Path directory;
+
+    @BeforeEach
+    public void beforeEach() throws IOException {
+        server = new BlobStoreStandIn();
+        downloader = new RangedDownloader(RANGE_SIZE, 4, 3);
+        directory = Files.createTempDirectory("ranged-download");
+    }
+
+    @AfterEach
+    public void afterEach() throws Exception {
+        downloader.close();
+        server.close();
+        FileUtils.deleteDirectory(directory.toFile());
+    }
+
+    private static byte[] createContent(int size) {
+        byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        return content;
+    }
+
+    private URI putBlob(String name, byte[] content) {
+        server.putBlob("/bucket/" + name, content);
+        return URI.create(server.getUrl() + "/" + name);
+    }
+
+    @Test
+    public void testDownloadRanges() throws IOException {
+        byte[] content = createContent(RANGE_SIZE * 5 + 123);
+        URI uri = putBlob("large.zip", content);
+        File target = directory.resolve("large.zip").toFile();
+        Files.write(directory.resolve("source.zip"), content);
+        String expectedSha256 = RangedDownloader.sha256(directory.resolve("source.zip").toFile());
+
+        RangedDownloader.Result result = downloader.download(uri, target, expectedSha256);
+
+        assertEquals(content.length, result.size());
+        assertEquals(expectedSha256, result.sha256());
+        assertArrayEquals(content, Files.readAllBytes(target.toPath()));
+        assertEquals(6, server.getRequestCount("GET"));
+    }
+
+    @Test
+    public void testDownloadWithoutRanges() throws IOException {
+        server.setSupportsRanges(false);
+        byte[] content = createContent(RANGE_SIZE * 3);
+        URI uri = putBlob("large.zip", content);
+        File target = directory.resolve("large.zip").toFile();
+        // a previous larger file is replaced
+        Files.write(target.toPath(), createContent(RANGE_SIZE * 4));
+
+        RangedDownloader.Result result = downloader.download(uri, target, null);
+
+        assertEquals(content.length, result.size());
+        assertArrayEquals(content, Files.readAllBytes(target.toPath()));
+        assertEquals(1, server.getRequestCount("GET"));
+    }
+
+    @Test
+    public void testMissingFile() throws IOException {
+        File target = directory.resolve("missing.zip").toFile();
+        assertNull(downloader.download(URI.create(server.getUrl() + "/missing.zip"), target, null));
+        assertNull(downloader.open(URI.create(server.getUrl() + "/missing.zip")));
+    }
+
+    @Test
+    public void testChecksumMismatch() {
+        URI uri = putBlob("large.zip", createContent(RANGE_SIZE * 2 + 1));
+        File target = directory.resolve("large.zip").toFile();
+        IOException exception = assertThrows(IOException.class, () -> downloader.download(uri, target, "0000"));
+        assertTrue(exception.getMessage().contains("Checksum mismatch"));
+    }
+
+    @Test
+    public void testOpen() throws IOException {
+        byte[] small = createContent(RANGE_SIZE / 2);
+        byte[] large = createContent(RANGE_SIZE * 3 + 7);
+        URI smallUri = putBlob("small.bin", small);
+        URI largeUri = putBlob("large.bin", large);
+
+        try (InputStream input = downloader.open(smallUri)) {
+            assertArrayEquals(small, input.readAllBytes());
+        }
+        long tmpFileCount = countTemporaryFiles();
+        try (InputStream input = downloader.open(largeUri)) {
+            assertArrayEquals(large, input.readAllBytes());
+        }
+        // the assembled file is removed when the stream is closed
+        assertFalse(countTemporaryFiles() > tmpFileCount);
+    }
+
+    private static long countTemporaryFiles() throws IOException {
+        try (var files = Files.list(Path.of(System.getProperty("java.io.tmpdir")))) {
+            return files.filter(path -> path.getFileName().toString().startsWith("ranged-download-")).count();
+        }
+    }
+}